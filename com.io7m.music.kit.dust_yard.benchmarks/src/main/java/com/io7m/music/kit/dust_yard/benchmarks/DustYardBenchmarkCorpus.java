@@ -0,0 +1,303 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * A corpus of FLAC files laid out in the same way as the quartertone sample
+ * collections. The corpus is either the real quartertone corpus, or a
+ * synthetic corpus so that the generator can be benchmarked without access
+ * to the real one. Each synthetic file is a short stereo 24-bit "hit": a
+ * decaying tone mixed with decaying noise, scaled by velocity. Synthetic
+ * files are stored uncompressed, so they decode faster than the real
+ * corpus does.
+ */
+
+public final class DustYardBenchmarkCorpus
+{
+  /**
+   * The name of the snare directory.
+   */
+
+  public static final String SNARE =
+    "8833__quartertone__snaredrum-14x08inchtama-veryhighpitch-multisampled";
+
+  /**
+   * The name of the bass drum directory.
+   */
+
+  public static final String BASS_DRUM =
+    "8586__quartertone__bassdrum-22x16-open-multisampled";
+
+  /**
+   * The name of the china hi-hat directory.
+   */
+
+  public static final String CHINA_HI_HAT =
+    "8656__quartertone__hihats-18x20inchchinahats-multisampled";
+
+  /**
+   * The name of the splash directory.
+   */
+
+  public static final String SPLASH =
+    "12776__quartertone__splashcymbal-08inzildjiana-efx-1";
+
+  private static final int SAMPLE_RATE = 48000;
+  private static final int CHANNELS = 2;
+  private static final int BITS = 24;
+
+  private static final List<String> SNARE_TAUTNESS =
+    List.of("0sn", "lsn", "tsn");
+  private static final List<String> SNARE_STICKS =
+    List.of("cs", "hdc", "hde", "rm", "rs");
+  private static final List<String> CHINA_HI_HAT_KINDS =
+    List.of("closed", "open", "pedal");
+  private static final List<String> SPLASH_KINDS =
+    List.of("bell", "edge");
+
+  private final Path directory;
+  private final List<Path> files;
+
+  private DustYardBenchmarkCorpus(
+    final Path inDirectory,
+    final List<Path> inFiles)
+  {
+    this.directory = Objects.requireNonNull(inDirectory, "directory");
+    this.files = List.copyOf(Objects.requireNonNull(inFiles, "files"));
+  }
+
+  /**
+   * Open an existing corpus, such as the quartertone corpus.
+   *
+   * @param directory The directory containing the corpus
+   *
+   * @return The corpus
+   *
+   * @throws IOException On errors
+   */
+
+  public static DustYardBenchmarkCorpus open(
+    final Path directory)
+    throws IOException
+  {
+    final var root =
+      Objects.requireNonNull(directory, "directory").toAbsolutePath();
+
+    final List<Path> files;
+    try (var stream = Files.walk(root)) {
+      files = stream.filter(path -> path.toString().endsWith(".flac"))
+        .sorted()
+        .toList();
+    }
+
+    if (files.isEmpty()) {
+      throw new IOException(
+        String.format("%s does not contain any FLAC files", root)
+      );
+    }
+    return new DustYardBenchmarkCorpus(root, files);
+  }
+
+  /**
+   * Generate a synthetic corpus.
+   *
+   * @param directory  The directory that will contain the corpus
+   * @param velocities The number of velocity layers per instrument
+   * @param seconds    The length of each file in seconds
+   *
+   * @return The corpus
+   *
+   * @throws IOException On errors
+   */
+
+  public static DustYardBenchmarkCorpus create(
+    final Path directory,
+    final int velocities,
+    final double seconds)
+    throws IOException
+  {
+    final var root =
+      Objects.requireNonNull(directory, "directory").toAbsolutePath();
+    final var random =
+      new SplittableRandom(0x6475737479617264L);
+    final var frames =
+      (int) Math.round(seconds * SAMPLE_RATE);
+    final var files =
+      new ArrayList<Path>();
+
+    var id = 0;
+    for (final var tautness : SNARE_TAUTNESS) {
+      for (final var stick : SNARE_STICKS) {
+        for (int velocity = 1; velocity <= velocities; ++velocity) {
+          files.add(write(
+            root.resolve(SNARE),
+            String.format(
+              "%d__quartertone__sd14x08tama-vhp-%s-%s-v%d.flac",
+              Integer.valueOf(id++),
+              tautness,
+              stick,
+              Integer.valueOf(velocity)),
+            hit(random, frames, 220.0, (double) velocity / velocities)
+          ));
+        }
+      }
+    }
+
+    for (int velocity = 1; velocity <= velocities; ++velocity) {
+      files.add(write(
+        root.resolve(BASS_DRUM),
+        String.format(
+          "%d__quartertone__bd22x16-mlp-o-v%d.flac",
+          Integer.valueOf(id++),
+          Integer.valueOf(velocity)),
+        hit(random, frames, 60.0, (double) velocity / velocities)
+      ));
+    }
+
+    for (final var kind : CHINA_HI_HAT_KINDS) {
+      files.add(write(
+        root.resolve(CHINA_HI_HAT),
+        String.format(
+          "%d__quartertone__chh18x20-1-%s-v16.flac",
+          Integer.valueOf(id++),
+          kind),
+        hit(random, frames, 4000.0, 1.0)
+      ));
+    }
+
+    for (final var kind : SPLASH_KINDS) {
+      for (int velocity = 1; velocity <= velocities; ++velocity) {
+        files.add(write(
+          root.resolve(SPLASH),
+          String.format(
+            "%d__quartertone__sc08inzilefx1-%s-v%d.flac",
+            Integer.valueOf(id++),
+            kind,
+            Integer.valueOf(velocity)),
+          hit(random, frames, 6000.0, (double) velocity / velocities)
+        ));
+      }
+    }
+
+    return new DustYardBenchmarkCorpus(root, files);
+  }
+
+  /**
+   * Delete the given directory and everything in it.
+   *
+   * @param directory The directory
+   *
+   * @throws IOException On errors
+   */
+
+  public static void deleteRecursively(
+    final Path directory)
+    throws IOException
+  {
+    if (!Files.exists(directory)) {
+      return;
+    }
+
+    try (var stream = Files.walk(directory)) {
+      final var paths =
+        stream.sorted(Comparator.reverseOrder())
+          .toList();
+      for (final var path : paths) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  /**
+   * @return The directory containing the corpus
+   */
+
+  public Path directory()
+  {
+    return this.directory;
+  }
+
+  /**
+   * @return Every file in the corpus
+   */
+
+  public List<Path> files()
+  {
+    return this.files;
+  }
+
+  /**
+   * @return The files in the bass drum directory
+   */
+
+  public List<Path> bassDrumFiles()
+  {
+    final var bassDrum = this.directory.resolve(BASS_DRUM);
+    return this.files.stream()
+      .filter(file -> file.startsWith(bassDrum))
+      .toList();
+  }
+
+  private static int[] hit(
+    final SplittableRandom random,
+    final int frames,
+    final double frequency,
+    final double velocity)
+  {
+    final var samples = new int[frames * CHANNELS];
+    final var maximum = (1 << (BITS - 1)) - 1;
+    final var decay = 6.0 / frames;
+
+    for (int frame = 0; frame < frames; ++frame) {
+      final var envelope = Math.exp(-decay * frame);
+      final var tone =
+        Math.sin(2.0 * Math.PI * frequency * frame / SAMPLE_RATE);
+
+      for (int channel = 0; channel < CHANNELS; ++channel) {
+        final var noise = random.nextDouble(-1.0, 1.0);
+        final var value =
+          velocity * envelope * (0.6 * tone + 0.3 * noise);
+        samples[frame * CHANNELS + channel] =
+          (int) Math.round(value * maximum);
+      }
+    }
+    return samples;
+  }
+
+  private static Path write(
+    final Path directory,
+    final String name,
+    final int[] samples)
+    throws IOException
+  {
+    Files.createDirectories(directory);
+    final var file = directory.resolve(name);
+    Files.write(
+      file,
+      DustYardBenchmarkFLAC.encode(samples, CHANNELS, BITS, SAMPLE_RATE));
+    return file;
+  }
+}
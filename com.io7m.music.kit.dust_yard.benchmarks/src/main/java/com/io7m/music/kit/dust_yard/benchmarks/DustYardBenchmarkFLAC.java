@@ -0,0 +1,226 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Functions to construct the uncompressed FLAC files of the synthetic
+ * corpus. Every subframe is stored verbatim, so the files are valid FLAC
+ * streams that any decoder can read without needing an encoder to produce
+ * them.
+ */
+
+final class DustYardBenchmarkFLAC
+{
+  private static final int BLOCK_SIZE = 4096;
+
+  private DustYardBenchmarkFLAC()
+  {
+
+  }
+
+  /**
+   * Construct a FLAC stream.
+   *
+   * @param samples    The interleaved samples
+   * @param channels   The number of channels, in the range [1, 8]
+   * @param bits       The sample size: 8, 16, or 24
+   * @param sampleRate The sample rate
+   *
+   * @return The FLAC stream
+   */
+
+  static byte[] encode(
+    final int[] samples,
+    final int channels,
+    final int bits,
+    final int sampleRate)
+  {
+    if (channels < 1 || channels > 8) {
+      throw new IllegalArgumentException(
+        String.format("Unsupported channel count %d", Integer.valueOf(channels))
+      );
+    }
+    if (bits != 8 && bits != 16 && bits != 24) {
+      throw new IllegalArgumentException(
+        String.format("Unsupported sample size %d", Integer.valueOf(bits))
+      );
+    }
+    if (samples.length % channels != 0) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Sample count %d is not a multiple of the channel count %d",
+          Integer.valueOf(samples.length),
+          Integer.valueOf(channels))
+      );
+    }
+
+    final var frames = samples.length / channels;
+    final var bytes = bits / 8;
+    final var digest = md5();
+    final var body = new ByteArrayOutputStream();
+
+    var frameMinimum = 0;
+    var frameMaximum = 0;
+    var number = 0;
+    for (int start = 0; start < frames; start += BLOCK_SIZE) {
+      final var count = Math.min(BLOCK_SIZE, frames - start);
+      final var frame = new ByteArrayOutputStream();
+
+      /*
+       * The block size follows the header, the sample rate is taken from
+       * the STREAMINFO block, and the channels are independent.
+       */
+
+      frame.write(0xff);
+      frame.write(0xf8);
+      frame.write(0x70);
+      frame.write(((channels - 1) << 4) | (sampleSizeCode(bits) << 1));
+      writeFrameNumber(frame, number);
+      frame.write((count - 1) >>> 8);
+      frame.write((count - 1) & 0xff);
+      frame.write(crc8(frame.toByteArray()));
+
+      for (int channel = 0; channel < channels; ++channel) {
+        frame.write(0x02);
+        for (int index = 0; index < count; ++index) {
+          final var value = samples[(start + index) * channels + channel];
+          for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+            frame.write((value >>> shift) & 0xff);
+          }
+        }
+      }
+
+      final var crc = crc16(frame.toByteArray());
+      frame.write(crc >>> 8);
+      frame.write(crc & 0xff);
+
+      for (int index = start * channels; index < (start + count) * channels; ++index) {
+        for (int shift = 0; shift < bits; shift += 8) {
+          digest.update((byte) (samples[index] >>> shift));
+        }
+      }
+
+      final var size = frame.size();
+      frameMinimum = number == 0 ? size : Math.min(frameMinimum, size);
+      frameMaximum = Math.max(frameMaximum, size);
+      body.writeBytes(frame.toByteArray());
+      ++number;
+    }
+
+    final var header = ByteBuffer.allocate(42);
+    header.put((byte) 'f');
+    header.put((byte) 'L');
+    header.put((byte) 'a');
+    header.put((byte) 'C');
+    header.putInt(0x80000000 | 34);
+    header.putShort((short) BLOCK_SIZE);
+    header.putShort((short) BLOCK_SIZE);
+    putInt24(header, frameMinimum);
+    putInt24(header, frameMaximum);
+    header.putLong(
+      ((long) sampleRate << 44)
+        | ((long) (channels - 1) << 41)
+        | ((long) (bits - 1) << 36)
+        | (long) frames
+    );
+    header.put(digest.digest());
+
+    final var output = new ByteArrayOutputStream(42 + body.size());
+    output.writeBytes(header.array());
+    output.writeBytes(body.toByteArray());
+    return output.toByteArray();
+  }
+
+  private static int sampleSizeCode(
+    final int bits)
+  {
+    return switch (bits) {
+      case 8 -> 1;
+      case 16 -> 4;
+      default -> 6;
+    };
+  }
+
+  private static void writeFrameNumber(
+    final ByteArrayOutputStream output,
+    final int number)
+  {
+    if (number < 0x80) {
+      output.write(number);
+    } else if (number < 0x800) {
+      output.write(0xc0 | (number >>> 6));
+      output.write(0x80 | (number & 0x3f));
+    } else if (number < 0x10000) {
+      output.write(0xe0 | (number >>> 12));
+      output.write(0x80 | ((number >>> 6) & 0x3f));
+      output.write(0x80 | (number & 0x3f));
+    } else {
+      throw new IllegalArgumentException("Too many frames");
+    }
+  }
+
+  private static void putInt24(
+    final ByteBuffer buffer,
+    final int value)
+  {
+    buffer.put((byte) (value >>> 16));
+    buffer.put((byte) (value >>> 8));
+    buffer.put((byte) value);
+  }
+
+  private static int crc8(
+    final byte[] data)
+  {
+    var crc = 0;
+    for (final var b : data) {
+      crc ^= b & 0xff;
+      for (int bit = 0; bit < 8; ++bit) {
+        crc = (crc & 0x80) != 0 ? (crc << 1) ^ 0x07 : crc << 1;
+      }
+      crc &= 0xff;
+    }
+    return crc;
+  }
+
+  private static int crc16(
+    final byte[] data)
+  {
+    var crc = 0;
+    for (final var b : data) {
+      crc ^= (b & 0xff) << 8;
+      for (int bit = 0; bit < 8; ++bit) {
+        crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x8005 : crc << 1;
+      }
+      crc &= 0xffff;
+    }
+    return crc;
+  }
+
+  private static MessageDigest md5()
+  {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
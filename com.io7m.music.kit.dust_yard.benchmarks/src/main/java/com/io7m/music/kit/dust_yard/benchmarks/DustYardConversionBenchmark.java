@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.benchmarks;
+
+import com.io7m.music.kit.dust_yard.generator.DustYardBassDrum;
+import com.io7m.music.kit.dust_yard.generator.DustYardBassDrumConversion;
+import com.io7m.music.kit.dust_yard.generator.DustYardConverter;
+import com.io7m.music.kit.dust_yard.generator.DustYardDecoderKind;
+import com.io7m.music.kit.dust_yard.generator.DustYardDownmix;
+import com.io7m.music.kit.dust_yard.generator.DustYardFLACDecoder;
+import com.io7m.music.kit.dust_yard.generator.DustYardPCM;
+import com.io7m.music.kit.dust_yard.generator.DustYardWAVWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting FLAC files to intermediate WAV files. The {@code convert}
+ * benchmark runs the bass drum conversion exactly as the generator does, and
+ * the {@code writeWAV} benchmark measures only writing already-decoded
+ * samples.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DustYardConversionBenchmark
+{
+  @Param({"JAVAX", "FLAC"})
+  public DustYardDecoderKind decoder;
+
+  private Path directory;
+  private Path output;
+  private DustYardBassDrum bassDrum;
+  private DustYardConverter converter;
+  private List<DustYardPCM> decoded;
+
+  /**
+   * Generate the corpus.
+   *
+   * @throws Exception On errors
+   */
+
+  @Setup
+  public void setup()
+    throws Exception
+  {
+    this.directory = Files.createTempDirectory("dust_yard-convert-");
+    this.output = this.directory.resolve("output");
+
+    final var corpus =
+      DustYardBenchmarkCorpus.create(this.directory, 8, 2.0);
+
+    this.bassDrum =
+      DustYardBassDrum.open(
+        corpus.directory().resolve(DustYardBenchmarkCorpus.BASS_DRUM));
+    this.converter =
+      DustYardConverter.builder()
+        .setDecoder(this.decoder)
+        .build();
+
+    this.decoded = new ArrayList<>();
+    for (final var file : corpus.bassDrumFiles()) {
+      this.decoded.add(DustYardFLACDecoder.decode(file, DustYardDownmix.MID));
+    }
+  }
+
+  /**
+   * Delete the corpus.
+   *
+   * @throws Exception On errors
+   */
+
+  @TearDown
+  public void tearDown()
+    throws Exception
+  {
+    DustYardBenchmarkCorpus.deleteRecursively(this.directory);
+  }
+
+  /**
+   * Convert the bass drum samples.
+   *
+   * @return The converted samples
+   *
+   * @throws Exception On errors
+   */
+
+  @Benchmark
+  public DustYardBassDrum convert()
+    throws Exception
+  {
+    return DustYardBassDrumConversion.convertFLACs(
+      this.converter,
+      this.bassDrum,
+      this.output
+    );
+  }
+
+  /**
+   * Write the decoded bass drum samples as WAV files.
+   *
+   * @throws Exception On errors
+   */
+
+  @Benchmark
+  public void writeWAV()
+    throws Exception
+  {
+    Files.createDirectories(this.output);
+    for (int index = 0; index < this.decoded.size(); ++index) {
+      DustYardWAVWriter.write(
+        this.decoded.get(index),
+        this.output.resolve(String.format("%02d.wav", Integer.valueOf(index)))
+      );
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.benchmarks;
+
+import com.io7m.music.kit.dust_yard.generator.DustYardDecoderKind;
+import com.io7m.music.kit.dust_yard.generator.DustYardDownmix;
+import com.io7m.music.kit.dust_yard.generator.DustYardFLACDecoder;
+import com.io7m.music.kit.dust_yard.generator.DustYardFLACToMono16;
+import com.io7m.music.kit.dust_yard.generator.DustYardPCM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding FLAC files to 16-bit mono, either through the chain of
+ * {@code javax.sound} conversions or with the direct decoder. Each
+ * invocation decodes every file in the bass drum directory of the corpus.
+ * The corpus is the quartertone corpus if its directory is given with
+ * {@code -p corpus=com.io7m.music.quartertone.raw}, and is otherwise a
+ * synthetic corpus.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DustYardDecodeBenchmark
+{
+  @Param({"JAVAX", "FLAC"})
+  public DustYardDecoderKind decoder;
+
+  /**
+   * The directory containing the corpus, or the empty string to generate a
+   * synthetic corpus.
+   */
+
+  @Param({""})
+  public String corpus;
+
+  private Path directory;
+  private List<Path> files;
+
+  /**
+   * Open or generate the corpus.
+   *
+   * @throws Exception On errors
+   */
+
+  @Setup
+  public void setup()
+    throws Exception
+  {
+    if (this.corpus.isEmpty()) {
+      this.directory = Files.createTempDirectory("dust_yard-decode-");
+      this.files =
+        DustYardBenchmarkCorpus.create(this.directory, 8, 2.0)
+          .bassDrumFiles();
+    } else {
+      this.files =
+        DustYardBenchmarkCorpus.open(Paths.get(this.corpus))
+          .bassDrumFiles();
+    }
+
+    if (this.files.isEmpty()) {
+      throw new IllegalStateException("The corpus has no bass drum files");
+    }
+  }
+
+  /**
+   * Delete the corpus, if it was generated.
+   *
+   * @throws Exception On errors
+   */
+
+  @TearDown
+  public void tearDown()
+    throws Exception
+  {
+    if (this.directory != null) {
+      DustYardBenchmarkCorpus.deleteRecursively(this.directory);
+    }
+  }
+
+  /**
+   * Decode every file.
+   *
+   * @param blackhole The blackhole
+   *
+   * @throws Exception On errors
+   */
+
+  @Benchmark
+  public void decode(
+    final Blackhole blackhole)
+    throws Exception
+  {
+    for (final var file : this.files) {
+      switch (this.decoder) {
+        case JAVAX -> {
+          try (var stream = DustYardFLACToMono16.readAs16Mono(file)) {
+            blackhole.consume(DustYardPCM.of(stream));
+          }
+        }
+        case FLAC -> {
+          blackhole.consume(
+            DustYardFLACDecoder.decode(file, DustYardDownmix.MID));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.benchmarks;
+
+import com.io7m.jnoisetype.writer.api.NTBuilderProviderType;
+import com.io7m.jnoisetype.writer.api.NTWriterProviderType;
+import com.io7m.music.kit.dust_yard.generator.DustYardBassDrum;
+import com.io7m.music.kit.dust_yard.generator.DustYardBassDrumConversion;
+import com.io7m.music.kit.dust_yard.generator.DustYardChinaHiHat;
+import com.io7m.music.kit.dust_yard.generator.DustYardChinaHiHatConversion;
+import com.io7m.music.kit.dust_yard.generator.DustYardConverter;
+import com.io7m.music.kit.dust_yard.generator.DustYardExecutorKind;
+import com.io7m.music.kit.dust_yard.generator.DustYardExecutors;
+import com.io7m.music.kit.dust_yard.generator.DustYardFont;
+import com.io7m.music.kit.dust_yard.generator.DustYardOutputMode;
+import com.io7m.music.kit.dust_yard.generator.DustYardSnare;
+import com.io7m.music.kit.dust_yard.generator.DustYardSnareConversion;
+import com.io7m.music.kit.dust_yard.generator.DustYardSplash;
+import com.io7m.music.kit.dust_yard.generator.DustYardSplashConversion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ServiceLoader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing the complete soundfont from a converted synthetic corpus, in each
+ * of the output modes.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DustYardFontWriteBenchmark
+{
+  @Param({"STANDARD", "PARALLEL", "MAPPED"})
+  public DustYardOutputMode mode;
+
+  private Path directory;
+  private Path target;
+  private DustYardFont font;
+  private ExecutorService executor;
+  private int threads;
+
+  /**
+   * Generate and convert the corpus.
+   *
+   * @throws Exception On errors
+   */
+
+  @Setup
+  public void setup()
+    throws Exception
+  {
+    this.directory = Files.createTempDirectory("dust_yard-font-");
+    this.target = this.directory.resolve("dust_yard.sf2");
+
+    final var corpus =
+      DustYardBenchmarkCorpus.create(this.directory.resolve("corpus"), 8, 1.0);
+    final var source =
+      corpus.directory();
+    final var converted =
+      this.directory.resolve("converted");
+    final var converter =
+      DustYardConverter.builder()
+        .build();
+
+    final var snare =
+      DustYardSnareConversion.convertFLACs(
+        converter,
+        DustYardSnare.open(source.resolve(DustYardBenchmarkCorpus.SNARE)),
+        converted.resolve("snare"));
+    final var bassDrum =
+      DustYardBassDrumConversion.convertFLACs(
+        converter,
+        DustYardBassDrum.open(source.resolve(DustYardBenchmarkCorpus.BASS_DRUM)),
+        converted.resolve("bd"));
+    final var chinaHiHat =
+      DustYardChinaHiHatConversion.convertFLACs(
+        converter,
+        DustYardChinaHiHat.open(source.resolve(DustYardBenchmarkCorpus.CHINA_HI_HAT)),
+        converted.resolve("cym"));
+    final var splash =
+      DustYardSplashConversion.convertFLACs(
+        converter,
+        DustYardSplash.open(source.resolve(DustYardBenchmarkCorpus.SPLASH)),
+        converted.resolve("splash"));
+
+    this.font =
+      DustYardFont.of(
+        ServiceLoader.load(NTBuilderProviderType.class)
+          .findFirst()
+          .orElseThrow(),
+        ServiceLoader.load(NTWriterProviderType.class)
+          .findFirst()
+          .orElseThrow(),
+        snare,
+        bassDrum,
+        chinaHiHat,
+        splash
+      );
+
+    this.threads = Runtime.getRuntime().availableProcessors();
+    this.executor =
+      DustYardExecutors.create(DustYardExecutorKind.PLATFORM, this.threads, "write");
+  }
+
+  /**
+   * Delete the corpus and the soundfont.
+   *
+   * @throws Exception On errors
+   */
+
+  @TearDown
+  public void tearDown()
+    throws Exception
+  {
+    this.executor.shutdownNow();
+    DustYardBenchmarkCorpus.deleteRecursively(this.directory);
+  }
+
+  /**
+   * Write the soundfont.
+   *
+   * @throws Exception On errors
+   */
+
+  @Benchmark
+  public void write()
+    throws Exception
+  {
+    this.font.write(
+      this.target,
+      this.mode,
+      this.executor,
+      this.threads
+    );
+  }
+}
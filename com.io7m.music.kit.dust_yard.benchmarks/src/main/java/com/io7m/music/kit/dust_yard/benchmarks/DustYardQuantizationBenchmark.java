@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.benchmarks;
+
+import com.io7m.music.kit.dust_yard.generator.DustYardQuantizerType;
+import com.io7m.music.kit.dust_yard.generator.DustYardQuantizerScalar;
+import com.io7m.music.kit.dust_yard.generator.DustYardSampleBuffer16;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The quantization kernel used by the sample writer, over a block of
+ * samples. The setup fails if the kernel does not produce exactly the same
+ * output as quantizing one sample at a time.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DustYardQuantizationBenchmark
+{
+  private static final int FRAMES = 48000 * 4;
+
+  private DustYardQuantizerType quantizer;
+  private double[] input;
+  private short[] output;
+
+  /**
+   * Create the kernel and the input.
+   */
+
+  @Setup
+  public void setup()
+  {
+    this.input = new double[FRAMES];
+    this.output = new short[FRAMES];
+    for (int index = 0; index < FRAMES; ++index) {
+      this.input[index] = 1.1 * Math.sin(index * 0.01);
+    }
+
+    this.quantizer = new DustYardQuantizerScalar();
+
+    final var expected = new short[FRAMES];
+    for (int index = 0; index < FRAMES; ++index) {
+      expected[index] = DustYardSampleBuffer16.quantize(this.input[index]);
+    }
+    this.quantizer.quantize(this.input, this.output, FRAMES);
+    for (int index = 0; index < FRAMES; ++index) {
+      if (expected[index] != this.output[index]) {
+        throw new IllegalStateException(
+          String.format(
+            "Kernel differs at %d: %d != %d",
+            Integer.valueOf(index),
+            Short.valueOf(expected[index]),
+            Short.valueOf(this.output[index]))
+        );
+      }
+    }
+  }
+
+  /**
+   * Quantize the input.
+   *
+   * @return The output
+   */
+
+  @Benchmark
+  public short[] quantize()
+  {
+    this.quantizer.quantize(this.input, this.output, FRAMES);
+    return this.output;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.benchmarks;
+
+import com.io7m.jsamplebuffer.api.SampleBufferType;
+import com.io7m.jsamplebuffer.vanilla.SampleBufferDouble;
+import com.io7m.music.kit.dust_yard.generator.DustYardSampleBuffer16;
+import com.io7m.music.kit.dust_yard.generator.DustYardSampleBufferKind;
+import com.io7m.music.kit.dust_yard.generator.DustYardSampleWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Copying a sample into the soundfont file, as
+ * {@code DustYardFont.copySampleToChannel} does, from either a buffer of
+ * doubles or a 16-bit buffer. The {@code perFrame} benchmark is the loop
+ * that the soundfont writer originally used.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DustYardSampleCopyBenchmark
+{
+  private static final int FRAMES = 48000 * 4;
+
+  @Param({"DOUBLE", "SHORT"})
+  public String buffer;
+
+  private Path file;
+  private FileChannel channel;
+  private SampleBufferType source;
+  private DustYardSampleWriter writer;
+
+  /**
+   * Create the sample and the output file.
+   *
+   * @throws Exception On errors
+   */
+
+  @Setup
+  public void setup()
+    throws Exception
+  {
+    this.source =
+      switch (this.buffer) {
+        case "DOUBLE" -> SampleBufferDouble.createWithHeapBuffer(
+          1, FRAMES, 48000.0);
+        case "SHORT" -> DustYardSampleBuffer16.create(
+          DustYardSampleBufferKind.HEAP, 1, FRAMES, 48000.0);
+        default -> throw new IllegalArgumentException(this.buffer);
+      };
+
+    for (int index = 0; index < FRAMES; ++index) {
+      this.source.frameSetExact(index, 1.1 * Math.sin(index * 0.01));
+    }
+
+    this.file = Files.createTempFile("dust_yard-copy-", ".bin");
+    this.channel = FileChannel.open(this.file, WRITE);
+    this.writer = new DustYardSampleWriter();
+  }
+
+  /**
+   * Delete the output file.
+   *
+   * @throws Exception On errors
+   */
+
+  @TearDown
+  public void tearDown()
+    throws Exception
+  {
+    this.channel.close();
+    Files.deleteIfExists(this.file);
+  }
+
+  /**
+   * Copy the sample with the generator's sample writer.
+   *
+   * @throws Exception On errors
+   */
+
+  @Benchmark
+  public void copy()
+    throws Exception
+  {
+    this.channel.position(0L);
+    this.writer.write(this.source, this.channel);
+  }
+
+  /**
+   * Copy the sample with the original per-frame loop.
+   *
+   * @throws Exception On errors
+   */
+
+  @Benchmark
+  public void perFrame()
+    throws Exception
+  {
+    final var data =
+      ByteBuffer.allocate(Math.toIntExact(this.source.samples() * 2L))
+        .order(LITTLE_ENDIAN);
+
+    for (var index = 0L; index < this.source.frames(); ++index) {
+      final var frame_d = this.source.frameGetExact(index);
+      final var frame_s = frame_d * 32767.0;
+      final var frame_i = (short) frame_s;
+      data.putShort(frame_i);
+    }
+
+    this.channel.position(0L);
+    this.channel.write(data.flip());
+  }
+}
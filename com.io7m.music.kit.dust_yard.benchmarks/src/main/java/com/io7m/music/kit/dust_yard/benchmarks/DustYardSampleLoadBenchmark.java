@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.benchmarks;
+
+import com.io7m.jsamplebuffer.api.SampleBufferType;
+import com.io7m.jsamplebuffer.vanilla.SampleBufferDouble;
+import com.io7m.jsamplebuffer.xmedia.SampleBufferXMedia;
+import com.io7m.music.kit.dust_yard.generator.DustYardDownmix;
+import com.io7m.music.kit.dust_yard.generator.DustYardFLACDecoder;
+import com.io7m.music.kit.dust_yard.generator.DustYardSampleBufferKind;
+import com.io7m.music.kit.dust_yard.generator.DustYardSampleBuffers;
+import com.io7m.music.kit.dust_yard.generator.DustYardWAVWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sound.sampled.AudioSystem;
+import java.io.BufferedInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading intermediate WAV files into sample buffers: through
+ * {@link SampleBufferXMedia#sampleBufferOfStream} into a buffer of doubles,
+ * as the soundfont writer originally did, and through the generator's own
+ * 16-bit buffers.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DustYardSampleLoadBenchmark
+{
+  private Path directory;
+  private Path file;
+
+  /**
+   * Generate a WAV file.
+   *
+   * @throws Exception On errors
+   */
+
+  @Setup
+  public void setup()
+    throws Exception
+  {
+    this.directory = Files.createTempDirectory("dust_yard-load-");
+    final var corpus =
+      DustYardBenchmarkCorpus.create(this.directory, 1, 4.0);
+
+    this.file = this.directory.resolve("sample.wav");
+    DustYardWAVWriter.write(
+      DustYardFLACDecoder.decode(
+        corpus.bassDrumFiles().get(0), DustYardDownmix.MID),
+      this.file
+    );
+  }
+
+  /**
+   * Delete the WAV file.
+   *
+   * @throws Exception On errors
+   */
+
+  @TearDown
+  public void tearDown()
+    throws Exception
+  {
+    DustYardBenchmarkCorpus.deleteRecursively(this.directory);
+  }
+
+  /**
+   * Load the file through the xmedia loader into a buffer of doubles.
+   *
+   * @return The buffer
+   *
+   * @throws Exception On errors
+   */
+
+  @Benchmark
+  public SampleBufferType loadXMediaDouble()
+    throws Exception
+  {
+    try (var stream = AudioSystem.getAudioInputStream(
+      new BufferedInputStream(Files.newInputStream(this.file)))) {
+      return SampleBufferXMedia.sampleBufferOfStream(
+        stream,
+        SampleBufferDouble::createWithHeapBuffer
+      );
+    }
+  }
+
+  /**
+   * Load the file into a 16-bit heap buffer.
+   *
+   * @return The buffer
+   *
+   * @throws Exception On errors
+   */
+
+  @Benchmark
+  public SampleBufferType loadHeap16()
+    throws Exception
+  {
+    return DustYardSampleBuffers.ofFile(
+      DustYardSampleBufferKind.HEAP, this.file);
+  }
+
+  /**
+   * Load the file into a 16-bit direct buffer.
+   *
+   * @return The buffer
+   *
+   * @throws Exception On errors
+   */
+
+  @Benchmark
+  public SampleBufferType loadDirect16()
+    throws Exception
+  {
+    return DustYardSampleBuffers.ofFile(
+      DustYardSampleBufferKind.DIRECT, this.file);
+  }
+}
@@ -19,43 +19,103 @@ package com.io7m.music.kit.dust_yard.generator;
 import com.io7m.jnoisetype.writer.api.NTBuilderProviderType;
 import com.io7m.jnoisetype.writer.api.NTWriterProviderType;
 
+import java.io.IOException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.ServiceLoader;
+import java.util.concurrent.ExecutorService;
 
 public final class DustYard
 {
-  private final Path sourceDirectory;
-  private final Path temporaryDirectory;
-  private final Path targetFile;
+  private static final int PIPELINES = 4;
+
+  private static final String SNARE_DIRECTORY =
+    "8833__quartertone__snaredrum-14x08inchtama-veryhighpitch-multisampled";
+  private static final String BASS_DRUM_DIRECTORY =
+    "8586__quartertone__bassdrum-22x16-open-multisampled";
+  private static final String CHINA_HI_HAT_DIRECTORY =
+    "8656__quartertone__hihats-18x20inchchinahats-multisampled";
+  private static final String SPLASH_DIRECTORY =
+    "12776__quartertone__splashcymbal-08inzildjiana-efx-1";
+
+  private final DustYardConfiguration configuration;
+  private final NTBuilderProviderType builders;
+  private final NTWriterProviderType writers;
+  private final DustYardMetrics metrics;
 
   private DustYard(
-    final Path inSourceDirectory,
-    final Path inTemporaryDirectory,
-    final Path inTargetFile)
+    final DustYardConfiguration inConfiguration,
+    final NTBuilderProviderType inBuilders,
+    final NTWriterProviderType inWriters)
+  {
+    this.configuration =
+      Objects.requireNonNull(inConfiguration, "configuration");
+    this.builders =
+      Objects.requireNonNull(inBuilders, "builders");
+    this.writers =
+      Objects.requireNonNull(inWriters, "writers");
+    this.metrics =
+      new DustYardMetrics();
+  }
+
+  public static DustYard create(
+    final DustYardConfiguration configuration)
   {
-    this.sourceDirectory =
-      Objects.requireNonNull(inSourceDirectory, "sourceDirectory");
-    this.temporaryDirectory =
-      Objects.requireNonNull(inTemporaryDirectory, "temporaryDirectory");
-    this.targetFile =
-      Objects.requireNonNull(inTargetFile, "targetFile");
+    return create(configuration, builderProvider(), writerProvider());
+  }
+
+  /**
+   * Create a generator that uses the given providers, rather than looking
+   * up providers with {@link ServiceLoader}.
+   *
+   * @param configuration The configuration
+   * @param builders      The builder provider
+   * @param writers       The writer provider
+   *
+   * @return A generator
+   */
+
+  public static DustYard create(
+    final DustYardConfiguration configuration,
+    final NTBuilderProviderType builders,
+    final NTWriterProviderType writers)
+  {
+    return new DustYard(configuration, builders, writers);
+  }
+
+  /**
+   * @return The first available builder provider
+   */
+
+  public static NTBuilderProviderType builderProvider()
+  {
+    return ServiceLoader.load(NTBuilderProviderType.class)
+      .findFirst()
+      .orElseThrow(() -> new IllegalStateException(
+        "No builder service available"));
+  }
+
+  /**
+   * @return The first available writer provider
+   */
+
+  public static NTWriterProviderType writerProvider()
+  {
+    return ServiceLoader.load(NTWriterProviderType.class)
+      .findFirst()
+      .orElseThrow(() -> new IllegalStateException(
+        "No writer service available"));
   }
 
   public static void main(
     final String[] args)
     throws Exception
   {
-    final var sourceDirectory =
-      Paths.get(args[0]);
-    final var temporaryDirectory =
-      Paths.get(args[1]);
-    final var targetFile =
-      Paths.get(args[2]);
-
     final var dustYard =
-      new DustYard(sourceDirectory, temporaryDirectory, targetFile);
+      create(DustYardCommandLine.parse(args));
 
     dustYard.execute();
   }
@@ -63,72 +123,364 @@ public final class DustYard
   public void execute()
     throws Exception
   {
-    final var builders =
-      ServiceLoader.load(NTBuilderProviderType.class)
-        .findFirst()
-        .orElseThrow(() -> new IllegalStateException(
-          "No builder service available"));
+    if (this.configuration.plan()) {
+      this.plan(this.builders, this.writers);
+      return;
+    }
 
-    final var writers =
-      ServiceLoader.load(NTWriterProviderType.class)
-        .findFirst()
-        .orElseThrow(() -> new IllegalStateException(
-          "No writer service available"));
+    final var report =
+      new DustYardBuildReport();
+    final var converterBuilder =
+      DustYardConverter.builder();
 
-    final var snare =
-      DustYardSnare.open(
-        this.sourceDirectory.resolve(
-          "8833__quartertone__snaredrum-14x08inchtama-veryhighpitch-multisampled")
+    converterBuilder.setDecoder(this.configuration.decoder());
+    converterBuilder.setDownmix(this.configuration.downmix());
+    converterBuilder.setReport(report);
+    converterBuilder.setMetrics(this.metrics);
+    this.configuration.sampleRate().ifPresent(converterBuilder::setSampleRate);
+    this.configuration.trimStart().ifPresent(converterBuilder::setStartTrim);
+    this.configuration.trimEnd().ifPresent(converterBuilder::setEndTrim);
+
+    /*
+     * In direct mode, decoded samples are handed straight to the font
+     * builder and intermediate files are only written on request.
+     */
+
+    final var store = new DustYardSampleStore(this.configuration.sampleBuffers());
+    if (this.configuration.direct()) {
+      converterBuilder.setSampleStore(store);
+      converterBuilder.setWriteFiles(this.configuration.writeTemporaryFiles());
+    }
+
+    if (this.configuration.cache()) {
+      converterBuilder.setCache(
+        DustYardConversionCache.open(
+          this.configuration.temporaryDirectory().resolve("cache"),
+          this.configuration.cacheSize()
+        )
       );
-    final var snareConverted =
-      DustYardSnareConversion.convertFLACs(
-        snare,
-        this.temporaryDirectory.resolve("snare")
+    }
+
+    /*
+     * Each instrument reads its own source directory and writes its own
+     * temporary directory, so the instruments can be converted concurrently.
+     */
+
+    final var executorKind =
+      this.configuration.executor();
+    final var threads =
+      this.configuration.threads();
+    final var executor =
+      DustYardExecutors.create(
+        executorKind,
+        Math.min(PIPELINES, threads),
+        "pipeline"
       );
 
-    final var bd =
-      DustYardBassDrum.open(
-        this.sourceDirectory.resolve(
-          "8586__quartertone__bassdrum-22x16-open-multisampled")
+    /*
+     * Individual files are converted on a separate executor; the pipeline
+     * threads block waiting for conversions, and sharing a bounded pool
+     * between the two would risk starvation.
+     */
+
+    final var conversionExecutor =
+      DustYardExecutors.create(executorKind, threads, "convert");
+
+    if (executorKind != DustYardExecutorKind.SERIAL) {
+      converterBuilder.setExecutor(conversionExecutor, threads);
+    }
+
+    final var converter = converterBuilder.build();
+
+    try {
+      final var index =
+        this.index(conversionExecutor, threads);
+
+      final var tasks =
+        new DustYardTaskGroup(executor);
+      final var snareTask =
+        tasks.submit("snare", () -> this.snare(converter, index));
+      final var bdTask =
+        tasks.submit("bass drum", () -> this.bassDrum(converter, index));
+      final var cymTask =
+        tasks.submit("china hi-hat", () -> this.chinaHiHat(converter, index));
+      final var splashTask =
+        tasks.submit("splash", () -> this.splash(converter, index));
+
+      tasks.await();
+
+      final var snare = snareTask.resultNow();
+      final var bd = bdTask.resultNow();
+      final var cym = cymTask.resultNow();
+      final var splash = splashTask.resultNow();
+
+      /*
+       * Variants share the converted samples of the main kit, so samples
+       * must not be removed from the store as the main kit is written.
+       */
+
+      final var variants =
+        this.configuration.variants();
+      final var loading =
+        variants.isEmpty()
+          ? this.configuration.sampleLoading()
+          : DustYardSampleLoading.EAGER;
+
+      /*
+       * Each font is deduplicated separately, so each font has its own
+       * report. The conversion report holds the trims, which are made once
+       * for all of the fonts.
+       */
+
+      final var targetFile =
+        this.configuration.targetFile();
+      final var reports =
+        new LinkedHashMap<Path, DustYardBuildReport>();
+
+      reports.put(targetFile, new DustYardBuildReport());
+      for (final var variant : variants) {
+        reports.put(variant.targetFile(), new DustYardBuildReport());
+      }
+
+      final var fonts =
+        new DustYardTaskGroup(executor);
+
+      fonts.submit("font", () -> {
+        DustYardFont.of(
+          this.builders,
+          this.writers,
+          snare,
+          bd,
+          cym,
+          splash,
+          store,
+          loading,
+          this.deduplication(reports.get(targetFile))
+        ).write(
+          targetFile,
+          this.configuration.outputMode(),
+          conversionExecutor,
+          threads,
+          this.metrics
+        );
+        return null;
+      });
+
+      for (final var variant : variants) {
+        fonts.submit(variant.name(), () -> {
+          this.variant(
+            variant,
+            new DustYardFont(
+              this.builders,
+              this.writers,
+              variant.snare(snare),
+              variant.bassDrum(bd),
+              cym,
+              variant.splash(splash),
+              variant.sources(store, this.configuration.sampleBuffers()),
+              this.deduplication(reports.get(variant.targetFile()))
+            ),
+            conversionExecutor,
+            threads
+          );
+          return null;
+        });
+      }
+
+      fonts.await();
+      report.log("conversion");
+      for (final var entry : reports.entrySet()) {
+        entry.getValue().log(entry.getKey().getFileName().toString());
+      }
+
+      this.metrics.writeJSON(
+        targetFile.resolveSibling(targetFile.getFileName() + ".metrics.json"));
+    } finally {
+      executor.shutdownNow();
+      conversionExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Write a variant of the kit. Each variant has its own metrics, as the
+   * variants are written concurrently with the main kit.
+   */
+
+  private void variant(
+    final DustYardVariant variant,
+    final DustYardFont font,
+    final ExecutorService conversionExecutor,
+    final int threads)
+    throws IOException
+  {
+    final var metrics = new DustYardMetrics();
+    final var targetFile = variant.targetFile();
+
+    font.write(
+      targetFile,
+      this.configuration.outputMode(),
+      conversionExecutor,
+      threads,
+      metrics
+    );
+
+    metrics.writeJSON(
+      targetFile.resolveSibling(targetFile.getFileName() + ".metrics.json"));
+  }
+
+  /**
+   * Plan the build from the headers of the source files, without decoding
+   * anything.
+   */
+
+  private void plan(
+    final NTBuilderProviderType builders,
+    final NTWriterProviderType writers)
+    throws IOException
+  {
+    final var threads =
+      this.configuration.threads();
+    final var executor =
+      DustYardExecutors.create(this.configuration.executor(), threads, "index");
+
+    final Optional<DustYardSourceIndex> index;
+    try {
+      index = this.index(executor, threads);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    DustYardBuildPlan.create(
+      this.configuration,
+      builders,
+      writers,
+      DustYardSnare.of(this.sourceFiles(index, SNARE_DIRECTORY)),
+      DustYardBassDrum.of(this.sourceFiles(index, BASS_DRUM_DIRECTORY)),
+      DustYardChinaHiHat.of(this.sourceFiles(index, CHINA_HI_HAT_DIRECTORY)),
+      DustYardSplash.of(this.sourceFiles(index, SPLASH_DIRECTORY))
+    ).log();
+  }
+
+  private Optional<DustYardDeduplication> deduplication(
+    final DustYardBuildReport report)
+  {
+    if (!this.configuration.deduplicate()) {
+      return Optional.empty();
+    }
+    return Optional.of(
+      new DustYardDeduplication(this.configuration.deduplicateTolerance(), report)
+    );
+  }
+
+  private Optional<DustYardSourceIndex> index(
+    final ExecutorService executor,
+    final int threads)
+    throws IOException
+  {
+    if (!this.configuration.index()) {
+      return Optional.empty();
+    }
+
+    final var measurement =
+      this.metrics.beginAllThreads(DustYardStage.SCAN);
+
+    try {
+      return Optional.of(
+        DustYardSourceIndex.build(
+          this.configuration.sourceDirectory(),
+          this.configuration.temporaryDirectory().resolve("source-index.bin"),
+          executor,
+          threads
+        )
       );
-    final var bdConverted =
-      DustYardBassDrumConversion.convertFLACs(
-        bd,
-        this.temporaryDirectory.resolve("bd")
+    } finally {
+      measurement.close();
+    }
+  }
+
+  private DustYardSnare snare(
+    final DustYardConverter converter,
+    final Optional<DustYardSourceIndex> index)
+    throws IOException
+  {
+    final var snare =
+      DustYardSnare.of(
+        this.sourceFiles(index, SNARE_DIRECTORY)
       );
+    return DustYardSnareConversion.convertFLACs(
+      converter,
+      snare,
+      this.configuration.temporaryDirectory().resolve("snare")
+    );
+  }
 
-    final var cym =
-      DustYardChinaHiHat.open(
-        this.sourceDirectory.resolve(
-          "8656__quartertone__hihats-18x20inchchinahats-multisampled")
+  private DustYardBassDrum bassDrum(
+    final DustYardConverter converter,
+    final Optional<DustYardSourceIndex> index)
+    throws IOException
+  {
+    final var bd =
+      DustYardBassDrum.of(
+        this.sourceFiles(index, BASS_DRUM_DIRECTORY)
       );
-    final var cymConverted =
-      DustYardChinaHiHatConversion.convertFLACs(
-        cym,
-        this.temporaryDirectory.resolve("cym")
+    return DustYardBassDrumConversion.convertFLACs(
+      converter,
+      bd,
+      this.configuration.temporaryDirectory().resolve("bd")
+    );
+  }
+
+  private DustYardChinaHiHat chinaHiHat(
+    final DustYardConverter converter,
+    final Optional<DustYardSourceIndex> index)
+    throws IOException
+  {
+    final var cym =
+      DustYardChinaHiHat.of(
+        this.sourceFiles(index, CHINA_HI_HAT_DIRECTORY)
       );
+    return DustYardChinaHiHatConversion.convertFLACs(
+      converter,
+      cym,
+      this.configuration.temporaryDirectory().resolve("cym")
+    );
+  }
 
+  private DustYardSplash splash(
+    final DustYardConverter converter,
+    final Optional<DustYardSourceIndex> index)
+    throws IOException
+  {
     final var splash =
-      DustYardSplash.open(
-        this.sourceDirectory.resolve(
-          "12776__quartertone__splashcymbal-08inzildjiana-efx-1")
-      );
-    final var splashConverted =
-      DustYardSplashConversion.convertFLACs(
-        splash,
-        this.temporaryDirectory.resolve("splash")
+      DustYardSplash.of(
+        this.sourceFiles(index, SPLASH_DIRECTORY)
       );
+    return DustYardSplashConversion.convertFLACs(
+      converter,
+      splash,
+      this.configuration.temporaryDirectory().resolve("splash")
+    );
+  }
 
-    final var dustYardFont =
-      DustYardFont.of(
-        builders,
-        writers,
-        snareConverted,
-        bdConverted,
-        cymConverted,
-        splashConverted
-      );
+  private List<DustYardSourceFile> sourceFiles(
+    final Optional<DustYardSourceIndex> index,
+    final String name)
+    throws IOException
+  {
+    final var directory =
+      this.configuration.sourceDirectory().resolve(name);
+
+    if (index.isPresent()) {
+      return index.get().filesIn(directory);
+    }
+
+    final var measurement =
+      this.metrics.begin(DustYardStage.SCAN);
 
-    dustYardFont.write(this.targetFile);
+    try {
+      return DustYardSourceIndex.scan(directory);
+    } finally {
+      measurement.close();
+    }
   }
 }
@@ -17,20 +17,14 @@
 package com.io7m.music.kit.dust_yard.generator;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public final class DustYardBassDrum
 {
-  private static final Pattern BD_PATTERN =
-    Pattern.compile(
-      "([0-9]+)__quartertone__bd22x16-mlp-o-v([0-9]+)\\.flac");
-
   private final SortedMap<Integer, Path> byVelocity;
 
   public DustYardBassDrum(
@@ -43,30 +37,26 @@ public final class DustYardBassDrum
     final Path directory)
     throws IOException
   {
-    final var byVelocity = new TreeMap<Integer,Path>();
+    return of(DustYardSourceIndex.scan(directory));
+  }
 
-    try (var pathStream = Files.list(directory)) {
-      final var files =
-        pathStream
-          .map(Path::toAbsolutePath)
-          .sorted()
-          .collect(Collectors.toList());
+  public static DustYardBassDrum of(
+    final List<DustYardSourceFile> files)
+  {
+    final var byVelocity = new TreeMap<Integer,Path>();
 
-      for (final var file : files) {
-        final var fileName = file.getFileName().toString();
-        final var matcher = BD_PATTERN.matcher(fileName);
-        if (matcher.matches()) {
-          final var velocity =
-            matcher.group(2);
-          final var velocityNumber =
-            Integer.valueOf(Integer.valueOf(velocity).intValue() - 1);
+    for (final var file : files) {
+      if (file.kind() == DustYardSourceKind.BASS_DRUM) {
+        final var velocity =
+          file.group(2);
+        final var velocityNumber =
+          Integer.valueOf(Integer.valueOf(velocity).intValue() - 1);
 
-          byVelocity.put(velocityNumber, file);
-        }
+        byVelocity.put(velocityNumber, file.file());
       }
-
-      return new DustYardBassDrum(byVelocity);
     }
+
+    return new DustYardBassDrum(byVelocity);
   }
 
   public SortedMap<Integer, Path> byVelocity()
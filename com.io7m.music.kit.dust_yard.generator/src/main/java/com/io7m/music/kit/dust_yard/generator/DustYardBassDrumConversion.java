@@ -16,22 +16,14 @@
 
 package com.io7m.music.kit.dust_yard.generator;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import javax.sound.sampled.AudioFileFormat;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.TreeMap;
 
 public final class DustYardBassDrumConversion
 {
-  private static final Logger LOG =
-    LoggerFactory.getLogger(DustYardBassDrumConversion.class);
+  private static final String INSTRUMENT = "bass drum";
 
   private DustYardBassDrumConversion()
   {
@@ -43,44 +35,30 @@ public final class DustYardBassDrumConversion
     final Path outputDirectory)
     throws IOException
   {
-    final var bdOutput =
-      new TreeMap<Integer,Path>();
-
-    try {
-      input.byVelocity().forEach((velocity, path) -> {
-        try {
-          convert(bdOutput, velocity, path, outputDirectory);
-        } catch (final IOException e) {
-          throw new UncheckedIOException(e);
-        }
-      });
-    } catch (final UncheckedIOException e) {
-      throw e.getCause();
-    }
-
-    return new DustYardBassDrum(bdOutput);
+    return convertFLACs(DustYardConverter.serial(), input, outputDirectory);
   }
 
-  private static void convert(
-    final TreeMap<Integer,Path> bdOutput,
-    final Integer velocity,
-    final Path path,
+  public static DustYardBassDrum convertFLACs(
+    final DustYardConverter converter,
+    final DustYardBassDrum input,
     final Path outputDirectory)
     throws IOException
   {
-    final var outputFile =
-      outputDirectory.resolve(String.format("%02d.wav", velocity));
-
-    Files.createDirectories(outputDirectory);
+    final var bdOutput =
+      new TreeMap<Integer,Path>();
+    final var conversions =
+      new ArrayList<DustYardConversion>();
 
-    LOG.info("write {}", outputFile);
+    for (final var entry : input.byVelocity().entrySet()) {
+      final var velocity = entry.getKey();
+      final var outputFile =
+        outputDirectory.resolve(String.format("%02d.wav", velocity));
 
-    try (var stream = DustYardFLACToMono16.readAs16Mono(path)) {
-      AudioSystem.write(stream, AudioFileFormat.Type.WAVE, outputFile.toFile());
-    } catch (final UnsupportedAudioFileException e) {
-      throw new IOException(e);
+      conversions.add(new DustYardConversion(INSTRUMENT, entry.getValue(), outputFile));
+      bdOutput.put(velocity, outputFile);
     }
 
-    bdOutput.put(velocity, outputFile);
+    converter.convertAll(conversions);
+    return new DustYardBassDrum(bdOutput);
   }
 }
@@ -0,0 +1,319 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import com.io7m.jnoisetype.writer.api.NTBuilderProviderType;
+import com.io7m.jnoisetype.writer.api.NTWriterProviderType;
+import com.io7m.jsamplebuffer.api.SampleBufferType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A plan of a complete build, computed from the {@code STREAMINFO} headers
+ * of the source files without decoding any audio.
+ *
+ * @param font           The plan of the soundfont
+ * @param variants       The plans of the variants
+ * @param sourceSize     The total size in bytes of the source files
+ * @param retainedMemory The estimated size in bytes of the sample data held
+ *                       in memory until the soundfonts are written
+ * @param workingMemory  The estimated size in bytes of the buffers used by
+ *                       conversions running concurrently
+ * @param exact          {@code false} if trimming or deduplication means
+ *                       that the sizes are upper bounds
+ */
+
+public record DustYardBuildPlan(
+  DustYardFontPlan font,
+  List<DustYardVariantPlan> variants,
+  long sourceSize,
+  long retainedMemory,
+  long workingMemory,
+  boolean exact)
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(DustYardBuildPlan.class);
+
+  /**
+   * A plan of a complete build.
+   *
+   * @param font           The plan of the soundfont
+   * @param variants       The plans of the variants
+   * @param sourceSize     The total size in bytes of the source files
+   * @param retainedMemory The estimated size in bytes of the sample data held
+   *                       in memory until the soundfonts are written
+   * @param workingMemory  The estimated size in bytes of the buffers used by
+   *                       conversions running concurrently
+   * @param exact          {@code false} if trimming or deduplication means
+   *                       that the sizes are upper bounds
+   */
+
+  public DustYardBuildPlan
+  {
+    Objects.requireNonNull(font, "font");
+    variants = List.copyOf(variants);
+  }
+
+  /**
+   * Plan a build of the given instruments, whose files must be the source
+   * FLAC files. Each configured variant is planned from the same files.
+   *
+   * @param configuration The build configuration
+   * @param builders      The builder provider
+   * @param writers       The writer provider
+   * @param snare         The snare source files
+   * @param bassDrum      The bass drum source files
+   * @param chinaHiHat    The china hi-hat source files
+   * @param splash        The splash source files
+   *
+   * @return The plan
+   *
+   * @throws IOException On errors
+   */
+
+  public static DustYardBuildPlan create(
+    final DustYardConfiguration configuration,
+    final NTBuilderProviderType builders,
+    final NTWriterProviderType writers,
+    final DustYardSnare snare,
+    final DustYardBassDrum bassDrum,
+    final DustYardChinaHiHat chinaHiHat,
+    final DustYardSplash splash)
+    throws IOException
+  {
+    Objects.requireNonNull(configuration, "configuration");
+
+    final var storedRate = configuration.sampleRate().orElse(0);
+    final var sources = new Sources(storedRate, storedRate);
+    final var font =
+      new DustYardFont(
+        builders,
+        writers,
+        snare,
+        bassDrum,
+        chinaHiHat,
+        splash,
+        sources
+      ).plan();
+
+    /*
+     * Conversions decode each file to 16-bit mono, and then produce a
+     * processed copy.
+     */
+
+    final var concurrency =
+      configuration.executor() == DustYardExecutorKind.SERIAL
+        ? 1L
+        : (long) Math.min(configuration.threads(), Math.max(1, font.samples()));
+    final var workingMemory =
+      concurrency * (sources.largestDecoded + font.largestSampleDataSize());
+
+    final var mode = configuration.outputMode();
+    final var parallelWrite =
+      mode == DustYardOutputMode.PARALLEL;
+
+    /*
+     * Variants are written concurrently with the main kit from the same
+     * stored samples, and so all of the stored samples are loaded eagerly
+     * and stay resident until every soundfont is written. A variant with a
+     * different sample rate additionally holds its resampled copies.
+     */
+
+    final var variants = new ArrayList<DustYardVariantPlan>();
+    for (final var variant : configuration.variants()) {
+      final var variantSources =
+        new Sources(storedRate, variant.sampleRate().orElse(storedRate));
+      final var variantFont =
+        new DustYardFont(
+          builders,
+          writers,
+          variant.snare(snare),
+          variant.bassDrum(bassDrum),
+          chinaHiHat,
+          variant.splash(splash),
+          variantSources
+        ).plan();
+      variants.add(
+        new DustYardVariantPlan(
+          variant.name(), variantFont, variantSources.resampledSize));
+    }
+
+    /*
+     * Deduplication loads every sample while the soundfont is described, and
+     * retains the data of each unique sample until it is written.
+     */
+
+    final var resident =
+      configuration.direct()
+        || configuration.deduplicate()
+        || !variants.isEmpty()
+        || configuration.sampleLoading() == DustYardSampleLoading.EAGER;
+
+    var retainedMemory =
+      resident
+        ? font.sampleDataSize()
+        : font.largestSampleDataSize() * (parallelWrite ? concurrency : 1L);
+    for (final var variant : variants) {
+      retainedMemory = Math.addExact(retainedMemory, variant.retainedMemory());
+    }
+
+    final var exact =
+      configuration.trimStart().isEmpty()
+        && configuration.trimEnd().isEmpty()
+        && !configuration.deduplicate();
+
+    return new DustYardBuildPlan(
+      font,
+      variants,
+      sources.sourceSize,
+      retainedMemory,
+      workingMemory,
+      exact
+    );
+  }
+
+  /**
+   * @return The estimated peak size in bytes of sample data in memory
+   */
+
+  public long peakMemory()
+  {
+    return this.retainedMemory + this.workingMemory;
+  }
+
+  /**
+   * Log the plan.
+   */
+
+  public void log()
+  {
+    LOG.info(
+      "plan: {} samples, {} frames",
+      Integer.valueOf(this.font.samples()),
+      Long.valueOf(this.font.frames())
+    );
+    LOG.info(
+      "plan: {} bytes of sources, {} bytes of sample data",
+      Long.valueOf(this.sourceSize),
+      Long.valueOf(this.font.sampleDataSize())
+    );
+    LOG.info(
+      "plan: expected file size {} bytes",
+      Long.valueOf(this.font.fileSize())
+    );
+    for (final var variant : this.variants) {
+      final var variantFont = variant.font();
+      LOG.info(
+        "plan: variant {}: {} samples, {} bytes of sample data, expected file size {} bytes, {} bytes resampled",
+        variant.name(),
+        Integer.valueOf(variantFont.samples()),
+        Long.valueOf(variantFont.sampleDataSize()),
+        Long.valueOf(variantFont.fileSize()),
+        Long.valueOf(variant.retainedMemory())
+      );
+    }
+    LOG.info(
+      "plan: estimated memory {} bytes ({} retained, {} working)",
+      Long.valueOf(this.peakMemory()),
+      Long.valueOf(this.retainedMemory),
+      Long.valueOf(this.workingMemory)
+    );
+    if (!this.exact) {
+      LOG.info("plan: trimming or deduplication is enabled; sizes are upper bounds");
+    }
+  }
+
+  /**
+   * Planned sources. Samples are stored at the stored rate, or at their
+   * source rate if the stored rate is 0, and are then resampled to the
+   * target rate, or left at their stored rate if the target rate is 0.
+   */
+
+  private static final class Sources implements DustYardSampleSourcesType
+  {
+    private final int storedRate;
+    private final int targetRate;
+    private long sourceSize;
+    private long largestDecoded;
+    private long resampledSize;
+
+    Sources(
+      final int inStoredRate,
+      final int inTargetRate)
+    {
+      this.storedRate = inStoredRate;
+      this.targetRate = inTargetRate;
+    }
+
+    @Override
+    public DustYardSampleSourceType source(
+      final Path file)
+      throws IOException
+    {
+      final var info = DustYardFLACStreamInfo.read(file);
+      if (info.totalSamples() == 0L) {
+        throw new IOException(
+          String.format("%s: STREAMINFO does not specify a length", file));
+      }
+
+      this.sourceSize += Files.size(file);
+      this.largestDecoded =
+        Math.max(this.largestDecoded, info.totalSamples() * 2L);
+
+      /*
+       * The resampler produces ceil(frames * target / source) frames.
+       */
+
+      final var sourceRate = info.sampleRate();
+      final var rate = this.targetRate == 0 ? sourceRate : this.targetRate;
+      final var frames =
+        rate == sourceRate
+          ? info.totalSamples()
+          : Math.ceilDiv(
+              Math.multiplyExact(info.totalSamples(), (long) rate),
+              (long) sourceRate
+            );
+
+      final var stored = this.storedRate == 0 ? sourceRate : this.storedRate;
+      if (rate != stored) {
+        this.resampledSize += frames * 2L;
+      }
+      return new Planned(file, frames, rate);
+    }
+  }
+
+  private record Planned(
+    Path file,
+    long frames,
+    double sampleRate)
+    implements DustYardSampleSourceType
+  {
+    @Override
+    public SampleBufferType load()
+    {
+      throw new IllegalStateException(
+        String.format("%s: Planned samples cannot be loaded", this.file));
+    }
+  }
+}
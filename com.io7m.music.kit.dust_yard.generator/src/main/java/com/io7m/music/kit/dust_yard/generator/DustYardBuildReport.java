@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A report of the work done during a build. The report is safe to update
+ * from multiple threads. Samples are converted once for all of the fonts
+ * written by a build, but each font is deduplicated separately, and so each
+ * font is expected to have its own report.
+ */
+
+public final class DustYardBuildReport
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(DustYardBuildReport.class);
+
+  private final ConcurrentSkipListMap<String, Instrument> instruments;
+  private final AtomicLong deduplicatedSamples;
+  private final AtomicLong deduplicatedBytes;
+
+  /**
+   * Create an empty report.
+   */
+
+  public DustYardBuildReport()
+  {
+    this.instruments = new ConcurrentSkipListMap<>();
+    this.deduplicatedSamples = new AtomicLong();
+    this.deduplicatedBytes = new AtomicLong();
+  }
+
+  private Instrument instrument(
+    final String name)
+  {
+    return this.instruments.computeIfAbsent(name, ignored -> new Instrument());
+  }
+
+  /**
+   * Record that trailing silence was trimmed from a sample.
+   *
+   * @param instrument   The instrument name
+   * @param bytesRemoved The number of bytes of sample data removed
+   */
+
+  public void sampleEndTrimmed(
+    final String instrument,
+    final long bytesRemoved)
+  {
+    final var stats = this.instrument(instrument);
+    stats.endTrimSamples.incrementAndGet();
+    stats.endTrimBytes.addAndGet(bytesRemoved);
+  }
+
+  /**
+   * Record that the pre-roll was trimmed from the start of a sample.
+   *
+   * @param instrument   The instrument name
+   * @param sample       The sample name
+   * @param milliseconds The length of the removed pre-roll in milliseconds
+   */
+
+  public void sampleStartTrimmed(
+    final String instrument,
+    final String sample,
+    final double milliseconds)
+  {
+    this.instrument(instrument)
+      .startTrims
+      .put(sample, Double.valueOf(milliseconds));
+  }
+
+  /**
+   * Record that samples were removed from the soundfont because they
+   * duplicated other samples.
+   *
+   * @param samples The number of samples removed
+   * @param bytes   The number of bytes of sample data removed
+   */
+
+  public void samplesDeduplicated(
+    final long samples,
+    final long bytes)
+  {
+    this.deduplicatedSamples.addAndGet(samples);
+    this.deduplicatedBytes.addAndGet(bytes);
+  }
+
+  /**
+   * Log the report.
+   *
+   * @param subject The name of the work described by the report
+   */
+
+  public void log(
+    final String subject)
+  {
+    Objects.requireNonNull(subject, "subject");
+
+    var endTrimBytes = 0L;
+
+    for (final var entry : this.instruments.entrySet()) {
+      final var name = entry.getKey();
+      final var stats = entry.getValue();
+
+      for (final var trim : stats.startTrims.entrySet()) {
+        LOG.info(
+          "report: {}: {}: {}: removed {}ms of latency",
+          subject,
+          name,
+          trim.getKey(),
+          String.format(Locale.ROOT, "%.2f", trim.getValue())
+        );
+      }
+
+      if (stats.endTrimSamples.get() > 0L) {
+        LOG.info(
+          "report: {}: {}: trimmed the ends of {} samples, saving {} bytes",
+          subject,
+          name,
+          Long.valueOf(stats.endTrimSamples.get()),
+          Long.valueOf(stats.endTrimBytes.get())
+        );
+        endTrimBytes += stats.endTrimBytes.get();
+      }
+    }
+
+    if (endTrimBytes > 0L) {
+      LOG.info(
+        "report: {}: trimming sample ends saved {} bytes in total",
+        subject,
+        Long.valueOf(endTrimBytes));
+    }
+
+    if (this.deduplicatedSamples.get() > 0L) {
+      LOG.info(
+        "report: {}: deduplication removed {} samples, saving {} bytes",
+        subject,
+        Long.valueOf(this.deduplicatedSamples.get()),
+        Long.valueOf(this.deduplicatedBytes.get())
+      );
+    }
+  }
+
+  private static final class Instrument
+  {
+    private final AtomicLong endTrimSamples;
+    private final AtomicLong endTrimBytes;
+    private final ConcurrentSkipListMap<String, Double> startTrims;
+
+    Instrument()
+    {
+      this.endTrimSamples = new AtomicLong();
+      this.endTrimBytes = new AtomicLong();
+      this.startTrims = new ConcurrentSkipListMap<>();
+    }
+  }
+}
@@ -17,20 +17,14 @@
 package com.io7m.music.kit.dust_yard.generator;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public final class DustYardChinaHiHat
 {
-  private static final Pattern FILE_PATTERN =
-    Pattern.compile(
-      "([0-9]+)__quartertone__chh18x20-1-([a-z]+)-v16.flac");
-
   private final SortedMap<String, Path> byKind;
 
   public DustYardChinaHiHat(
@@ -43,26 +37,22 @@ public final class DustYardChinaHiHat
     final Path directory)
     throws IOException
   {
-    final var byKind = new TreeMap<String,Path>();
+    return of(DustYardSourceIndex.scan(directory));
+  }
 
-    try (var pathStream = Files.list(directory)) {
-      final var files =
-        pathStream
-          .map(Path::toAbsolutePath)
-          .sorted()
-          .collect(Collectors.toList());
+  public static DustYardChinaHiHat of(
+    final List<DustYardSourceFile> files)
+  {
+    final var byKind = new TreeMap<String,Path>();
 
-      for (final var file : files) {
-        final var fileName = file.getFileName().toString();
-        final var matcher = FILE_PATTERN.matcher(fileName);
-        if (matcher.matches()) {
-          final var kind = matcher.group(2);
-          byKind.put(kind, file);
-        }
+    for (final var file : files) {
+      if (file.kind() == DustYardSourceKind.CHINA_HI_HAT) {
+        final var kind = file.group(2);
+        byKind.put(kind, file.file());
       }
-
-      return new DustYardChinaHiHat(byKind);
     }
+
+    return new DustYardChinaHiHat(byKind);
   }
 
   public SortedMap<String, Path> byKind()
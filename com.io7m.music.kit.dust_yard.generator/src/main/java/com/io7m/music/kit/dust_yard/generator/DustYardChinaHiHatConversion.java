@@ -16,23 +16,15 @@
 
 package com.io7m.music.kit.dust_yard.generator;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import javax.sound.sampled.AudioFileFormat;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Locale;
 import java.util.TreeMap;
 
 public final class DustYardChinaHiHatConversion
 {
-  private static final Logger LOG =
-    LoggerFactory.getLogger(DustYardChinaHiHatConversion.class);
+  private static final String INSTRUMENT = "china hi-hat";
 
   private DustYardChinaHiHatConversion()
   {
@@ -44,44 +36,31 @@ public final class DustYardChinaHiHatConversion
     final Path outputDirectory)
     throws IOException
   {
-    final var cymOutput = new TreeMap<String,Path>();
-
-    try {
-      input.byKind().forEach((kind, path) -> {
-        try {
-          convert(cymOutput, kind, path, outputDirectory);
-        } catch (final IOException e) {
-          throw new UncheckedIOException(e);
-        }
-      });
-    } catch (final UncheckedIOException e) {
-      throw e.getCause();
-    }
-
-    return new DustYardChinaHiHat(cymOutput);
+    return convertFLACs(DustYardConverter.serial(), input, outputDirectory);
   }
 
-  private static void convert(
-    final TreeMap<String,Path> cymOutput,
-    final String kind,
-    final Path path,
+  public static DustYardChinaHiHat convertFLACs(
+    final DustYardConverter converter,
+    final DustYardChinaHiHat input,
     final Path outputDirectory)
     throws IOException
   {
-    final var outputFile =
-      outputDirectory.resolve(
-        String.format("%s.wav", kind.toUpperCase(Locale.ROOT)));
+    final var cymOutput =
+      new TreeMap<String,Path>();
+    final var conversions =
+      new ArrayList<DustYardConversion>();
 
-    Files.createDirectories(outputDirectory);
+    for (final var entry : input.byKind().entrySet()) {
+      final var kind = entry.getKey();
+      final var outputFile =
+        outputDirectory.resolve(
+          String.format("%s.wav", kind.toUpperCase(Locale.ROOT)));
 
-    LOG.info("write {}", outputFile);
-
-    try (var stream = DustYardFLACToMono16.readAs16Mono(path)) {
-      AudioSystem.write(stream, AudioFileFormat.Type.WAVE, outputFile.toFile());
-    } catch (final UnsupportedAudioFileException e) {
-      throw new IOException(e);
+      conversions.add(new DustYardConversion(INSTRUMENT, entry.getValue(), outputFile));
+      cymOutput.put(kind, outputFile);
     }
 
-    cymOutput.put(kind, outputFile);
+    converter.convertAll(conversions);
+    return new DustYardChinaHiHat(cymOutput);
   }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A client that submits builds to a {@link DustYardDaemon}.
+ */
+
+public final class DustYardClient
+{
+  private DustYardClient()
+  {
+
+  }
+
+  public static void main(
+    final String[] args)
+    throws IOException
+  {
+    if (args.length < 1) {
+      throw new IllegalArgumentException(
+        "usage: socket-file source-directory temporary-directory target-file [--option=value ...]"
+      );
+    }
+
+    build(
+      Paths.get(args[0]),
+      Paths.get("").toAbsolutePath(),
+      Arrays.asList(args).subList(1, args.length)
+    );
+  }
+
+  /**
+   * Submit a build to a daemon, and wait for the build to complete.
+   *
+   * @param socketFile       The socket file of the daemon
+   * @param workingDirectory The directory against which relative paths are
+   *                         resolved
+   * @param args             The command line arguments of the build
+   *
+   * @throws IOException On errors, or if the build fails
+   */
+
+  public static void build(
+    final Path socketFile,
+    final Path workingDirectory,
+    final List<String> args)
+    throws IOException
+  {
+    Objects.requireNonNull(socketFile, "socketFile");
+    Objects.requireNonNull(workingDirectory, "workingDirectory");
+    Objects.requireNonNull(args, "args");
+
+    for (final var arg : args) {
+      if (arg.isEmpty() || arg.indexOf('\n') >= 0 || arg.indexOf('\r') >= 0) {
+        throw new IllegalArgumentException(
+          String.format("Argument '%s' must be non-empty and a single line", arg)
+        );
+      }
+    }
+
+    try (var channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      channel.connect(UnixDomainSocketAddress.of(socketFile));
+
+      final var writer =
+        new BufferedWriter(
+          new OutputStreamWriter(Channels.newOutputStream(channel), UTF_8));
+      final var reader =
+        new BufferedReader(
+          new InputStreamReader(Channels.newInputStream(channel), UTF_8));
+
+      writer.write(workingDirectory.toAbsolutePath().toString());
+      writer.newLine();
+      for (final var arg : args) {
+        writer.write(arg);
+        writer.newLine();
+      }
+      writer.newLine();
+      writer.flush();
+
+      final var response = reader.readLine();
+      if (response == null) {
+        throw new IOException("The daemon closed the connection");
+      }
+      if (!"OK".equals(response)) {
+        throw new IOException(
+          String.format("Build failed: %s", response.replaceFirst("^ERROR ", ""))
+        );
+      }
+    }
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A parser for the generator's command line.
+ *
+ * <p>The command line consists of the source directory, the temporary
+ * directory, and the target file, followed by any number of
+ * {@code --name=value} options. The {@code --variant} option may be given
+ * any number of times.</p>
+ */
+
+public final class DustYardCommandLine
+{
+  private DustYardCommandLine()
+  {
+
+  }
+
+  /**
+   * Parse the given command line.
+   *
+   * @param args The command line arguments
+   *
+   * @return A configuration
+   */
+
+  public static DustYardConfiguration parse(
+    final String[] args)
+  {
+    return parse(Paths.get(""), args);
+  }
+
+  /**
+   * Parse the given command line, resolving relative paths against the given
+   * directory.
+   *
+   * @param workingDirectory The directory against which paths are resolved
+   * @param args             The command line arguments
+   *
+   * @return A configuration
+   */
+
+  public static DustYardConfiguration parse(
+    final Path workingDirectory,
+    final String[] args)
+  {
+    Objects.requireNonNull(workingDirectory, "workingDirectory");
+    Objects.requireNonNull(args, "args");
+
+    if (args.length < 3) {
+      throw new IllegalArgumentException(
+        "usage: source-directory temporary-directory target-file [--option=value ...]"
+      );
+    }
+
+    final var builder = DustYardConfiguration.builder();
+    builder.setSourceDirectory(workingDirectory.resolve(args[0]));
+    builder.setTemporaryDirectory(workingDirectory.resolve(args[1]));
+    builder.setTargetFile(workingDirectory.resolve(args[2]));
+
+    for (int index = 3; index < args.length; ++index) {
+      parseOption(builder, workingDirectory, args[index]);
+    }
+    return builder.build();
+  }
+
+  private static void parseOption(
+    final DustYardConfiguration.Builder builder,
+    final Path workingDirectory,
+    final String option)
+  {
+    if (!option.startsWith("--")) {
+      throw new IllegalArgumentException(
+        String.format("Unrecognized argument: %s", option)
+      );
+    }
+
+    final var separator = option.indexOf('=');
+    final String name;
+    final String value;
+    if (separator == -1) {
+      name = option.substring(2);
+      value = "true";
+    } else {
+      name = option.substring(2, separator);
+      value = option.substring(separator + 1);
+    }
+
+    switch (name) {
+      case "variant": {
+        final var variant = DustYardVariant.parse(value);
+        builder.addVariant(
+          new DustYardVariant(
+            variant.name(),
+            workingDirectory.resolve(variant.targetFile()),
+            variant.sampleRate(),
+            variant.velocityLayers(),
+            variant.snareTautness()
+          )
+        );
+        break;
+      }
+      case "executor": {
+        builder.setExecutor(
+          DustYardExecutorKind.valueOf(value.toUpperCase(Locale.ROOT)));
+        break;
+      }
+      case "threads": {
+        builder.setThreads(Integer.parseInt(value));
+        break;
+      }
+      case "plan": {
+        builder.setPlan(Boolean.parseBoolean(value));
+        break;
+      }
+      case "index": {
+        builder.setIndex(Boolean.parseBoolean(value));
+        break;
+      }
+      case "direct": {
+        builder.setDirect(Boolean.parseBoolean(value));
+        break;
+      }
+      case "write-temporary-files": {
+        builder.setWriteTemporaryFiles(Boolean.parseBoolean(value));
+        break;
+      }
+      case "cache": {
+        builder.setCache(Boolean.parseBoolean(value));
+        break;
+      }
+      case "cache-size": {
+        builder.setCacheSize(parseSize(value));
+        break;
+      }
+      case "output-mode": {
+        builder.setOutputMode(
+          DustYardOutputMode.valueOf(value.toUpperCase(Locale.ROOT)));
+        break;
+      }
+      case "sample-buffers": {
+        builder.setSampleBuffers(
+          DustYardSampleBufferKind.valueOf(value.toUpperCase(Locale.ROOT)));
+        break;
+      }
+      case "sample-loading": {
+        builder.setSampleLoading(
+          DustYardSampleLoading.valueOf(value.toUpperCase(Locale.ROOT)));
+        break;
+      }
+      case "deduplicate": {
+        builder.setDeduplicate(Boolean.parseBoolean(value));
+        break;
+      }
+      case "deduplicate-tolerance": {
+        builder.setDeduplicateTolerance(Integer.parseInt(value));
+        break;
+      }
+      case "decoder": {
+        builder.setDecoder(
+          DustYardDecoderKind.valueOf(value.toUpperCase(Locale.ROOT)));
+        break;
+      }
+      case "downmix": {
+        builder.setDownmix(DustYardDownmix.parse(value));
+        break;
+      }
+      case "sample-rate": {
+        builder.setSampleRate(Integer.parseInt(value));
+        break;
+      }
+      case "trim-start": {
+        builder.setTrimStart(Boolean.parseBoolean(value));
+        break;
+      }
+      case "trim-start-threshold": {
+        builder.setTrimStartThreshold(Double.parseDouble(value));
+        break;
+      }
+      case "trim-end": {
+        builder.setTrimEnd(Boolean.parseBoolean(value));
+        break;
+      }
+      case "trim-end-threshold": {
+        builder.setTrimEndThreshold(Double.parseDouble(value));
+        break;
+      }
+      case "trim-end-fade": {
+        builder.setTrimEndFade(Double.parseDouble(value));
+        break;
+      }
+      default: {
+        throw new IllegalArgumentException(
+          String.format("Unrecognized option: %s", name)
+        );
+      }
+    }
+  }
+
+  /**
+   * Parse a size in bytes, with an optional {@code k}, {@code m}, or
+   * {@code g} suffix.
+   */
+
+  private static long parseSize(
+    final String value)
+  {
+    final var lower = value.toLowerCase(Locale.ROOT);
+    if (lower.endsWith("k")) {
+      return Long.parseLong(lower.substring(0, lower.length() - 1)) * 1024L;
+    }
+    if (lower.endsWith("m")) {
+      return Long.parseLong(lower.substring(0, lower.length() - 1)) * 1024L * 1024L;
+    }
+    if (lower.endsWith("g")) {
+      return Long.parseLong(lower.substring(0, lower.length() - 1)) * 1024L * 1024L * 1024L;
+    }
+    return Long.parseLong(lower);
+  }
+}
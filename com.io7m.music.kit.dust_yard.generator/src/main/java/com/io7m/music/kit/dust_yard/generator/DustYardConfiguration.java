@@ -0,0 +1,569 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * The configuration for a single build of the kit.
+ */
+
+public final class DustYardConfiguration
+{
+  private final Path sourceDirectory;
+  private final Path temporaryDirectory;
+  private final Path targetFile;
+  private final List<DustYardVariant> variants;
+  private final DustYardExecutorKind executor;
+  private final int threads;
+  private final boolean plan;
+  private final boolean index;
+  private final boolean direct;
+  private final boolean writeTemporaryFiles;
+  private final boolean cache;
+  private final long cacheSize;
+  private final DustYardOutputMode outputMode;
+  private final DustYardSampleBufferKind sampleBuffers;
+  private final DustYardSampleLoading sampleLoading;
+  private final boolean deduplicate;
+  private final int deduplicateTolerance;
+  private final DustYardDecoderKind decoder;
+  private final DustYardDownmix downmix;
+  private final OptionalInt sampleRate;
+  private final Optional<DustYardStartTrim> trimStart;
+  private final Optional<DustYardEndTrim> trimEnd;
+
+  private DustYardConfiguration(
+    final Builder builder)
+  {
+    this.sourceDirectory =
+      Objects.requireNonNull(builder.sourceDirectory, "sourceDirectory");
+    this.temporaryDirectory =
+      Objects.requireNonNull(builder.temporaryDirectory, "temporaryDirectory");
+    this.targetFile =
+      Objects.requireNonNull(builder.targetFile, "targetFile");
+    this.variants =
+      List.copyOf(builder.variants);
+    this.executor =
+      Objects.requireNonNull(builder.executor, "executor");
+    this.threads =
+      builder.threads;
+    this.plan =
+      builder.plan;
+    this.index =
+      builder.index;
+    this.direct =
+      builder.direct;
+    this.writeTemporaryFiles =
+      builder.writeTemporaryFiles;
+    this.cache =
+      builder.cache;
+    this.cacheSize =
+      builder.cacheSize;
+    this.outputMode =
+      Objects.requireNonNull(builder.outputMode, "outputMode");
+    this.sampleBuffers =
+      Objects.requireNonNull(builder.sampleBuffers, "sampleBuffers");
+    this.sampleLoading =
+      Objects.requireNonNull(builder.sampleLoading, "sampleLoading");
+    this.deduplicate =
+      builder.deduplicate;
+    this.deduplicateTolerance =
+      builder.deduplicateTolerance;
+    this.decoder =
+      Objects.requireNonNull(builder.decoder, "decoder");
+    this.downmix =
+      Objects.requireNonNull(builder.downmix, "downmix");
+    this.sampleRate =
+      builder.sampleRate;
+    this.trimStart =
+      builder.trimStart
+        ? Optional.of(new DustYardStartTrim(builder.trimStartThreshold))
+        : Optional.empty();
+    this.trimEnd =
+      builder.trimEnd
+        ? Optional.of(
+        new DustYardEndTrim(builder.trimEndThreshold, builder.trimEndFade))
+        : Optional.empty();
+  }
+
+  /**
+   * @return A new mutable configuration builder
+   */
+
+  public static Builder builder()
+  {
+    return new Builder();
+  }
+
+  /**
+   * @return The directory containing the source FLAC files
+   */
+
+  public Path sourceDirectory()
+  {
+    return this.sourceDirectory;
+  }
+
+  /**
+   * @return The directory used for intermediate files
+   */
+
+  public Path temporaryDirectory()
+  {
+    return this.temporaryDirectory;
+  }
+
+  /**
+   * @return The output soundfont file
+   */
+
+  public Path targetFile()
+  {
+    return this.targetFile;
+  }
+
+  /**
+   * @return The additional kits built from the same converted samples
+   */
+
+  public List<DustYardVariant> variants()
+  {
+    return this.variants;
+  }
+
+  /**
+   * @return The kind of executor used to run the build
+   */
+
+  public DustYardExecutorKind executor()
+  {
+    return this.executor;
+  }
+
+  /**
+   * @return The maximum number of worker threads
+   */
+
+  public int threads()
+  {
+    return this.threads;
+  }
+
+  /**
+   * @return {@code true} if the build is only planned, from the headers of
+   * the source files, rather than executed
+   */
+
+  public boolean plan()
+  {
+    return this.plan;
+  }
+
+  /**
+   * @return {@code true} if the source directory is indexed, and the index
+   * saved between builds
+   */
+
+  public boolean index()
+  {
+    return this.index;
+  }
+
+  /**
+   * @return {@code true} if samples are decoded directly into memory
+   */
+
+  public boolean direct()
+  {
+    return this.direct;
+  }
+
+  /**
+   * @return {@code true} if intermediate WAV files are written in direct mode
+   */
+
+  public boolean writeTemporaryFiles()
+  {
+    return this.writeTemporaryFiles;
+  }
+
+  /**
+   * @return {@code true} if converted samples are cached between builds
+   */
+
+  public boolean cache()
+  {
+    return this.cache;
+  }
+
+  /**
+   * @return The maximum size in bytes of the conversion cache
+   */
+
+  public long cacheSize()
+  {
+    return this.cacheSize;
+  }
+
+  /**
+   * @return The mode used to write the soundfont file
+   */
+
+  public DustYardOutputMode outputMode()
+  {
+    return this.outputMode;
+  }
+
+  /**
+   * @return The kind of storage used for in-memory samples
+   */
+
+  public DustYardSampleBufferKind sampleBuffers()
+  {
+    return this.sampleBuffers;
+  }
+
+  /**
+   * @return The way in which sample data is loaded when writing the soundfont
+   */
+
+  public DustYardSampleLoading sampleLoading()
+  {
+    return this.sampleLoading;
+  }
+
+  /**
+   * @return {@code true} if samples with duplicate data are removed from the
+   * soundfont
+   */
+
+  public boolean deduplicate()
+  {
+    return this.deduplicate;
+  }
+
+  /**
+   * @return The largest difference between corresponding 16-bit sample values
+   * for which samples are considered to be duplicates
+   */
+
+  public int deduplicateTolerance()
+  {
+    return this.deduplicateTolerance;
+  }
+
+  /**
+   * @return The decoder used to read source files
+   */
+
+  public DustYardDecoderKind decoder()
+  {
+    return this.decoder;
+  }
+
+  /**
+   * @return The strategy used to combine the channels of source files
+   */
+
+  public DustYardDownmix downmix()
+  {
+    return this.downmix;
+  }
+
+  /**
+   * @return The rate to which samples are resampled, if any
+   */
+
+  public OptionalInt sampleRate()
+  {
+    return this.sampleRate;
+  }
+
+  /**
+   * @return The settings used to trim the pre-roll of samples, if enabled
+   */
+
+  public Optional<DustYardStartTrim> trimStart()
+  {
+    return this.trimStart;
+  }
+
+  /**
+   * @return The settings used to trim trailing silence, if enabled
+   */
+
+  public Optional<DustYardEndTrim> trimEnd()
+  {
+    return this.trimEnd;
+  }
+
+  /**
+   * A mutable configuration builder.
+   */
+
+  public static final class Builder
+  {
+    private Path sourceDirectory;
+    private Path temporaryDirectory;
+    private Path targetFile;
+    private final List<DustYardVariant> variants;
+    private DustYardExecutorKind executor;
+    private int threads;
+    private boolean plan;
+    private boolean index;
+    private boolean direct;
+    private boolean writeTemporaryFiles;
+    private boolean cache;
+    private long cacheSize;
+    private DustYardOutputMode outputMode;
+    private DustYardSampleBufferKind sampleBuffers;
+    private DustYardSampleLoading sampleLoading;
+    private boolean deduplicate;
+    private int deduplicateTolerance;
+    private DustYardDecoderKind decoder;
+    private DustYardDownmix downmix;
+    private OptionalInt sampleRate;
+    private boolean trimStart;
+    private double trimStartThreshold;
+    private boolean trimEnd;
+    private double trimEndThreshold;
+    private double trimEndFade;
+
+    private Builder()
+    {
+      this.variants = new ArrayList<>();
+      this.sampleBuffers = DustYardSampleBufferKind.HEAP;
+      this.sampleLoading = DustYardSampleLoading.EAGER;
+      this.decoder = DustYardDecoderKind.FLAC;
+      this.downmix = DustYardDownmix.MID;
+      this.sampleRate = OptionalInt.empty();
+      this.trimStartThreshold = -30.0;
+      this.trimEndThreshold = -60.0;
+      this.trimEndFade = 10.0;
+      this.outputMode = DustYardOutputMode.STANDARD;
+      this.cacheSize = 2L * 1024L * 1024L * 1024L;
+      this.executor = DustYardExecutorKind.SERIAL;
+      this.threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    public Builder setSourceDirectory(
+      final Path path)
+    {
+      this.sourceDirectory = Objects.requireNonNull(path, "path");
+      return this;
+    }
+
+    public Builder setTemporaryDirectory(
+      final Path path)
+    {
+      this.temporaryDirectory = Objects.requireNonNull(path, "path");
+      return this;
+    }
+
+    public Builder setTargetFile(
+      final Path path)
+    {
+      this.targetFile = Objects.requireNonNull(path, "path");
+      return this;
+    }
+
+    public Builder addVariant(
+      final DustYardVariant variant)
+    {
+      this.variants.add(Objects.requireNonNull(variant, "variant"));
+      return this;
+    }
+
+    public Builder setExecutor(
+      final DustYardExecutorKind kind)
+    {
+      this.executor = Objects.requireNonNull(kind, "kind");
+      return this;
+    }
+
+    public Builder setThreads(
+      final int count)
+    {
+      if (count < 1) {
+        throw new IllegalArgumentException(
+          String.format("Thread count %d must be positive", Integer.valueOf(count))
+        );
+      }
+      this.threads = count;
+      return this;
+    }
+
+    public Builder setPlan(
+      final boolean enabled)
+    {
+      this.plan = enabled;
+      return this;
+    }
+
+    public Builder setIndex(
+      final boolean enabled)
+    {
+      this.index = enabled;
+      return this;
+    }
+
+    public Builder setDirect(
+      final boolean enabled)
+    {
+      this.direct = enabled;
+      return this;
+    }
+
+    public Builder setWriteTemporaryFiles(
+      final boolean enabled)
+    {
+      this.writeTemporaryFiles = enabled;
+      return this;
+    }
+
+    public Builder setCache(
+      final boolean enabled)
+    {
+      this.cache = enabled;
+      return this;
+    }
+
+    public Builder setCacheSize(
+      final long size)
+    {
+      if (size < 0L) {
+        throw new IllegalArgumentException(
+          String.format("Cache size %d must be non-negative", Long.valueOf(size))
+        );
+      }
+      this.cacheSize = size;
+      return this;
+    }
+
+    public Builder setOutputMode(
+      final DustYardOutputMode mode)
+    {
+      this.outputMode = Objects.requireNonNull(mode, "mode");
+      return this;
+    }
+
+    public Builder setSampleBuffers(
+      final DustYardSampleBufferKind kind)
+    {
+      this.sampleBuffers = Objects.requireNonNull(kind, "kind");
+      return this;
+    }
+
+    public Builder setSampleLoading(
+      final DustYardSampleLoading loading)
+    {
+      this.sampleLoading = Objects.requireNonNull(loading, "loading");
+      return this;
+    }
+
+    public Builder setDeduplicate(
+      final boolean enabled)
+    {
+      this.deduplicate = enabled;
+      return this;
+    }
+
+    public Builder setDeduplicateTolerance(
+      final int tolerance)
+    {
+      if (tolerance < 0) {
+        throw new IllegalArgumentException(
+          String.format("Tolerance %d must be non-negative", Integer.valueOf(tolerance))
+        );
+      }
+      this.deduplicateTolerance = tolerance;
+      return this;
+    }
+
+    public Builder setDecoder(
+      final DustYardDecoderKind kind)
+    {
+      this.decoder = Objects.requireNonNull(kind, "kind");
+      return this;
+    }
+
+    public Builder setDownmix(
+      final DustYardDownmix inDownmix)
+    {
+      this.downmix = Objects.requireNonNull(inDownmix, "downmix");
+      return this;
+    }
+
+    public Builder setSampleRate(
+      final int rate)
+    {
+      if (rate <= 0) {
+        throw new IllegalArgumentException(
+          String.format("Sample rate %d must be positive", Integer.valueOf(rate))
+        );
+      }
+      this.sampleRate = OptionalInt.of(rate);
+      return this;
+    }
+
+    public Builder setTrimStart(
+      final boolean enabled)
+    {
+      this.trimStart = enabled;
+      return this;
+    }
+
+    public Builder setTrimStartThreshold(
+      final double decibels)
+    {
+      this.trimStartThreshold = decibels;
+      return this;
+    }
+
+    public Builder setTrimEnd(
+      final boolean enabled)
+    {
+      this.trimEnd = enabled;
+      return this;
+    }
+
+    public Builder setTrimEndThreshold(
+      final double decibels)
+    {
+      this.trimEndThreshold = decibels;
+      return this;
+    }
+
+    public Builder setTrimEndFade(
+      final double milliseconds)
+    {
+      this.trimEndFade = milliseconds;
+      return this;
+    }
+
+    public DustYardConfiguration build()
+    {
+      return new DustYardConfiguration(this);
+    }
+  }
+}
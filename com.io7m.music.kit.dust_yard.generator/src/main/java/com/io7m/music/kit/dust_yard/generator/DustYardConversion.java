@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * A single file conversion.
+ *
+ * @param instrument The name of the instrument to which the file belongs
+ * @param source     The source FLAC file
+ * @param output     The output file
+ */
+
+public record DustYardConversion(
+  String instrument,
+  Path source,
+  Path output)
+{
+  /**
+   * A single file conversion.
+   *
+   * @param instrument The name of the instrument to which the file belongs
+   * @param source     The source FLAC file
+   * @param output     The output file
+   */
+
+  public DustYardConversion
+  {
+    Objects.requireNonNull(instrument, "instrument");
+    Objects.requireNonNull(source, "source");
+    Objects.requireNonNull(output, "output");
+  }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A content-addressed cache of converted samples.
+ *
+ * <p>Entries are keyed by a hash of the source file and the conversion
+ * parameters. Each entry carries a header holding the payload length and
+ * checksum so that truncated or corrupted entries (such as those left behind
+ * by killed builds) are detected and discarded. Entries are written to
+ * temporary files and atomically renamed into place. When the total size of
+ * the cache exceeds the configured maximum, the least recently used entries
+ * are evicted, using file modification times as access times.</p>
+ */
+
+public final class DustYardConversionCache
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(DustYardConversionCache.class);
+
+  private static final int MAGIC = 0x44594331;
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+  private static final String SUFFIX = ".pcm";
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+
+  private final Path directory;
+  private final long maximumSize;
+  private final AtomicLong size;
+  private final Object evictionLock;
+
+  private DustYardConversionCache(
+    final Path inDirectory,
+    final long inMaximumSize,
+    final long inSize)
+  {
+    this.directory =
+      Objects.requireNonNull(inDirectory, "directory");
+    this.maximumSize =
+      inMaximumSize;
+    this.size =
+      new AtomicLong(inSize);
+    this.evictionLock =
+      new Object();
+  }
+
+  /**
+   * Open a cache, creating the directory if necessary. Any temporary files
+   * left behind by interrupted builds are deleted.
+   *
+   * @param directory   The cache directory
+   * @param maximumSize The maximum total size of the cache in bytes
+   *
+   * @return A cache
+   *
+   * @throws IOException On errors
+   */
+
+  public static DustYardConversionCache open(
+    final Path directory,
+    final long maximumSize)
+    throws IOException
+  {
+    if (maximumSize < 0L) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Maximum cache size %d must be non-negative",
+          Long.valueOf(maximumSize))
+      );
+    }
+
+    Files.createDirectories(directory);
+
+    var total = 0L;
+    try (var stream = Files.walk(directory)) {
+      final var files =
+        stream.filter(Files::isRegularFile)
+          .collect(Collectors.toList());
+
+      for (final var file : files) {
+        final var name = file.getFileName().toString();
+        if (name.endsWith(TEMPORARY_SUFFIX)) {
+          LOG.debug("delete stale {}", file);
+          Files.deleteIfExists(file);
+        } else if (name.endsWith(SUFFIX)) {
+          total += Files.size(file);
+        }
+      }
+    }
+
+    final var cache =
+      new DustYardConversionCache(directory, maximumSize, total);
+    cache.evict();
+    return cache;
+  }
+
+  /**
+   * Calculate the cache key for the given source file and conversion
+   * parameters.
+   *
+   * @param source     The source file
+   * @param parameters A string describing the conversion parameters
+   *
+   * @return The cache key
+   *
+   * @throws IOException On errors
+   */
+
+  public String keyOf(
+    final Path source,
+    final String parameters)
+    throws IOException
+  {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+
+    digest.update(parameters.getBytes(UTF_8));
+    digest.update((byte) 0);
+
+    try (var stream = Files.newInputStream(source)) {
+      final var buffer = new byte[65536];
+      while (true) {
+        final var r = stream.read(buffer);
+        if (r == -1) {
+          break;
+        }
+        digest.update(buffer, 0, r);
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Find the entry with the given key. Entries that fail validation are
+   * deleted and treated as missing.
+   *
+   * @param key The key
+   *
+   * @return The cached sample, if any
+   *
+   * @throws IOException On errors
+   */
+
+  public Optional<DustYardPCM> find(
+    final String key)
+    throws IOException
+  {
+    final var file = this.fileOf(key);
+
+    final byte[] data;
+    try {
+      data = Files.readAllBytes(file);
+    } catch (final NoSuchFileException e) {
+      return Optional.empty();
+    }
+
+    final var result = parse(data);
+    if (result.isEmpty()) {
+      LOG.warn("discarding corrupt cache entry {}", file);
+      if (Files.deleteIfExists(file)) {
+        this.size.addAndGet(-data.length);
+      }
+      return Optional.empty();
+    }
+
+    try {
+      Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+    } catch (final NoSuchFileException e) {
+      // Evicted concurrently; the data that was read is still valid.
+    }
+    return result;
+  }
+
+  /**
+   * Add an entry to the cache, evicting older entries if necessary.
+   *
+   * @param key The key
+   * @param pcm The sample
+   *
+   * @throws IOException On errors
+   */
+
+  public void put(
+    final String key,
+    final DustYardPCM pcm)
+    throws IOException
+  {
+    final var file = this.fileOf(key);
+    final var parent = file.getParent();
+    Files.createDirectories(parent);
+
+    final var payload = pcm.data();
+    final var checksum = new CRC32();
+    checksum.update(payload);
+
+    final var header =
+      ByteBuffer.allocate(HEADER_SIZE)
+        .order(LITTLE_ENDIAN);
+    header.putInt(MAGIC);
+    header.putFloat(pcm.sampleRate());
+    header.putLong(payload.length);
+    header.putLong(checksum.getValue());
+
+    final var temporary =
+      parent.resolve(String.format("%s-%s%s", key, UUID.randomUUID(), TEMPORARY_SUFFIX));
+
+    try (var output = Files.newOutputStream(temporary)) {
+      output.write(header.array());
+      output.write(payload);
+    }
+
+    final var previous = sizeOrZero(file);
+    Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    this.size.addAndGet((HEADER_SIZE + payload.length) - previous);
+    this.evict();
+  }
+
+  private static long sizeOrZero(
+    final Path file)
+    throws IOException
+  {
+    try {
+      return Files.size(file);
+    } catch (final NoSuchFileException e) {
+      return 0L;
+    }
+  }
+
+  private static Optional<DustYardPCM> parse(
+    final byte[] data)
+  {
+    if (data.length < HEADER_SIZE) {
+      return Optional.empty();
+    }
+
+    final var header =
+      ByteBuffer.wrap(data, 0, HEADER_SIZE)
+        .order(LITTLE_ENDIAN);
+
+    if (header.getInt() != MAGIC) {
+      return Optional.empty();
+    }
+
+    final var sampleRate = header.getFloat();
+    final var length = header.getLong();
+    final var expectedChecksum = header.getLong();
+
+    if (length != data.length - HEADER_SIZE || length % 2L != 0L) {
+      return Optional.empty();
+    }
+
+    final var checksum = new CRC32();
+    checksum.update(data, HEADER_SIZE, (int) length);
+    if (checksum.getValue() != expectedChecksum) {
+      return Optional.empty();
+    }
+
+    final var payload = new byte[(int) length];
+    System.arraycopy(data, HEADER_SIZE, payload, 0, payload.length);
+    return Optional.of(new DustYardPCM(sampleRate, payload));
+  }
+
+  private Path fileOf(
+    final String key)
+  {
+    return this.directory.resolve(key.substring(0, 2))
+      .resolve(key + SUFFIX);
+  }
+
+  private void evict()
+    throws IOException
+  {
+    if (this.size.get() <= this.maximumSize) {
+      return;
+    }
+
+    synchronized (this.evictionLock) {
+      if (this.size.get() <= this.maximumSize) {
+        return;
+      }
+
+      final List<Path> entries;
+      try (var stream = Files.walk(this.directory)) {
+        entries = stream.filter(p -> p.toString().endsWith(SUFFIX))
+          .collect(Collectors.toCollection(ArrayList::new));
+      }
+
+      final var times = new HashMap<Path, FileTime>(entries.size());
+      for (final var entry : entries) {
+        try {
+          times.put(entry, Files.getLastModifiedTime(entry));
+        } catch (final NoSuchFileException e) {
+          // Ignored
+        }
+      }
+
+      final var ordered =
+        times.keySet()
+          .stream()
+          .sorted(Comparator.comparing(times::get))
+          .collect(Collectors.toList());
+
+      for (final var entry : ordered) {
+        if (this.size.get() <= this.maximumSize) {
+          break;
+        }
+        final var entrySize = sizeOrZero(entry);
+        if (Files.deleteIfExists(entry)) {
+          LOG.debug("evict {}", entry);
+          this.size.addAndGet(-entrySize);
+        }
+      }
+    }
+  }
+}
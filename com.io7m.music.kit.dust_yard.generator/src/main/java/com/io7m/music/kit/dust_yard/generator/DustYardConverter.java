@@ -0,0 +1,671 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A converter that turns source FLAC files into 16-bit mono samples. If an
+ * executor is provided, files are converted in parallel, with at most a
+ * fixed number of conversions running at any given time. If a sample store
+ * is provided, samples are decoded directly into memory and intermediate
+ * files are only written on request. If a cache is provided, previously
+ * converted samples are reused instead of being decoded again. Decoded
+ * samples can optionally be resampled and trimmed before they are written
+ * or stored.
+ */
+
+public final class DustYardConverter
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(DustYardConverter.class);
+
+  /**
+   * The parameters of the conversion, included in cache keys so that
+   * changing the conversion invalidates existing cache entries.
+   */
+
+  private static final String PARAMETERS =
+    "version=1;bits=16;channels=1;rate=source";
+
+  private final ExecutorService executor;
+  private final Semaphore workers;
+  private final DustYardSampleStore store;
+  private final boolean writeFiles;
+  private final DustYardConversionCache cache;
+  private final DustYardDecoderKind decoder;
+  private final DustYardDownmix downmix;
+  private final DustYardStartTrim startTrim;
+  private final DustYardEndTrim endTrim;
+  private final DustYardBuildReport report;
+  private final DustYardMetrics metrics;
+  private final String parameters;
+  private final int sampleRate;
+  private final ConcurrentHashMap<Integer, DustYardResampler> resamplers;
+
+  private DustYardConverter(
+    final Builder builder)
+  {
+    this.executor = builder.executor;
+    this.workers = new Semaphore(builder.workers);
+    this.store = builder.store;
+    this.writeFiles = builder.writeFiles;
+    this.cache = builder.cache;
+    this.decoder = builder.decoder;
+    this.downmix = builder.downmix;
+    this.startTrim = builder.startTrim;
+    this.endTrim = builder.endTrim;
+    this.report = builder.report;
+    this.metrics = builder.metrics;
+    this.sampleRate = builder.sampleRate;
+    this.resamplers = new ConcurrentHashMap<>();
+
+    if (this.decoder == DustYardDecoderKind.JAVAX
+      && !Objects.equals(this.downmix, DustYardDownmix.MID)) {
+      throw new IllegalArgumentException(
+        String.format(
+          "The %s decoder does not support the %s downmix",
+          this.decoder,
+          this.downmix.describe())
+      );
+    }
+    this.parameters =
+      String.format(
+        "%s;decoder=%s;downmix=%s",
+        PARAMETERS,
+        this.decoder.name().toLowerCase(Locale.ROOT),
+        this.downmix.describe()
+      );
+  }
+
+  /**
+   * @return A converter that converts files one at a time on the calling
+   * thread, writing each converted file to disk
+   */
+
+  public static DustYardConverter serial()
+  {
+    return builder().build();
+  }
+
+  /**
+   * @return A new mutable converter builder
+   */
+
+  public static Builder builder()
+  {
+    return new Builder();
+  }
+
+  /**
+   * Convert all the given files. Every conversion is attempted, and all
+   * failures are reported together.
+   *
+   * @param conversions The conversions
+   *
+   * @throws IOException On errors
+   */
+
+  public void convertAll(
+    final List<DustYardConversion> conversions)
+    throws IOException
+  {
+    Objects.requireNonNull(conversions, "conversions");
+
+    final var failures = new ArrayList<Exception>();
+    if (this.executor == null) {
+      for (final var conversion : conversions) {
+        try {
+          this.convert(conversion);
+        } catch (final Exception e) {
+          failures.add(e);
+        }
+      }
+    } else {
+      this.convertAllParallel(conversions, failures);
+    }
+
+    if (!failures.isEmpty()) {
+      final var exception =
+        new IOException(
+          String.format(
+            "%d of %d conversions failed",
+            Integer.valueOf(failures.size()),
+            Integer.valueOf(conversions.size()))
+        );
+      for (final var failure : failures) {
+        exception.addSuppressed(failure);
+      }
+      throw exception;
+    }
+  }
+
+  private void convertAllParallel(
+    final List<DustYardConversion> conversions,
+    final List<Exception> failures)
+    throws InterruptedIOException
+  {
+    final var futures = new ArrayList<Future<?>>(conversions.size());
+    for (final var conversion : conversions) {
+      futures.add(this.executor.submit(() -> {
+        this.workers.acquire();
+        try {
+          this.convert(conversion);
+        } finally {
+          this.workers.release();
+        }
+        return null;
+      }));
+    }
+
+    for (final var future : futures) {
+      try {
+        future.get();
+      } catch (final InterruptedException e) {
+        for (final var toCancel : futures) {
+          toCancel.cancel(true);
+        }
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for conversions");
+      } catch (final ExecutionException e) {
+        final var cause = e.getCause();
+        if (cause instanceof final Exception exception) {
+          failures.add(exception);
+        } else {
+          failures.add(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Convert a single file.
+   *
+   * @param conversion The conversion
+   *
+   * @throws IOException On errors
+   */
+
+  public void convert(
+    final DustYardConversion conversion)
+    throws IOException
+  {
+    final var source = conversion.source();
+    final var outputFile = conversion.output();
+
+    try {
+      if (this.canStream()) {
+        try (var measurement = this.metrics.begin(DustYardStage.WRITE)) {
+          final var decodeEvent = new DustYardJFRDecodeEvent();
+          final var event = new DustYardJFRWAVWriteEvent();
+          decodeEvent.begin();
+          event.begin();
+          final var written = this.writeFile(source, outputFile);
+          event.end();
+          decodeEvent.end();
+
+          final var frames = (long) written.getFrameLength();
+          final var size = Files.size(outputFile);
+          measurement.addBytesRead(Files.size(source));
+          measurement.addBytesWritten(size);
+          measurement.addSamples(frames);
+
+          /*
+           * The source is decoded as the file is written, so both events
+           * cover the same interval.
+           */
+
+          if (decodeEvent.shouldCommit()) {
+            decodeEvent.file = source.toString();
+            decodeEvent.frames = frames;
+            decodeEvent.sampleRate = (int) written.getFormat().getSampleRate();
+            decodeEvent.cached = false;
+            decodeEvent.commit();
+          }
+          if (event.shouldCommit()) {
+            event.file = outputFile.toString();
+            event.frames = frames;
+            event.size = size;
+            event.commit();
+          }
+        }
+        return;
+      }
+
+      final DustYardPCM decoded;
+      try (var measurement = this.metrics.begin(DustYardStage.DECODE)) {
+        decoded = this.decode(source);
+        measurement.addBytesRead(Files.size(source));
+        measurement.addSamples(decoded.frames());
+      }
+
+      final DustYardPCM pcm;
+      try (var measurement = this.metrics.begin(DustYardStage.PROCESS)) {
+        pcm = this.process(conversion, decoded);
+        measurement.addSamples(pcm.frames());
+      }
+
+      if (this.store == null || this.writeFiles) {
+        try (var measurement = this.metrics.begin(DustYardStage.WRITE)) {
+          final var event = new DustYardJFRWAVWriteEvent();
+          event.begin();
+          Files.createDirectories(outputFile.getParent());
+          LOG.info("write {}", outputFile);
+          DustYardWAVWriter.write(pcm, outputFile);
+          event.end();
+
+          final var size = Files.size(outputFile);
+          measurement.addBytesWritten(size);
+          measurement.addSamples(pcm.frames());
+
+          if (event.shouldCommit()) {
+            event.file = outputFile.toString();
+            event.frames = pcm.frames();
+            event.size = size;
+            event.commit();
+          }
+        }
+      }
+
+      if (this.store != null) {
+        this.store.put(outputFile, pcm);
+      }
+    } catch (final UnsupportedAudioFileException | IOException e) {
+      throw new IOException(
+        String.format("%s: %s", source, e.getMessage()), e);
+    }
+  }
+
+  /**
+   * Files can be streamed straight from the source to the intermediate file
+   * only if nothing requires the decoded sample to be held in memory. Storing,
+   * caching, resampling, and trimming all operate on complete samples.
+   */
+
+  private boolean canStream()
+  {
+    return this.store == null
+      && this.cache == null
+      && this.sampleRate == 0
+      && this.startTrim == null
+      && this.endTrim == null;
+  }
+
+  private DustYardPCM process(
+    final DustYardConversion conversion,
+    final DustYardPCM pcm)
+  {
+    var result = pcm;
+
+    if (this.sampleRate != 0) {
+      result = this.resampler(result).apply(result);
+    }
+
+    if (this.startTrim != null) {
+      final var trimmed = this.startTrim.apply(result);
+      final var removed = result.frames() - trimmed.frames();
+      if (removed > 0L) {
+        this.report.sampleStartTrimmed(
+          conversion.instrument(),
+          conversion.source().getFileName().toString(),
+          (removed * 1000.0) / result.sampleRate()
+        );
+      }
+      result = trimmed;
+    }
+
+    if (this.endTrim != null) {
+      final var trimmed = this.endTrim.apply(result);
+      final var removed =
+        (long) result.data().length - (long) trimmed.data().length;
+      if (removed > 0L) {
+        this.report.sampleEndTrimmed(conversion.instrument(), removed);
+      }
+      result = trimmed;
+    }
+
+    return result;
+  }
+
+  private DustYardResampler resampler(
+    final DustYardPCM pcm)
+  {
+    final var rate = (int) pcm.sampleRate();
+    return this.resamplers.computeIfAbsent(
+      Integer.valueOf(rate),
+      key -> DustYardResampler.create(key.intValue(), this.sampleRate)
+    );
+  }
+
+  private AudioFileFormat writeFile(
+    final Path source,
+    final Path outputFile)
+    throws IOException, UnsupportedAudioFileException
+  {
+    Files.createDirectories(outputFile.getParent());
+
+    LOG.info("write {}", outputFile);
+
+    return switch (this.decoder) {
+      case FLAC -> DustYardFLACDecoder.decodeToWAV(source, this.downmix, outputFile);
+      case JAVAX -> {
+        try (var stream = DustYardFLACToMono16.readAs16Mono(source)) {
+          final var format = stream.getFormat();
+          final var bytes = DustYardWAVWriter.write(stream, outputFile);
+          yield new AudioFileFormat(
+            AudioFileFormat.Type.WAVE,
+            format,
+            Math.toIntExact(bytes / format.getFrameSize())
+          );
+        }
+      }
+    };
+  }
+
+  private DustYardPCM decode(
+    final Path source)
+    throws IOException, UnsupportedAudioFileException
+  {
+    final var event = new DustYardJFRDecodeEvent();
+    event.begin();
+
+    final DustYardPCM pcm;
+    final boolean wasCached;
+    if (this.cache == null) {
+      pcm = this.decodeUncached(source);
+      wasCached = false;
+    } else {
+      final var key = this.cache.keyOf(source, this.parameters);
+      final var cached = this.cache.find(key);
+      if (cached.isPresent()) {
+        LOG.info("cached {}", source);
+        pcm = cached.get();
+        wasCached = true;
+      } else {
+        pcm = this.decodeUncached(source);
+        this.cache.put(key, pcm);
+        wasCached = false;
+      }
+    }
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.file = source.toString();
+      event.frames = pcm.frames();
+      event.sampleRate = (int) pcm.sampleRate();
+      event.cached = wasCached;
+      event.commit();
+    }
+    return pcm;
+  }
+
+  private DustYardPCM decodeUncached(
+    final Path source)
+    throws IOException, UnsupportedAudioFileException
+  {
+    LOG.info("decode {}", source);
+
+    return switch (this.decoder) {
+      case FLAC -> DustYardFLACDecoder.decode(source, this.downmix);
+      case JAVAX -> {
+        try (var stream = DustYardFLACToMono16.readAs16Mono(source)) {
+          yield DustYardPCM.of(stream);
+        }
+      }
+    };
+  }
+
+  /**
+   * A mutable converter builder.
+   */
+
+  public static final class Builder
+  {
+    private ExecutorService executor;
+    private int workers;
+    private DustYardSampleStore store;
+    private boolean writeFiles;
+    private DustYardConversionCache cache;
+    private DustYardDecoderKind decoder;
+    private DustYardDownmix downmix;
+    private DustYardStartTrim startTrim;
+    private int sampleRate;
+    private DustYardEndTrim endTrim;
+    private DustYardBuildReport report;
+    private DustYardMetrics metrics;
+
+    private Builder()
+    {
+      this.report = new DustYardBuildReport();
+      this.metrics = new DustYardMetrics();
+      this.downmix = DustYardDownmix.MID;
+      this.decoder = DustYardDecoderKind.FLAC;
+      this.workers = 1;
+      this.writeFiles = true;
+    }
+
+    /**
+     * Convert files in parallel.
+     *
+     * @param inExecutor The executor used to run conversions
+     * @param inWorkers  The maximum number of concurrent conversions
+     *
+     * @return this
+     */
+
+    public Builder setExecutor(
+      final ExecutorService inExecutor,
+      final int inWorkers)
+    {
+      if (inWorkers < 1) {
+        throw new IllegalArgumentException(
+          String.format(
+            "Worker count %d must be positive",
+            Integer.valueOf(inWorkers))
+        );
+      }
+      this.executor = Objects.requireNonNull(inExecutor, "executor");
+      this.workers = inWorkers;
+      return this;
+    }
+
+    /**
+     * Decode samples directly into the given store instead of reading them
+     * back from intermediate files.
+     *
+     * @param inStore The sample store
+     *
+     * @return this
+     */
+
+    public Builder setSampleStore(
+      final DustYardSampleStore inStore)
+    {
+      this.store = Objects.requireNonNull(inStore, "store");
+      return this;
+    }
+
+    /**
+     * Set whether intermediate files are written when decoding directly into
+     * a sample store. Intermediate files are always written when no store is
+     * set.
+     *
+     * @param write {@code true} if files should be written
+     *
+     * @return this
+     */
+
+    public Builder setWriteFiles(
+      final boolean write)
+    {
+      this.writeFiles = write;
+      return this;
+    }
+
+    /**
+     * Set the decoder used to read source files.
+     *
+     * @param inDecoder The decoder
+     *
+     * @return this
+     */
+
+    public Builder setDecoder(
+      final DustYardDecoderKind inDecoder)
+    {
+      this.decoder = Objects.requireNonNull(inDecoder, "decoder");
+      return this;
+    }
+
+    /**
+     * Set the strategy used to combine channels. The strategy is only
+     * supported by the {@link DustYardDecoderKind#FLAC} decoder.
+     *
+     * @param inDownmix The downmix strategy
+     *
+     * @return this
+     */
+
+    public Builder setDownmix(
+      final DustYardDownmix inDownmix)
+    {
+      this.downmix = Objects.requireNonNull(inDownmix, "downmix");
+      return this;
+    }
+
+    /**
+     * Resample all samples to the given rate.
+     *
+     * @param rate The target sample rate
+     *
+     * @return this
+     */
+
+    public Builder setSampleRate(
+      final int rate)
+    {
+      if (rate <= 0) {
+        throw new IllegalArgumentException(
+          String.format("Sample rate %d must be positive", Integer.valueOf(rate))
+        );
+      }
+      this.sampleRate = rate;
+      return this;
+    }
+
+    /**
+     * Trim the pre-roll before the onset of samples.
+     *
+     * @param inStartTrim The trim settings
+     *
+     * @return this
+     */
+
+    public Builder setStartTrim(
+      final DustYardStartTrim inStartTrim)
+    {
+      this.startTrim = Objects.requireNonNull(inStartTrim, "startTrim");
+      return this;
+    }
+
+    /**
+     * Trim trailing near-silence from samples.
+     *
+     * @param inEndTrim The trim settings
+     *
+     * @return this
+     */
+
+    public Builder setEndTrim(
+      final DustYardEndTrim inEndTrim)
+    {
+      this.endTrim = Objects.requireNonNull(inEndTrim, "endTrim");
+      return this;
+    }
+
+    /**
+     * Set the report to which the work done by the converter is added.
+     *
+     * @param inReport The report
+     *
+     * @return this
+     */
+
+    public Builder setReport(
+      final DustYardBuildReport inReport)
+    {
+      this.report = Objects.requireNonNull(inReport, "report");
+      return this;
+    }
+
+    /**
+     * Set the metrics to which the work done by the converter is added.
+     *
+     * @param inMetrics The metrics
+     *
+     * @return this
+     */
+
+    public Builder setMetrics(
+      final DustYardMetrics inMetrics)
+    {
+      this.metrics = Objects.requireNonNull(inMetrics, "metrics");
+      return this;
+    }
+
+    /**
+     * Reuse previously converted samples from the given cache.
+     *
+     * @param inCache The cache
+     *
+     * @return this
+     */
+
+    public Builder setCache(
+      final DustYardConversionCache inCache)
+    {
+      this.cache = Objects.requireNonNull(inCache, "cache");
+      return this;
+    }
+
+    /**
+     * @return A converter
+     */
+
+    public DustYardConverter build()
+    {
+      return new DustYardConverter(this);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A channel that discards everything written to it, recording only the size
+ * that the written data would have occupied. Reading from the channel always
+ * yields end-of-file.
+ */
+
+public final class DustYardCountingChannel implements SeekableByteChannel
+{
+  private long position;
+  private long size;
+  private boolean open;
+
+  /**
+   * Create an empty channel.
+   */
+
+  public DustYardCountingChannel()
+  {
+    this.open = true;
+  }
+
+  @Override
+  public int read(
+    final ByteBuffer destination)
+    throws IOException
+  {
+    this.checkOpen();
+    return -1;
+  }
+
+  @Override
+  public int write(
+    final ByteBuffer source)
+    throws IOException
+  {
+    this.checkOpen();
+    final var count = source.remaining();
+    source.position(source.limit());
+    this.position += count;
+    this.size = Math.max(this.size, this.position);
+    return count;
+  }
+
+  @Override
+  public long position()
+    throws IOException
+  {
+    this.checkOpen();
+    return this.position;
+  }
+
+  @Override
+  public SeekableByteChannel position(
+    final long newPosition)
+    throws IOException
+  {
+    this.checkOpen();
+    if (newPosition < 0L) {
+      throw new IllegalArgumentException(
+        String.format("Position %d must be non-negative", Long.valueOf(newPosition)));
+    }
+    this.position = newPosition;
+    return this;
+  }
+
+  @Override
+  public long size()
+  {
+    return this.size;
+  }
+
+  @Override
+  public SeekableByteChannel truncate(
+    final long newSize)
+    throws IOException
+  {
+    this.checkOpen();
+    this.size = Math.min(this.size, newSize);
+    this.position = Math.min(this.position, newSize);
+    return this;
+  }
+
+  @Override
+  public boolean isOpen()
+  {
+    return this.open;
+  }
+
+  @Override
+  public void close()
+  {
+    this.open = false;
+  }
+
+  private void checkOpen()
+    throws ClosedChannelException
+  {
+    if (!this.open) {
+      throw new ClosedChannelException();
+    }
+  }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import com.io7m.jnoisetype.writer.api.NTBuilderProviderType;
+import com.io7m.jnoisetype.writer.api.NTWriterProviderType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+/**
+ * A daemon that runs builds on request, so that repeated builds do not pay
+ * for JVM startup, provider lookup, and JIT warm-up.
+ *
+ * <p>The daemon listens on a Unix domain socket and runs one build at a
+ * time. A request consists of UTF-8 lines: the working directory of the
+ * client, followed by the command line arguments accepted by
+ * {@link DustYardCommandLine}, one per line, followed by an empty line.
+ * Relative paths are resolved against the working directory of the client.
+ * The response is a single line: either {@code OK}, or {@code ERROR}
+ * followed by a message.</p>
+ *
+ * <p>Each connection is served on its own thread, so a client that stalls
+ * while sending its request does not prevent other clients from being
+ * served. Builds are still run one at a time.</p>
+ *
+ * @see DustYardClient
+ */
+
+public final class DustYardDaemon implements Closeable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(DustYardDaemon.class);
+
+  private final Path socketFile;
+  private final ServerSocketChannel server;
+  private final NTBuilderProviderType builders;
+  private final NTWriterProviderType writers;
+  private final ExecutorService connections;
+  private final ReentrantLock buildLock;
+
+  private DustYardDaemon(
+    final Path inSocketFile,
+    final ServerSocketChannel inServer,
+    final NTBuilderProviderType inBuilders,
+    final NTWriterProviderType inWriters)
+  {
+    this.socketFile =
+      Objects.requireNonNull(inSocketFile, "socketFile");
+    this.server =
+      Objects.requireNonNull(inServer, "server");
+    this.builders =
+      Objects.requireNonNull(inBuilders, "builders");
+    this.writers =
+      Objects.requireNonNull(inWriters, "writers");
+    this.connections =
+      DustYardExecutors.create(DustYardExecutorKind.VIRTUAL, 1, "daemon");
+    this.buildLock =
+      new ReentrantLock();
+  }
+
+  /**
+   * Open a daemon listening on the given socket file, using the first
+   * available providers.
+   *
+   * @param socketFile The socket file
+   *
+   * @return A daemon
+   *
+   * @throws IOException On errors
+   * @see #open(Path, NTBuilderProviderType, NTWriterProviderType)
+   */
+
+  public static DustYardDaemon open(
+    final Path socketFile)
+    throws IOException
+  {
+    return open(
+      socketFile,
+      DustYard.builderProvider(),
+      DustYard.writerProvider()
+    );
+  }
+
+  /**
+   * Open a daemon listening on the given socket file. An existing socket
+   * is only replaced if no daemon is listening on it, such as the socket of
+   * a daemon that was killed.
+   *
+   * @param socketFile The socket file
+   * @param builders   The builder provider
+   * @param writers    The writer provider
+   *
+   * @return A daemon
+   *
+   * @throws IOException On errors, or if another daemon is listening on the
+   *                     socket file
+   */
+
+  public static DustYardDaemon open(
+    final Path socketFile,
+    final NTBuilderProviderType builders,
+    final NTWriterProviderType writers)
+    throws IOException
+  {
+    Objects.requireNonNull(socketFile, "socketFile");
+    Objects.requireNonNull(builders, "builders");
+    Objects.requireNonNull(writers, "writers");
+
+    final var target = socketFile.toAbsolutePath();
+    removeStaleSocket(target);
+
+    /*
+     * The socket is created with permissions derived from the umask, so it
+     * is bound inside a directory that only the owner can enter, restricted,
+     * and only then moved into place.
+     */
+
+    final var directory = createPrivateDirectory(target.getParent());
+    final var bound = directory.resolve("socket");
+    final var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    try {
+      server.bind(UnixDomainSocketAddress.of(bound));
+      restrictPermissions(bound);
+      Files.move(bound, target, ATOMIC_MOVE);
+    } catch (final IOException e) {
+      server.close();
+      throw e;
+    } finally {
+      Files.deleteIfExists(bound);
+      Files.delete(directory);
+    }
+
+    LOG.info("listening on {}", target);
+    return new DustYardDaemon(target, server, builders, writers);
+  }
+
+  /**
+   * Remove the given socket file if no daemon is listening on it.
+   */
+
+  private static void removeStaleSocket(
+    final Path socketFile)
+    throws IOException
+  {
+    final BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(
+        socketFile, BasicFileAttributes.class, NOFOLLOW_LINKS);
+    } catch (final NoSuchFileException e) {
+      return;
+    }
+
+    if (!attributes.isOther()) {
+      throw new IOException(
+        String.format("%s exists and is not a socket", socketFile)
+      );
+    }
+
+    try (var channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      channel.connect(UnixDomainSocketAddress.of(socketFile));
+    } catch (final IOException e) {
+      LOG.info("removing stale socket {}", socketFile);
+      Files.deleteIfExists(socketFile);
+      return;
+    }
+
+    throw new IOException(
+      String.format("A daemon is already listening on %s", socketFile)
+    );
+  }
+
+  private static Path createPrivateDirectory(
+    final Path parent)
+    throws IOException
+  {
+    try {
+      return Files.createTempDirectory(
+        parent,
+        ".dust_yard-",
+        PosixFilePermissions.asFileAttribute(
+          PosixFilePermissions.fromString("rwx------"))
+      );
+    } catch (final UnsupportedOperationException e) {
+      LOG.debug("cannot restrict permissions of {}: ", parent, e);
+      return Files.createTempDirectory(parent, ".dust_yard-");
+    }
+  }
+
+  /**
+   * Only the owner of the daemon may submit builds, on file systems that
+   * support POSIX permissions.
+   */
+
+  private static void restrictPermissions(
+    final Path socketFile)
+    throws IOException
+  {
+    try {
+      Files.setPosixFilePermissions(
+        socketFile, PosixFilePermissions.fromString("rw-------"));
+    } catch (final UnsupportedOperationException e) {
+      LOG.debug("cannot restrict permissions of {}: ", socketFile, e);
+    }
+  }
+
+  public static void main(
+    final String[] args)
+    throws Exception
+  {
+    if (args.length != 1) {
+      throw new IllegalArgumentException("usage: socket-file");
+    }
+
+    final var daemon = open(Paths.get(args[0]));
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        daemon.close();
+      } catch (final IOException e) {
+        LOG.error("close: ", e);
+      }
+    }));
+
+    daemon.run();
+  }
+
+  /**
+   * Serve requests until the daemon is closed.
+   *
+   * @throws IOException On errors
+   */
+
+  public void run()
+    throws IOException
+  {
+    while (this.server.isOpen()) {
+      final SocketChannel client;
+      try {
+        client = this.server.accept();
+      } catch (final ClosedChannelException e) {
+        return;
+      }
+
+      try {
+        this.connections.execute(() -> this.handle(client));
+      } catch (final RejectedExecutionException e) {
+        client.close();
+        return;
+      }
+    }
+  }
+
+  private void handle(
+    final SocketChannel client)
+  {
+    try (client) {
+      this.serve(client);
+    } catch (final IOException e) {
+      LOG.error("request: ", e);
+    }
+  }
+
+  private void serve(
+    final SocketChannel client)
+    throws IOException
+  {
+    final var reader =
+      new BufferedReader(
+        new InputStreamReader(Channels.newInputStream(client), UTF_8));
+    final var writer =
+      new BufferedWriter(
+        new OutputStreamWriter(Channels.newOutputStream(client), UTF_8));
+
+    /*
+     * A connection that sends nothing, such as a daemon checking whether
+     * this daemon is alive, is not an error.
+     */
+
+    final var workingDirectory = reader.readLine();
+    if (workingDirectory == null) {
+      LOG.debug("connection closed without a request");
+      return;
+    }
+
+    final var args = new ArrayList<String>();
+    while (true) {
+      final var line = readLine(reader);
+      if (line.isEmpty()) {
+        break;
+      }
+      args.add(line);
+    }
+
+    String response;
+    try {
+      final var configuration =
+        DustYardCommandLine.parse(
+          Paths.get(workingDirectory),
+          args.toArray(new String[0])
+        );
+
+      this.buildLock.lock();
+      try {
+        LOG.info("build {}", configuration.targetFile());
+        final var timeStart = System.nanoTime();
+        DustYard.create(configuration, this.builders, this.writers).execute();
+        LOG.info(
+          "build {} completed in {}ms",
+          configuration.targetFile(),
+          Long.valueOf((System.nanoTime() - timeStart) / 1_000_000L));
+      } finally {
+        this.buildLock.unlock();
+      }
+      response = "OK";
+    } catch (final Exception e) {
+      LOG.error("build: ", e);
+      response = "ERROR " + messageOf(e);
+    }
+
+    writer.write(response);
+    writer.newLine();
+    writer.flush();
+  }
+
+  private static String readLine(
+    final BufferedReader reader)
+    throws IOException
+  {
+    final var line = reader.readLine();
+    if (line == null) {
+      throw new IOException("Request ended unexpectedly");
+    }
+    return line;
+  }
+
+  private static String messageOf(
+    final Exception e)
+  {
+    final var message = e.getMessage();
+    if (message == null) {
+      return e.getClass().getName();
+    }
+    return message.replace('\n', ' ').replace('\r', ' ');
+  }
+
+  /**
+   * @return The socket file on which the daemon listens
+   */
+
+  public Path socketFile()
+  {
+    return this.socketFile;
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    try {
+      this.server.close();
+    } finally {
+      this.connections.shutdownNow();
+      Files.deleteIfExists(this.socketFile);
+    }
+  }
+}
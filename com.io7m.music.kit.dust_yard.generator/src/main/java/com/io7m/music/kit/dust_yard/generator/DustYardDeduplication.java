@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.util.Objects;
+
+/**
+ * The settings used to deduplicate sample data in the soundfont.
+ *
+ * @param tolerance The largest difference between corresponding 16-bit sample
+ *                  values for which samples are considered to be duplicates
+ * @param report    The report to which removed samples are added
+ */
+
+public record DustYardDeduplication(
+  int tolerance,
+  DustYardBuildReport report)
+{
+  /**
+   * The settings used to deduplicate sample data in the soundfont.
+   *
+   * @param tolerance The largest difference between corresponding 16-bit
+   *                  sample values for which samples are considered to be
+   *                  duplicates
+   * @param report    The report to which removed samples are added
+   */
+
+  public DustYardDeduplication
+  {
+    if (tolerance < 0) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Tolerance %d must be non-negative", Integer.valueOf(tolerance)));
+    }
+    Objects.requireNonNull(report, "report");
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * A strategy for combining the channels of a source file into a single mono
+ * channel. Mono sources are always passed through unchanged.
+ *
+ * @param kind    The kind of downmix
+ * @param weights The per-channel weights for {@link DustYardDownmixKind#WEIGHTED}
+ */
+
+public record DustYardDownmix(
+  DustYardDownmixKind kind,
+  List<Double> weights)
+{
+  /**
+   * The default downmix, averaging all channels.
+   */
+
+  public static final DustYardDownmix MID =
+    new DustYardDownmix(DustYardDownmixKind.MID, List.of());
+
+  /**
+   * A strategy for combining the channels of a source file into a single
+   * mono channel.
+   *
+   * @param kind    The kind of downmix
+   * @param weights The per-channel weights for {@link DustYardDownmixKind#WEIGHTED}
+   */
+
+  public DustYardDownmix
+  {
+    Objects.requireNonNull(kind, "kind");
+    weights = List.copyOf(weights);
+
+    if (kind == DustYardDownmixKind.WEIGHTED) {
+      if (weights.isEmpty()) {
+        throw new IllegalArgumentException("A weighted downmix requires weights");
+      }
+      for (final var weight : weights) {
+        if (!Double.isFinite(weight.doubleValue())) {
+          throw new IllegalArgumentException(
+            String.format("Weight %s must be finite", weight));
+        }
+      }
+    } else if (!weights.isEmpty()) {
+      throw new IllegalArgumentException(
+        String.format("A %s downmix does not take weights", kind));
+    }
+  }
+
+  /**
+   * Parse a downmix. The syntax is one of {@code mid}, {@code left},
+   * {@code right}, or {@code weighted:w0,w1,...}.
+   *
+   * @param text The text
+   *
+   * @return A downmix
+   */
+
+  public static DustYardDownmix parse(
+    final String text)
+  {
+    final var separator = text.indexOf(':');
+    final var name =
+      separator < 0 ? text : text.substring(0, separator);
+    final var kind =
+      DustYardDownmixKind.valueOf(name.toUpperCase(Locale.ROOT));
+
+    final var weights = new ArrayList<Double>();
+    if (separator >= 0) {
+      for (final var weight : text.substring(separator + 1).split(",")) {
+        weights.add(Double.valueOf(weight.trim()));
+      }
+    }
+    return new DustYardDownmix(kind, weights);
+  }
+
+  /**
+   * Calculate the weight applied to each channel of a source.
+   *
+   * @param channels The number of source channels
+   *
+   * @return The per-channel weights
+   */
+
+  public double[] weightsFor(
+    final int channels)
+  {
+    if (channels < 1) {
+      throw new IllegalArgumentException(
+        String.format("Channel count %d must be positive", Integer.valueOf(channels)));
+    }
+
+    final var result = new double[channels];
+    if (channels == 1) {
+      result[0] = 1.0;
+      return result;
+    }
+
+    switch (this.kind) {
+      case MID -> {
+        for (int index = 0; index < channels; ++index) {
+          result[index] = 1.0 / channels;
+        }
+      }
+      case LEFT -> {
+        result[0] = 1.0;
+      }
+      case RIGHT -> {
+        result[1] = 1.0;
+      }
+      case WEIGHTED -> {
+        if (this.weights.size() != channels) {
+          throw new IllegalArgumentException(
+            String.format(
+              "Weighted downmix has %d weights, but the source has %d channels",
+              Integer.valueOf(this.weights.size()),
+              Integer.valueOf(channels))
+          );
+        }
+        for (int index = 0; index < channels; ++index) {
+          result[index] = this.weights.get(index).doubleValue();
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return A description of the downmix in the syntax accepted by
+   * {@link #parse(String)}
+   */
+
+  public String describe()
+  {
+    final var name = this.kind.name().toLowerCase(Locale.ROOT);
+    if (this.weights.isEmpty()) {
+      return name;
+    }
+    return this.weights.stream()
+      .map(Object::toString)
+      .collect(Collectors.joining(",", name + ":", ""));
+  }
+}
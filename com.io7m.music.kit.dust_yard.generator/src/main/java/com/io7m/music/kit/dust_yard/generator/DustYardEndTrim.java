@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+/**
+ * Settings for trimming trailing near-silence from samples. The end of a
+ * sample is the last frame whose magnitude exceeds a threshold relative to
+ * the sample's peak. A short linear fade is applied after the end, and
+ * everything after the fade is removed.
+ *
+ * @param thresholdDecibels The threshold in decibels relative to the peak,
+ *                          which must be negative
+ * @param fadeMilliseconds  The length of the fade in milliseconds
+ */
+
+public record DustYardEndTrim(
+  double thresholdDecibels,
+  double fadeMilliseconds)
+{
+  /**
+   * Settings for trimming trailing near-silence from samples.
+   *
+   * @param thresholdDecibels The threshold in decibels relative to the peak
+   * @param fadeMilliseconds  The length of the fade in milliseconds
+   */
+
+  public DustYardEndTrim
+  {
+    if (!(thresholdDecibels < 0.0) || !Double.isFinite(thresholdDecibels)) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Threshold %s must be a finite value below 0dB",
+          Double.valueOf(thresholdDecibels))
+      );
+    }
+    if (!(fadeMilliseconds >= 0.0) || !Double.isFinite(fadeMilliseconds)) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Fade length %s must be finite and non-negative",
+          Double.valueOf(fadeMilliseconds))
+      );
+    }
+  }
+
+  /**
+   * Trim the given sample. Samples that are entirely silent, or that have
+   * no frame above the threshold, are returned unchanged.
+   *
+   * @param pcm The sample
+   *
+   * @return The trimmed sample
+   */
+
+  public DustYardPCM apply(
+    final DustYardPCM pcm)
+  {
+    final var data = pcm.data();
+    final var frames = data.length / 2;
+
+    var peak = 0;
+    for (int frame = 0; frame < frames; ++frame) {
+      peak = Math.max(peak, Math.abs(sampleAt(data, frame)));
+    }
+    if (peak == 0) {
+      return pcm;
+    }
+
+    final var threshold =
+      peak * Math.pow(10.0, this.thresholdDecibels / 20.0);
+
+    var last = frames - 1;
+    while (last >= 0 && Math.abs(sampleAt(data, last)) <= threshold) {
+      --last;
+    }
+    if (last < 0) {
+      return pcm;
+    }
+
+    final var fadeFrames =
+      (int) Math.round(pcm.sampleRate() * this.fadeMilliseconds / 1000.0);
+    final var end =
+      (int) Math.min(frames, (long) last + 1L + fadeFrames);
+
+    if (end == frames) {
+      return pcm;
+    }
+
+    final var result = new byte[end * 2];
+    System.arraycopy(data, 0, result, 0, (last + 1) * 2);
+
+    final var fadeLength = end - (last + 1);
+    for (int index = 0; index < fadeLength; ++index) {
+      final var frame = last + 1 + index;
+      final var gain = 1.0 - (index + 1.0) / fadeLength;
+      final var sample = (int) Math.rint(sampleAt(data, frame) * gain);
+      result[frame * 2] = (byte) sample;
+      result[frame * 2 + 1] = (byte) (sample >> 8);
+    }
+
+    return new DustYardPCM(pcm.sampleRate(), result);
+  }
+
+  private static int sampleAt(
+    final byte[] data,
+    final int frame)
+  {
+    return (data[frame * 2] & 0xff) | (data[frame * 2 + 1] << 8);
+  }
+}
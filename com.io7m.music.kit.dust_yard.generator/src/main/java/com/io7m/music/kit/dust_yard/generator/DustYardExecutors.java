@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Functions to create executors.
+ */
+
+public final class DustYardExecutors
+{
+  private DustYardExecutors()
+  {
+
+  }
+
+  /**
+   * Create a new executor.
+   *
+   * @param kind    The kind of executor
+   * @param threads The maximum number of platform threads
+   * @param name    The name prefix used for threads
+   *
+   * @return A new executor
+   */
+
+  public static ExecutorService create(
+    final DustYardExecutorKind kind,
+    final int threads,
+    final String name)
+  {
+    Objects.requireNonNull(kind, "kind");
+    Objects.requireNonNull(name, "name");
+
+    return switch (kind) {
+      case SERIAL -> Executors.newSingleThreadExecutor(platformThreads(name));
+      case PLATFORM -> Executors.newFixedThreadPool(
+        Math.max(1, threads),
+        platformThreads(name)
+      );
+      case VIRTUAL -> Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual()
+          .name(String.format("com.io7m.music.kit.dust_yard.%s-", name), 0L)
+          .factory()
+      );
+    };
+  }
+
+  private static ThreadFactory platformThreads(
+    final String name)
+  {
+    final var index = new AtomicInteger(0);
+    return runnable -> {
+      final var thread = new Thread(runnable);
+      thread.setName(
+        String.format(
+          "com.io7m.music.kit.dust_yard.%s-%d",
+          name,
+          Integer.valueOf(index.getAndIncrement()))
+      );
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
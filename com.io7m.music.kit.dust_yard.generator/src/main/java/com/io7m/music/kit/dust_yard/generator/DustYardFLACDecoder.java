@@ -0,0 +1,369 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import org.jflac.FLACDecoder;
+import org.jflac.PCMProcessor;
+import org.jflac.metadata.StreamInfo;
+import org.jflac.util.ByteData;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A decoder that reads FLAC files directly into 16-bit mono PCM, without
+ * going through the {@code javax.sound} service providers.
+ *
+ * <p>Each block of decoded PCM is folded to mono according to a
+ * {@link DustYardDownmix} and requantized to 16 bits in a single pass. Files
+ * that are already 16-bit mono are copied without conversion. Files can be
+ * decoded into memory, or streamed to a WAV file.</p>
+ */
+
+public final class DustYardFLACDecoder
+{
+  private static final int BUFFER_SIZE = 65536;
+
+  private DustYardFLACDecoder()
+  {
+
+  }
+
+  /**
+   * Decode the given FLAC file, averaging all channels.
+   *
+   * @param file The file
+   *
+   * @return The decoded sample
+   *
+   * @throws IOException On errors
+   */
+
+  public static DustYardPCM decode(
+    final Path file)
+    throws IOException
+  {
+    return decode(file, DustYardDownmix.MID);
+  }
+
+  /**
+   * Decode the given FLAC file.
+   *
+   * @param file    The file
+   * @param downmix The downmix strategy
+   *
+   * @return The decoded sample
+   *
+   * @throws IOException On errors
+   */
+
+  public static DustYardPCM decode(
+    final Path file,
+    final DustYardDownmix downmix)
+    throws IOException
+  {
+    final var memory = new Memory();
+    final var processor = run(file, downmix, memory);
+    return new DustYardPCM(processor.sampleRate, memory.finish());
+  }
+
+  /**
+   * Decode the given FLAC file to a 16-bit mono WAV file. Decoded blocks are
+   * written as they are produced, so the memory used does not depend on the
+   * length of the file.
+   *
+   * @param file    The file
+   * @param downmix The downmix strategy
+   * @param output  The output WAV file
+   *
+   * @return The format and length of the written file
+   *
+   * @throws IOException On errors
+   */
+
+  public static AudioFileFormat decodeToWAV(
+    final Path file,
+    final DustYardDownmix downmix,
+    final Path output)
+    throws IOException
+  {
+    Objects.requireNonNull(output, "output");
+
+    try (var wav = new DustYardWAVWriter.Output(output)) {
+      final var processor = run(file, downmix, wav::write);
+      final var format =
+        new AudioFormat(processor.sampleRate, 16, 1, true, false);
+      final var bytes = wav.finish(format);
+      return new AudioFileFormat(
+        AudioFileFormat.Type.WAVE,
+        format,
+        Math.toIntExact(bytes / format.getFrameSize())
+      );
+    }
+  }
+
+  private static Processor run(
+    final Path file,
+    final DustYardDownmix downmix,
+    final Sink sink)
+    throws IOException
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(downmix, "downmix");
+
+    try (var stream =
+           new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+      final var processor = new Processor(file, downmix, sink);
+      final var decoder = new FLACDecoder(stream);
+      decoder.addPCMProcessor(processor);
+
+      try {
+        decoder.decode();
+      } catch (final UncheckedIOException e) {
+        throw e.getCause();
+      }
+
+      if (!processor.started) {
+        throw new IOException(String.format("%s: Missing stream info", file));
+      }
+      return processor;
+    }
+  }
+
+  /**
+   * A destination for 16-bit mono PCM data.
+   */
+
+  private interface Sink
+  {
+    void write(
+      byte[] bytes,
+      int offset,
+      int length)
+      throws IOException;
+
+    default void expect(
+      final long frames)
+    {
+
+    }
+  }
+
+  /**
+   * A sink that accumulates data in memory.
+   */
+
+  private static final class Memory implements Sink
+  {
+    private byte[] data;
+    private int size;
+
+    Memory()
+    {
+      this.data = new byte[BUFFER_SIZE];
+    }
+
+    @Override
+    public void expect(
+      final long frames)
+    {
+      if (frames > 0L) {
+        this.data = new byte[Math.toIntExact(Math.multiplyExact(frames, 2L))];
+      }
+    }
+
+    @Override
+    public void write(
+      final byte[] bytes,
+      final int offset,
+      final int length)
+    {
+      final var required = Math.addExact(this.size, length);
+      if (required > this.data.length) {
+        this.data = Arrays.copyOf(
+          this.data,
+          Math.max(required, this.data.length * 2));
+      }
+      System.arraycopy(bytes, offset, this.data, this.size, length);
+      this.size = required;
+    }
+
+    byte[] finish()
+    {
+      return this.size == this.data.length
+        ? this.data
+        : Arrays.copyOf(this.data, this.size);
+    }
+  }
+
+  private static final class Processor implements PCMProcessor
+  {
+    private final Path file;
+    private final DustYardDownmix downmix;
+    private final Sink sink;
+    private boolean started;
+    private float sampleRate;
+    private int channels;
+    private int bytesPerSample;
+    private int[] active;
+    private double[] weights;
+    private byte[] block;
+
+    Processor(
+      final Path inFile,
+      final DustYardDownmix inDownmix,
+      final Sink inSink)
+    {
+      this.file = inFile;
+      this.downmix = inDownmix;
+      this.sink = inSink;
+      this.block = new byte[0];
+    }
+
+    @Override
+    public void processStreamInfo(
+      final StreamInfo info)
+    {
+      final var bits = info.getBitsPerSample();
+      if (bits != 8 && bits != 16 && bits != 24) {
+        throw this.error(
+          String.format("Unsupported sample size %d", Integer.valueOf(bits)));
+      }
+
+      this.channels = info.getChannels();
+      if (this.channels < 1) {
+        throw this.error(
+          String.format(
+            "Unsupported channel count %d", Integer.valueOf(this.channels)));
+      }
+
+      this.sampleRate = (float) info.getSampleRate();
+      this.bytesPerSample = bits / 8;
+
+      final double[] channelWeights;
+      try {
+        channelWeights = this.downmix.weightsFor(this.channels);
+      } catch (final IllegalArgumentException e) {
+        throw this.error(e.getMessage());
+      }
+
+      /*
+       * Only channels with non-zero weights are read. The weights also scale
+       * samples to 16 bits.
+       */
+
+      final var scale = Math.scalb(1.0, 16 - bits);
+      var count = 0;
+      for (final var weight : channelWeights) {
+        if (weight != 0.0) {
+          ++count;
+        }
+      }
+
+      this.active = new int[count];
+      this.weights = new double[count];
+      count = 0;
+      for (int channel = 0; channel < this.channels; ++channel) {
+        if (channelWeights[channel] != 0.0) {
+          this.active[count] = channel;
+          this.weights[count] = channelWeights[channel] * scale;
+          ++count;
+        }
+      }
+
+      this.sink.expect(info.getTotalSamples());
+      this.started = true;
+    }
+
+    @Override
+    public void processPCM(
+      final ByteData pcm)
+    {
+      if (!this.started) {
+        throw this.error("PCM data precedes the stream info");
+      }
+
+      final var bytes = pcm.getData();
+      final var frameSize = this.bytesPerSample * this.channels;
+      final var frames = pcm.getLen() / frameSize;
+
+      try {
+        if (this.channels == 1 && this.bytesPerSample == 2) {
+          this.sink.write(bytes, 0, frames * 2);
+          return;
+        }
+
+        if (this.block.length < frames * 2) {
+          this.block = new byte[frames * 2];
+        }
+
+        var input = 0;
+        var output = 0;
+        for (int frame = 0; frame < frames; ++frame) {
+          var sum = 0.0;
+          for (int index = 0; index < this.active.length; ++index) {
+            final var offset = input + this.active[index] * this.bytesPerSample;
+            sum += this.sampleAt(bytes, offset) * this.weights[index];
+          }
+          input += frameSize;
+
+          final var sample =
+            (int) Math.rint(Math.min(32767.0, Math.max(-32768.0, sum)));
+
+          this.block[output] = (byte) sample;
+          this.block[output + 1] = (byte) (sample >> 8);
+          output += 2;
+        }
+        this.sink.write(this.block, 0, output);
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /**
+     * Read a sample. Decoded 8-bit samples are unsigned; all other sizes
+     * are signed little-endian.
+     */
+
+    private int sampleAt(
+      final byte[] bytes,
+      final int offset)
+    {
+      return switch (this.bytesPerSample) {
+        case 1 -> (bytes[offset] & 0xff) - 128;
+        case 2 -> (bytes[offset] & 0xff) | (bytes[offset + 1] << 8);
+        default -> (bytes[offset] & 0xff)
+          | ((bytes[offset + 1] & 0xff) << 8)
+          | (bytes[offset + 2] << 16);
+      };
+    }
+
+    private UncheckedIOException error(
+      final String message)
+    {
+      return new UncheckedIOException(
+        new IOException(String.format("%s: %s", this.file, message)));
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The contents of the {@code STREAMINFO} block of a FLAC file.
+ *
+ * @param sampleRate    The sample rate
+ * @param channels      The number of channels
+ * @param bitsPerSample The number of bits per sample
+ * @param totalSamples  The number of frames, or 0 if unknown
+ */
+
+public record DustYardFLACStreamInfo(
+  int sampleRate,
+  int channels,
+  int bitsPerSample,
+  long totalSamples)
+{
+  private static final int STREAMINFO_SIZE = 34;
+
+  /**
+   * The contents of the {@code STREAMINFO} block of a FLAC file.
+   *
+   * @param sampleRate    The sample rate
+   * @param channels      The number of channels
+   * @param bitsPerSample The number of bits per sample
+   * @param totalSamples  The number of frames, or 0 if unknown
+   */
+
+  public DustYardFLACStreamInfo
+  {
+    if (sampleRate <= 0) {
+      throw new IllegalArgumentException(
+        String.format("Sample rate %d must be positive", Integer.valueOf(sampleRate)));
+    }
+    if (totalSamples < 0L) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Total samples %d must be non-negative", Long.valueOf(totalSamples)));
+    }
+  }
+
+  /**
+   * Read the {@code STREAMINFO} block of the given file. Only the file
+   * header is read; no audio is decoded.
+   *
+   * @param file The file
+   *
+   * @return The stream info
+   *
+   * @throws IOException On errors, or if the file is not a FLAC file
+   */
+
+  public static DustYardFLACStreamInfo read(
+    final Path file)
+    throws IOException
+  {
+    Objects.requireNonNull(file, "file");
+
+    try (var channel = FileChannel.open(file, READ)) {
+      var position = 0L;
+
+      /*
+       * Skip any ID3v2 tag that precedes the stream marker.
+       */
+
+      final var start = readBytes(file, channel, position, 10);
+      if ("ID3".equals(fourCC(start, 0, 3))) {
+        final var tagSize =
+          (start.get(6) & 0x7f) << 21
+            | (start.get(7) & 0x7f) << 14
+            | (start.get(8) & 0x7f) << 7
+            | (start.get(9) & 0x7f);
+        position = 10L + tagSize;
+      }
+
+      final var header =
+        readBytes(file, channel, position, 8 + STREAMINFO_SIZE);
+      final var blockType =
+        header.get(4) & 0x7f;
+      final var blockSize =
+        (header.get(5) & 0xff) << 16
+          | (header.get(6) & 0xff) << 8
+          | (header.get(7) & 0xff);
+
+      if (!"fLaC".equals(fourCC(header, 0, 4))) {
+        throw new IOException(String.format("%s: Not a FLAC file", file));
+      }
+      if (blockType != 0 || blockSize != STREAMINFO_SIZE) {
+        throw new IOException(
+          String.format("%s: Missing STREAMINFO block", file));
+      }
+
+      /*
+       * The sample rate (20 bits), channel count (3 bits), bits per sample
+       * (5 bits), and total samples (36 bits) are packed into the 64 bits
+       * following the block and frame size fields.
+       */
+
+      final var packed = header.getLong(8 + 10);
+      final var sampleRate = (int) (packed >>> 44);
+      final var channels = (int) ((packed >>> 41) & 0x7L) + 1;
+      final var bits = (int) ((packed >>> 36) & 0x1fL) + 1;
+      final var total = packed & 0xf_ffff_ffffL;
+
+      if (sampleRate == 0) {
+        throw new IOException(
+          String.format("%s: Invalid sample rate in STREAMINFO", file));
+      }
+      return new DustYardFLACStreamInfo(sampleRate, channels, bits, total);
+    }
+  }
+
+  private static ByteBuffer readBytes(
+    final Path file,
+    final FileChannel channel,
+    final long position,
+    final int size)
+    throws IOException
+  {
+    final var buffer = ByteBuffer.allocate(size).order(BIG_ENDIAN);
+    while (buffer.hasRemaining()) {
+      final var r = channel.read(buffer, position + buffer.position());
+      if (r == -1) {
+        throw new EOFException(
+          String.format("%s: Unexpected end of file", file));
+      }
+    }
+    return buffer.flip();
+  }
+
+  private static String fourCC(
+    final ByteBuffer buffer,
+    final int offset,
+    final int length)
+  {
+    final var bytes = new byte[length];
+    buffer.get(offset, bytes);
+    return new String(bytes, US_ASCII);
+  }
+
+  /**
+   * @return The size in bytes of the decoded audio at the source resolution
+   */
+
+  public long decodedSize()
+  {
+    return this.totalSamples * this.channels * ((this.bitsPerSample + 7L) / 8L);
+  }
+}
@@ -28,32 +28,31 @@ import com.io7m.jnoisetype.api.NTVersion;
 import com.io7m.jnoisetype.writer.api.NTBuilderProviderType;
 import com.io7m.jnoisetype.writer.api.NTBuilderType;
 import com.io7m.jnoisetype.writer.api.NTInstrumentBuilderType;
+import com.io7m.jnoisetype.writer.api.NTInstrumentZoneBuilderType;
 import com.io7m.jnoisetype.writer.api.NTSampleBuilderType;
 import com.io7m.jnoisetype.writer.api.NTWriteException;
 import com.io7m.jnoisetype.writer.api.NTWriterProviderType;
-import com.io7m.jsamplebuffer.api.SampleBufferType;
-import com.io7m.jsamplebuffer.vanilla.SampleBufferDouble;
-import com.io7m.jsamplebuffer.xmedia.SampleBufferXMedia;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.ByteBuffer;
+import java.net.URI;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static java.nio.ByteOrder.LITTLE_ENDIAN;
 import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
@@ -73,6 +72,8 @@ public final class DustYardFont
   private final DustYardBassDrum bassDrum;
   private final DustYardChinaHiHat cym;
   private final DustYardSplash splashConverted;
+  private final DustYardSampleSourcesType sources;
+  private final Optional<DustYardDeduplication> deduplication;
 
   public DustYardFont(
     final NTBuilderProviderType inBuilders,
@@ -80,7 +81,77 @@ public final class DustYardFont
     final DustYardSnare inSnare,
     final DustYardBassDrum inBassDrum,
     final DustYardChinaHiHat inCym,
-    final DustYardSplash inSplashConverted)
+    final DustYardSplash inSplashConverted,
+    final DustYardSampleStore inStore,
+    final DustYardSampleLoading inLoading)
+  {
+    this(
+      inBuilders,
+      inWriters,
+      inSnare,
+      inBassDrum,
+      inCym,
+      inSplashConverted,
+      Objects.requireNonNull(inStore, "store").sources(inLoading)
+    );
+  }
+
+  /**
+   * Create a font whose sample data is obtained from the given sources.
+   *
+   * @param inBuilders        The builder provider
+   * @param inWriters         The writer provider
+   * @param inSnare           The snare samples
+   * @param inBassDrum        The bass drum samples
+   * @param inCym             The china hi-hat samples
+   * @param inSplashConverted The splash samples
+   * @param inSources         The sample sources
+   */
+
+  public DustYardFont(
+    final NTBuilderProviderType inBuilders,
+    final NTWriterProviderType inWriters,
+    final DustYardSnare inSnare,
+    final DustYardBassDrum inBassDrum,
+    final DustYardChinaHiHat inCym,
+    final DustYardSplash inSplashConverted,
+    final DustYardSampleSourcesType inSources)
+  {
+    this(
+      inBuilders,
+      inWriters,
+      inSnare,
+      inBassDrum,
+      inCym,
+      inSplashConverted,
+      inSources,
+      Optional.empty()
+    );
+  }
+
+  /**
+   * Create a font whose sample data is obtained from the given sources.
+   *
+   * @param inBuilders        The builder provider
+   * @param inWriters         The writer provider
+   * @param inSnare           The snare samples
+   * @param inBassDrum        The bass drum samples
+   * @param inCym             The china hi-hat samples
+   * @param inSplashConverted The splash samples
+   * @param inSources         The sample sources
+   * @param inDeduplication   The deduplication settings, if samples are to be
+   *                          deduplicated
+   */
+
+  public DustYardFont(
+    final NTBuilderProviderType inBuilders,
+    final NTWriterProviderType inWriters,
+    final DustYardSnare inSnare,
+    final DustYardBassDrum inBassDrum,
+    final DustYardChinaHiHat inCym,
+    final DustYardSplash inSplashConverted,
+    final DustYardSampleSourcesType inSources,
+    final Optional<DustYardDeduplication> inDeduplication)
   {
     this.builders =
       Objects.requireNonNull(inBuilders, "builders");
@@ -94,6 +165,10 @@ public final class DustYardFont
       Objects.requireNonNull(inCym, "cym");
     this.splashConverted =
       Objects.requireNonNull(inSplashConverted, "splashConverted");
+    this.sources =
+      Objects.requireNonNull(inSources, "sources");
+    this.deduplication =
+      Objects.requireNonNull(inDeduplication, "deduplication");
   }
 
   public static DustYardFont of(
@@ -103,6 +178,28 @@ public final class DustYardFont
     final DustYardBassDrum bd,
     final DustYardChinaHiHat cym,
     final DustYardSplash splashConverted)
+  {
+    return of(
+      builders,
+      writers,
+      snare,
+      bd,
+      cym,
+      splashConverted,
+      new DustYardSampleStore(),
+      DustYardSampleLoading.EAGER
+    );
+  }
+
+  public static DustYardFont of(
+    final NTBuilderProviderType builders,
+    final NTWriterProviderType writers,
+    final DustYardSnare snare,
+    final DustYardBassDrum bd,
+    final DustYardChinaHiHat cym,
+    final DustYardSplash splashConverted,
+    final DustYardSampleStore store,
+    final DustYardSampleLoading loading)
   {
     return new DustYardFont(
       builders,
@@ -110,7 +207,32 @@ public final class DustYardFont
       snare,
       bd,
       cym,
-      splashConverted
+      splashConverted,
+      store,
+      loading
+    );
+  }
+
+  public static DustYardFont of(
+    final NTBuilderProviderType builders,
+    final NTWriterProviderType writers,
+    final DustYardSnare snare,
+    final DustYardBassDrum bd,
+    final DustYardChinaHiHat cym,
+    final DustYardSplash splashConverted,
+    final DustYardSampleStore store,
+    final DustYardSampleLoading loading,
+    final Optional<DustYardDeduplication> deduplication)
+  {
+    return new DustYardFont(
+      builders,
+      writers,
+      snare,
+      bd,
+      cym,
+      splashConverted,
+      Objects.requireNonNull(store, "store").sources(loading),
+      deduplication
     );
   }
 
@@ -119,6 +241,7 @@ public final class DustYardFont
    */
 
   private static void addBassDrumSampleDefinitions(
+    final SampleTable table,
     final List<NTSampleBuilderType> bdSamples,
     final NTInstrumentBuilderType sfInstrument)
   {
@@ -142,6 +265,7 @@ public final class DustYardFont
       zone.addGenerator(
         NTGenerators.findForName("sampleModes").orElseThrow(),
         NTGenericAmount.of(0));
+      table.overrideRootKey(zone, bdSample, 24);
       zone.addSampleGenerator(bdSample);
 
       velocityLow = velocityHigh + 1;
@@ -154,6 +278,7 @@ public final class DustYardFont
    */
 
   private static void addChinaHiHatSampleDefinitions(
+    final SampleTable table,
     final List<NTSampleBuilderType> cymSamples,
     final NTInstrumentBuilderType sfInstrument)
   {
@@ -164,6 +289,7 @@ public final class DustYardFont
       zone.addGenerator(
         NTGenerators.findForName("sampleModes").orElseThrow(),
         NTGenericAmount.of(0));
+      table.overrideRootKey(zone, cymSample, CYMBAL_ROOT + index);
       zone.addSampleGenerator(cymSample);
       ++index;
     }
@@ -174,6 +300,7 @@ public final class DustYardFont
    */
 
   private static void addSnareSampleDefinitions(
+    final SampleTable table,
     final SortedMap<Integer, List<NTSampleBuilderType>> snareSamples,
     final NTInstrumentBuilderType sfInstrument)
   {
@@ -194,6 +321,7 @@ public final class DustYardFont
         zone.addGenerator(
           NTGenerators.findForName("sampleModes").orElseThrow(),
           NTGenericAmount.of(0));
+        table.overrideRootKey(zone, sample, rootNote);
         zone.addSampleGenerator(sample);
 
         velocityLow = velocityHigh + 1;
@@ -207,6 +335,7 @@ public final class DustYardFont
    */
 
   private static void addSplashSampleDefinitions(
+    final SampleTable table,
     final SortedMap<Integer, List<NTSampleBuilderType>> splashSamples,
     final NTInstrumentBuilderType sfInstrument)
   {
@@ -227,6 +356,7 @@ public final class DustYardFont
         zone.addGenerator(
           NTGenerators.findForName("sampleModes").orElseThrow(),
           NTGenericAmount.of(0));
+        table.overrideRootKey(zone, sample, rootNote);
         zone.addSampleGenerator(sample);
 
         velocityLow = velocityHigh + 1;
@@ -236,7 +366,7 @@ public final class DustYardFont
   }
 
   private static List<NTSampleBuilderType> addSnareSpecific(
-    final NTBuilderType builder,
+    final SampleTable table,
     final int rootNote,
     final DustYardSnareTautnessKind tautnessKind,
     final DustYardSnareStrikeKind strikeKind,
@@ -256,45 +386,11 @@ public final class DustYardFont
           velocity
         );
 
-      final var sample =
-        builder.addSample(sampleName);
-
-      final SampleBufferType sampleBuffer;
-      try (var stream = AudioSystem.getAudioInputStream(file.toFile())) {
-        sampleBuffer = SampleBufferXMedia.sampleBufferOfStream(
-          stream, DustYardFont::buffers
-        );
-      } catch (final UnsupportedAudioFileException e) {
-        throw new IOException(e);
-      }
-
-      sample.setSampleRate((int) sampleBuffer.sampleRate());
-      sample.setPitchCorrection(0);
-      sample.setSampleCount(sampleBuffer.samples());
-      sample.setOriginalPitch(NTPitch.of(rootNote));
-      sample.setLoopStart(0L);
-      sample.setLoopEnd(sampleBuffer.samples() - 1L);
-      sample.setDataWriter(ch -> copySampleToChannel(
-        sampleBuffer,
-        sampleName,
-        ch));
-      samples.add(sample);
+      samples.add(table.add(file, sampleName, rootNote));
     }
     return List.copyOf(samples);
   }
 
-  private static SampleBufferType buffers(
-    final int channels,
-    final long frames,
-    final double sampleRate)
-  {
-    return SampleBufferDouble.createWithHeapBuffer(
-      channels,
-      frames,
-      sampleRate
-    );
-  }
-
   private static String textResource(
     final String name)
     throws IOException
@@ -307,41 +403,175 @@ public final class DustYardFont
   }
 
   private static void copySampleToChannel(
-    final SampleBufferType source,
+    final DustYardSampleWriter writer,
+    final DustYardSampleSourceType source,
     final String sampleName,
     final SeekableByteChannel channel)
     throws IOException
   {
     LOG.debug("copying: {}", sampleName);
 
-    final var buffer =
-      ByteBuffer.allocate(Math.toIntExact(source.samples() * 2L))
-        .order(LITTLE_ENDIAN);
+    final var event = new DustYardJFRSampleWriteEvent();
+    event.begin();
+    writer.write(source.load(), channel);
+    event.endAndCommit(sampleName, source.frames());
+  }
 
-    for (var index = 0L; index < source.frames(); ++index) {
-      final var frame_d = source.frameGetExact(index);
-      final var frame_s = frame_d * 32767.0;
-      final var frame_i = (short) frame_s;
-      buffer.putShort(frame_i);
-    }
+  public void write(
+    final Path fileOutput)
+    throws IOException
+  {
+    this.write(fileOutput, DustYardOutputMode.STANDARD);
+  }
 
-    buffer.flip();
-    final var wrote = channel.write(buffer);
-    if (wrote != buffer.capacity()) {
-      throw new IOException(
-        new StringBuilder(32)
-          .append("Wrote too few bytes (wrote ")
-          .append(wrote)
-          .append(" expected ")
-          .append(buffer.capacity())
-          .append(")")
-          .toString()
-      );
+  public void write(
+    final Path fileOutput,
+    final DustYardOutputMode mode)
+    throws IOException
+  {
+    final var executor =
+      DustYardExecutors.create(DustYardExecutorKind.SERIAL, 1, "write");
+
+    try {
+      this.write(fileOutput, mode, executor, 1);
+    } finally {
+      executor.shutdownNow();
     }
   }
 
+  /**
+   * Write the soundfont.
+   *
+   * @param fileOutput The output file
+   * @param mode       The output mode
+   * @param executor   The executor used to write samples in parallel modes
+   * @param workers    The maximum number of samples written at once
+   *
+   * @throws IOException On errors
+   */
+
   public void write(
-    final Path fileOutput)
+    final Path fileOutput,
+    final DustYardOutputMode mode,
+    final ExecutorService executor,
+    final int workers)
+    throws IOException
+  {
+    this.write(
+      fileOutput,
+      mode,
+      executor,
+      workers,
+      new DustYardMetrics()
+    );
+  }
+
+  /**
+   * Write the soundfont.
+   *
+   * @param fileOutput The output file
+   * @param mode       The output mode
+   * @param executor   The executor used to write samples in parallel modes
+   * @param workers    The maximum number of samples written at once
+   * @param metrics    The metrics to which the work done is added
+   *
+   * @throws IOException On errors
+   */
+
+  public void write(
+    final Path fileOutput,
+    final DustYardOutputMode mode,
+    final ExecutorService executor,
+    final int workers,
+    final DustYardMetrics metrics)
+    throws IOException
+  {
+    Objects.requireNonNull(metrics, "metrics");
+
+    final var fontSamples = new ArrayList<DustYardFontSample>();
+    final var builder =
+      this.describe(fontSamples, metrics, this.deduplication);
+
+    /*
+     * Fonts may be written concurrently, so the work is measured on each
+     * thread that does it rather than across all threads.
+     */
+
+    try (var measurement = metrics.begin(DustYardStage.SERIALIZE)) {
+      switch (mode) {
+        case STANDARD -> {
+          this.serialize(fileOutput, builder, fontSamples);
+        }
+        case INCREMENTAL -> {
+          this.serializeIncremental(fileOutput, builder, fontSamples);
+        }
+        case PARALLEL -> {
+          this.serializeParallel(
+            fileOutput, builder, fontSamples, executor, workers, metrics);
+        }
+        case MAPPED -> {
+          this.serializeMapped(fileOutput, builder, fontSamples);
+        }
+      }
+
+      var frames = 0L;
+      for (final var fontSample : fontSamples) {
+        frames += fontSample.source().frames();
+      }
+      measurement.addSamples(frames);
+      measurement.addBytesWritten(Files.size(fileOutput));
+    }
+  }
+
+  /**
+   * Plan the soundfont without loading any sample data. The size of the SF2
+   * file is computed by writing the file with the sample data skipped over to
+   * a channel that discards its contents.
+   *
+   * @return The plan
+   *
+   * @throws IOException On errors
+   */
+
+  public DustYardFontPlan plan()
+    throws IOException
+  {
+    final var fontSamples = new ArrayList<DustYardFontSample>();
+    final var builder =
+      this.describe(fontSamples, new DustYardMetrics(), Optional.empty());
+
+    var frames = 0L;
+    var largest = 0L;
+    for (final var fontSample : fontSamples) {
+      final var size = fontSample.dataSize();
+      fontSample.sample()
+        .setDataWriter(ch -> ch.position(ch.position() + size));
+      frames += fontSample.source().frames();
+      largest = Math.max(largest, size);
+    }
+
+    final var channel = new DustYardCountingChannel();
+    try {
+      this.writers.createForChannel(
+        URI.create("urn:dust-yard:plan"), builder.build(), channel)
+        .write();
+    } catch (final NTWriteException e) {
+      throw new IOException(e);
+    }
+
+    return new DustYardFontPlan(
+      fontSamples.size(),
+      frames,
+      frames * 2L,
+      largest,
+      channel.size()
+    );
+  }
+
+  private NTBuilderType describe(
+    final List<DustYardFontSample> fontSamples,
+    final DustYardMetrics metrics,
+    final Optional<DustYardDeduplication> deduplicationOpt)
     throws IOException
   {
     final var builder = this.builders.createBuilder();
@@ -358,28 +588,64 @@ public final class DustYardFont
         .build()
     );
 
+    final DustYardSampleSourcesType sources = file -> {
+      try (var measurement = metrics.begin(DustYardStage.LOAD)) {
+        final var event = new DustYardJFRSampleLoadEvent();
+        event.begin();
+        final var source = this.sources.source(file);
+        event.end();
+
+        measurement.addSamples(source.frames());
+        if (event.shouldCommit()) {
+          event.file = file.toString();
+          event.frames = source.frames();
+          event.sampleRate = (int) source.sampleRate();
+          event.commit();
+        }
+        return source;
+      }
+    };
+
+    final Optional<DustYardSampleDeduplicator<NTSampleBuilderType>> deduplicator =
+      deduplicationOpt.map(d -> new DustYardSampleDeduplicator<>(d.tolerance()));
+    final var table =
+      new SampleTable(builder, sources, fontSamples, deduplicator);
+
     final var snareSamples =
-      this.addSnare(builder);
+      this.addSnare(table);
     final var bdSamples =
-      this.addBassDrum(builder);
+      this.addBassDrum(table);
     final var cymSamples =
-      this.addChinaHiHat(builder);
+      this.addChinaHiHat(table);
     final var splashSamples =
-      this.addSplash(builder);
-
-    instrumentWithVelocity(
-      builder,
-      snareSamples,
-      bdSamples,
-      cymSamples,
-      splashSamples
-    );
+      this.addSplash(table);
+
+    if (deduplicationOpt.isPresent()) {
+      final var removed = deduplicator.orElseThrow();
+      deduplicationOpt.get()
+        .report()
+        .samplesDeduplicated(removed.removedSamples(), removed.removedBytes());
+    }
 
-    this.serialize(fileOutput, builder);
+    final var zones = metrics.begin(DustYardStage.ZONES);
+    try {
+      instrumentWithVelocity(
+        builder,
+        table,
+        snareSamples,
+        bdSamples,
+        cymSamples,
+        splashSamples
+      );
+    } finally {
+      zones.close();
+    }
+    return builder;
   }
 
   private static void instrumentWithVelocity(
     final NTBuilderType builder,
+    final SampleTable table,
     final SortedMap<Integer, List<NTSampleBuilderType>> snareSamples,
     final List<NTSampleBuilderType> bdSamples,
     final List<NTSampleBuilderType> cymSamples,
@@ -430,14 +696,14 @@ public final class DustYardFont
       NTTransforms.find(0)
     );
 
-    addSnareSampleDefinitions(snareSamples, sfInstrument);
-    addBassDrumSampleDefinitions(bdSamples, sfInstrument);
-    addChinaHiHatSampleDefinitions(cymSamples, sfInstrument);
-    addSplashSampleDefinitions(splashSamples, sfInstrument);
+    addSnareSampleDefinitions(table, snareSamples, sfInstrument);
+    addBassDrumSampleDefinitions(table, bdSamples, sfInstrument);
+    addChinaHiHatSampleDefinitions(table, cymSamples, sfInstrument);
+    addSplashSampleDefinitions(table, splashSamples, sfInstrument);
   }
 
   private SortedMap<Integer, List<NTSampleBuilderType>> addSplash(
-    final NTBuilderType builder)
+    final SampleTable table)
     throws IOException
   {
     final SortedMap<Integer, List<NTSampleBuilderType>> samples =
@@ -454,27 +720,7 @@ public final class DustYardFont
         final var sampleName =
           String.format("SP_%s_%02d", kind.toUpperCase(Locale.ROOT), velocity);
         final var sample =
-          builder.addSample(sampleName);
-
-        final SampleBufferType sampleBuffer;
-        try (var stream = AudioSystem.getAudioInputStream(file.toFile())) {
-          sampleBuffer =
-            SampleBufferXMedia.sampleBufferOfStream(
-              stream, DustYardFont::buffers);
-        } catch (final UnsupportedAudioFileException e) {
-          throw new IOException(e);
-        }
-
-        sample.setSampleRate((int) sampleBuffer.sampleRate());
-        sample.setPitchCorrection(0);
-        sample.setSampleCount(sampleBuffer.samples());
-        sample.setOriginalPitch(NTPitch.of(SPLASH_ROOT + index));
-        sample.setLoopStart(0L);
-        sample.setLoopEnd(sampleBuffer.samples() - 1L);
-        sample.setDataWriter(ch -> copySampleToChannel(
-          sampleBuffer,
-          sampleName,
-          ch));
+          table.add(file, sampleName, SPLASH_ROOT + index);
 
         final var velocities =
           samples.computeIfAbsent(
@@ -491,7 +737,7 @@ public final class DustYardFont
   }
 
   private List<NTSampleBuilderType> addChinaHiHat(
-    final NTBuilderType builder)
+    final SampleTable table)
     throws IOException
   {
     final List<NTSampleBuilderType> samples = new ArrayList<>();
@@ -504,29 +750,8 @@ public final class DustYardFont
 
       final var sampleName =
         String.format("CHH_%s", kind.toUpperCase(Locale.ROOT));
-      final var sample =
-        builder.addSample(sampleName);
-
-      final SampleBufferType sampleBuffer;
-      try (var stream = AudioSystem.getAudioInputStream(file.toFile())) {
-        sampleBuffer =
-          SampleBufferXMedia.sampleBufferOfStream(
-            stream, DustYardFont::buffers);
-      } catch (final UnsupportedAudioFileException e) {
-        throw new IOException(e);
-      }
 
-      sample.setSampleRate((int) sampleBuffer.sampleRate());
-      sample.setPitchCorrection(0);
-      sample.setSampleCount(sampleBuffer.samples());
-      sample.setOriginalPitch(NTPitch.of(CYMBAL_ROOT + index));
-      sample.setLoopStart(0L);
-      sample.setLoopEnd(sampleBuffer.samples() - 1L);
-      sample.setDataWriter(ch -> copySampleToChannel(
-        sampleBuffer,
-        sampleName,
-        ch));
-      samples.add(sample);
+      samples.add(table.add(file, sampleName, CYMBAL_ROOT + index));
       ++index;
     }
 
@@ -534,7 +759,7 @@ public final class DustYardFont
   }
 
   private List<NTSampleBuilderType> addBassDrum(
-    final NTBuilderType builder)
+    final SampleTable table)
     throws IOException
   {
     final List<NTSampleBuilderType> samples =
@@ -546,34 +771,96 @@ public final class DustYardFont
 
       final var sampleName =
         String.format("BD_%02d", velocity);
-      final var sample =
-        builder.addSample(sampleName);
-
-      final SampleBufferType sampleBuffer;
-      try (var stream = AudioSystem.getAudioInputStream(file.toFile())) {
-        sampleBuffer =
-          SampleBufferXMedia.sampleBufferOfStream(
-            stream, DustYardFont::buffers);
-      } catch (final UnsupportedAudioFileException e) {
-        throw new IOException(e);
-      }
 
-      sample.setSampleRate((int) sampleBuffer.sampleRate());
-      sample.setPitchCorrection(0);
-      sample.setSampleCount(sampleBuffer.samples());
-      sample.setOriginalPitch(NTPitch.of(24));
-      sample.setLoopStart(0L);
-      sample.setLoopEnd(sampleBuffer.samples() - 1L);
-      sample.setDataWriter(ch -> copySampleToChannel(
-        sampleBuffer,
-        sampleName,
-        ch));
-      samples.add(sample);
+      samples.add(table.add(file, sampleName, 24));
     }
     return List.copyOf(samples);
   }
 
   private void serialize(
+    final Path fileOutput,
+    final NTBuilderType builder,
+    final List<DustYardFontSample> fontSamples)
+    throws IOException
+  {
+    DustYardSF2Manifest.invalidate(fileOutput);
+
+    final var writer = new DustYardSampleWriter();
+    for (final var fontSample : fontSamples) {
+      fontSample.sample()
+        .setDataWriter(ch -> copySampleToChannel(
+          writer,
+          fontSample.source(),
+          fontSample.name(),
+          ch));
+    }
+    this.serializeDescription(fileOutput, builder);
+  }
+
+  /**
+   * Write a soundfont "skeleton": The complete file with all headers and
+   * preset data, but with the sample data regions skipped over rather than
+   * written.
+   */
+
+  private void serializeSkeleton(
+    final Path fileOutput,
+    final NTBuilderType builder,
+    final List<DustYardFontSample> fontSamples)
+    throws IOException
+  {
+    for (final var fontSample : fontSamples) {
+      final var size = fontSample.dataSize();
+      fontSample.sample()
+        .setDataWriter(ch -> ch.position(ch.position() + size));
+    }
+    this.serializeDescription(fileOutput, builder);
+  }
+
+  private void serializeIncremental(
+    final Path fileOutput,
+    final NTBuilderType builder,
+    final List<DustYardFontSample> fontSamples)
+    throws IOException
+  {
+    final var skeleton =
+      fileOutput.resolveSibling(fileOutput.getFileName() + ".skeleton");
+
+    this.serializeSkeleton(skeleton, builder, fontSamples);
+    DustYardIncrementalWriter.write(fileOutput, skeleton, fontSamples);
+  }
+
+  private void serializeParallel(
+    final Path fileOutput,
+    final NTBuilderType builder,
+    final List<DustYardFontSample> fontSamples,
+    final ExecutorService executor,
+    final int workers,
+    final DustYardMetrics metrics)
+    throws IOException
+  {
+    final var skeleton =
+      fileOutput.resolveSibling(fileOutput.getFileName() + ".skeleton");
+
+    this.serializeSkeleton(skeleton, builder, fontSamples);
+    DustYardParallelWriter.write(
+      fileOutput, skeleton, fontSamples, executor, workers, metrics);
+  }
+
+  private void serializeMapped(
+    final Path fileOutput,
+    final NTBuilderType builder,
+    final List<DustYardFontSample> fontSamples)
+    throws IOException
+  {
+    final var skeleton =
+      fileOutput.resolveSibling(fileOutput.getFileName() + ".skeleton");
+
+    this.serializeSkeleton(skeleton, builder, fontSamples);
+    DustYardMappedWriter.write(fileOutput, skeleton, fontSamples);
+  }
+
+  private void serializeDescription(
     final Path fileOutput,
     final NTBuilderType builder)
     throws IOException
@@ -590,7 +877,7 @@ public final class DustYardFont
   }
 
   private SortedMap<Integer, List<NTSampleBuilderType>> addSnare(
-    final NTBuilderType builder)
+    final SampleTable table)
     throws IOException
   {
     final AtomicInteger rootNote =
@@ -605,7 +892,7 @@ public final class DustYardFont
             final var rootNoteNow = rootNote.get();
             final var sampleList =
               addSnareSpecific(
-                builder,
+                table,
                 rootNoteNow,
                 tautnessKind,
                 strikeKind,
@@ -624,4 +911,87 @@ public final class DustYardFont
     }
     return samples;
   }
+
+  /**
+   * The samples added to a soundfont builder while the font is described.
+   * Samples with duplicate data, if deduplication is enabled, are replaced
+   * with the sample added first.
+   */
+
+  private static final class SampleTable
+  {
+    private final NTBuilderType builder;
+    private final DustYardSampleSourcesType sources;
+    private final List<DustYardFontSample> fontSamples;
+    private final Optional<DustYardSampleDeduplicator<NTSampleBuilderType>> deduplicator;
+    private final IdentityHashMap<NTSampleBuilderType, Integer> pitches;
+
+    SampleTable(
+      final NTBuilderType inBuilder,
+      final DustYardSampleSourcesType inSources,
+      final List<DustYardFontSample> inFontSamples,
+      final Optional<DustYardSampleDeduplicator<NTSampleBuilderType>> inDeduplicator)
+    {
+      this.builder =
+        Objects.requireNonNull(inBuilder, "builder");
+      this.sources =
+        Objects.requireNonNull(inSources, "sources");
+      this.fontSamples =
+        Objects.requireNonNull(inFontSamples, "fontSamples");
+      this.deduplicator =
+        Objects.requireNonNull(inDeduplicator, "deduplicator");
+      this.pitches =
+        new IdentityHashMap<>();
+    }
+
+    NTSampleBuilderType add(
+      final Path file,
+      final String name,
+      final int pitch)
+      throws IOException
+    {
+      final var source = this.sources.source(file);
+      if (this.deduplicator.isPresent()) {
+        return this.deduplicator.get()
+          .deduplicate(source, retained -> this.create(retained, name, pitch));
+      }
+      return this.create(source, name, pitch);
+    }
+
+    private NTSampleBuilderType create(
+      final DustYardSampleSourceType source,
+      final String name,
+      final int pitch)
+    {
+      final var sample = this.builder.addSample(name);
+      sample.setSampleRate((int) source.sampleRate());
+      sample.setPitchCorrection(0);
+      sample.setSampleCount(source.frames());
+      sample.setOriginalPitch(NTPitch.of(pitch));
+      sample.setLoopStart(0L);
+      sample.setLoopEnd(source.frames() - 1L);
+      this.fontSamples.add(new DustYardFontSample(sample, name, source));
+      this.pitches.put(sample, Integer.valueOf(pitch));
+      return sample;
+    }
+
+    /**
+     * A sample shared between zones keeps the pitch of the zone that added
+     * it first; the other zones override the root key.
+     */
+
+    void overrideRootKey(
+      final NTInstrumentZoneBuilderType zone,
+      final NTSampleBuilderType sample,
+      final int rootNote)
+    {
+      final var pitch = this.pitches.get(sample);
+      if (pitch != null && pitch.intValue() != rootNote) {
+        zone.addGenerator(
+          NTGenerators.findForName("overridingRootKey").orElseThrow(),
+          NTGenericAmount.of(rootNote)
+        );
+      }
+    }
+  }
 }
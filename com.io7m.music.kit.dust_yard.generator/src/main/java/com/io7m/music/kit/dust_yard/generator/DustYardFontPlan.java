@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+/**
+ * The plan of a soundfont, computed without loading any sample data.
+ *
+ * @param samples               The number of samples
+ * @param frames                The total number of frames across all samples
+ * @param sampleDataSize        The total size in bytes of the sample data
+ * @param largestSampleDataSize The size in bytes of the largest sample
+ * @param fileSize              The size in bytes of the SF2 file
+ */
+
+public record DustYardFontPlan(
+  int samples,
+  long frames,
+  long sampleDataSize,
+  long largestSampleDataSize,
+  long fileSize)
+{
+  /**
+   * The plan of a soundfont.
+   *
+   * @param samples               The number of samples
+   * @param frames                The total number of frames across all samples
+   * @param sampleDataSize        The total size in bytes of the sample data
+   * @param largestSampleDataSize The size in bytes of the largest sample
+   * @param fileSize              The size in bytes of the SF2 file
+   */
+
+  public DustYardFontPlan
+  {
+    if (samples < 0 || frames < 0L || fileSize < 0L) {
+      throw new IllegalArgumentException("Plan values must be non-negative");
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import com.io7m.jnoisetype.writer.api.NTSampleBuilderType;
+
+import java.util.Objects;
+
+/**
+ * A sample added to a soundfont builder, along with the source of the data
+ * that will be written for it.
+ *
+ * @param sample The sample builder
+ * @param name   The sample name
+ * @param source The sample data source
+ */
+
+public record DustYardFontSample(
+  NTSampleBuilderType sample,
+  String name,
+  DustYardSampleSourceType source)
+{
+  /**
+   * A sample added to a soundfont builder.
+   *
+   * @param sample The sample builder
+   * @param name   The sample name
+   * @param source The sample data source
+   */
+
+  public DustYardFontSample
+  {
+    Objects.requireNonNull(sample, "sample");
+    Objects.requireNonNull(name, "name");
+    Objects.requireNonNull(source, "source");
+  }
+
+  /**
+   * @return The size in bytes of the 16-bit sample data
+   */
+
+  public long dataSize()
+  {
+    return this.source.frames() * 2L;
+  }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A writer that incrementally updates an existing soundfont file.
+ *
+ * <p>The writer is given a "skeleton" file containing the complete
+ * soundfont structure without sample data. If a manifest from a previous
+ * build exists, the existing file is patched in place: the (small) headers
+ * and preset data are copied from the skeleton, and only the sample regions
+ * whose offset, length, or content changed are written. Otherwise, the
+ * sample data is written into the skeleton, and the skeleton replaces the
+ * target file. A manifest is only used if the size, modification time, and
+ * file key of the target file are those recorded in the manifest; the other
+ * writers delete the manifest when they replace the file.</p>
+ */
+
+public final class DustYardIncrementalWriter
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(DustYardIncrementalWriter.class);
+
+  private DustYardIncrementalWriter()
+  {
+
+  }
+
+  /**
+   * Write or update the given soundfont file.
+   *
+   * @param fileOutput  The output file
+   * @param skeleton    The skeleton file
+   * @param fontSamples The samples, in the order they were added to the builder
+   *
+   * @throws IOException On errors
+   */
+
+  public static void write(
+    final Path fileOutput,
+    final Path skeleton,
+    final List<DustYardFontSample> fontSamples)
+    throws IOException
+  {
+    final var layout =
+      DustYardSF2Layout.read(skeleton);
+    final var regions =
+      regionsFor(layout, fontSamples);
+    final var manifestFile =
+      DustYardSF2Manifest.manifestFileFor(fileOutput);
+
+    Optional<DustYardSF2Manifest> previous = Optional.empty();
+    if (Files.isRegularFile(fileOutput)) {
+      final var existing = DustYardSF2Manifest.Identity.of(fileOutput);
+      previous = DustYardSF2Manifest.read(manifestFile)
+        .filter(manifest -> manifest.identity().equals(existing));
+      if (previous.isEmpty()) {
+        LOG.info("incremental: no manifest matches {}", fileOutput);
+      }
+    }
+
+    final List<DustYardSF2Manifest.Entry> entries;
+    if (previous.isPresent()) {
+      /*
+       * The manifest is removed while the file is being patched so that an
+       * interrupted patch results in a full rewrite on the next build.
+       */
+
+      Files.deleteIfExists(manifestFile);
+      entries = patch(
+        fileOutput,
+        skeleton,
+        layout,
+        fontSamples,
+        regions,
+        previous.get()
+      );
+      Files.delete(skeleton);
+    } else {
+      entries = fill(skeleton, fontSamples, regions);
+      Files.move(skeleton, fileOutput, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    new DustYardSF2Manifest(DustYardSF2Manifest.Identity.of(fileOutput), entries)
+      .write(manifestFile);
+  }
+
+  /**
+   * Find the region occupied by each of the given samples.
+   *
+   * @param layout      The file layout
+   * @param fontSamples The samples
+   *
+   * @return The regions, in the same order as the samples
+   *
+   * @throws IOException If a sample is missing, or has an unexpected size
+   */
+
+  public static List<DustYardSF2SampleRegion> regionsFor(
+    final DustYardSF2Layout layout,
+    final List<DustYardFontSample> fontSamples)
+    throws IOException
+  {
+    final var byName =
+      new HashMap<String, DustYardSF2SampleRegion>(layout.samples().size());
+
+    for (final var region : layout.samples()) {
+      if (byName.put(region.name(), region) != null) {
+        throw new IOException(
+          String.format("Duplicate sample name %s", region.name()));
+      }
+    }
+
+    final var regions =
+      new ArrayList<DustYardSF2SampleRegion>(fontSamples.size());
+
+    for (final var fontSample : fontSamples) {
+      final var region = byName.get(fontSample.name());
+      if (region == null) {
+        throw new IOException(
+          String.format("Sample %s is missing from the layout", fontSample.name()));
+      }
+      if (region.length() != fontSample.dataSize()) {
+        throw new IOException(
+          String.format(
+            "Sample %s has size %d in the layout, but %d bytes of data",
+            fontSample.name(),
+            Long.valueOf(region.length()),
+            Long.valueOf(fontSample.dataSize()))
+        );
+      }
+      regions.add(region);
+    }
+    return regions;
+  }
+
+  private static List<DustYardSF2Manifest.Entry> fill(
+    final Path skeleton,
+    final List<DustYardFontSample> fontSamples,
+    final List<DustYardSF2SampleRegion> regions)
+    throws IOException
+  {
+    final var entries =
+      new ArrayList<DustYardSF2Manifest.Entry>(fontSamples.size());
+
+    try (var channel = FileChannel.open(skeleton, WRITE)) {
+      for (int index = 0; index < fontSamples.size(); ++index) {
+        final var fontSample = fontSamples.get(index);
+        final var region = regions.get(index);
+
+        final var event = new DustYardJFRSampleWriteEvent();
+        event.begin();
+        final var data = DustYardSampleEncoding.encode16(fontSample.source().load());
+        entries.add(new DustYardSF2Manifest.Entry(region, hashOf(data)));
+        DustYardSampleEncoding.writeFullyAt(channel, data, region.offset());
+        event.endAndCommit(fontSample.name(), fontSample.source().frames());
+      }
+    }
+
+    LOG.info("incremental: wrote all {} samples", Integer.valueOf(entries.size()));
+    return entries;
+  }
+
+  private static List<DustYardSF2Manifest.Entry> patch(
+    final Path fileOutput,
+    final Path skeleton,
+    final DustYardSF2Layout layout,
+    final List<DustYardFontSample> fontSamples,
+    final List<DustYardSF2SampleRegion> regions,
+    final DustYardSF2Manifest previous)
+    throws IOException
+  {
+    final var previousByName =
+      new HashMap<String, DustYardSF2Manifest.Entry>(previous.samples().size());
+    for (final var entry : previous.samples()) {
+      previousByName.put(entry.region().name(), entry);
+    }
+
+    final var entries =
+      new ArrayList<DustYardSF2Manifest.Entry>(fontSamples.size());
+
+    var written = 0L;
+    var changed = 0;
+
+    try (var target = FileChannel.open(fileOutput, READ, WRITE);
+         var source = FileChannel.open(skeleton, READ)) {
+
+      written += copyRange(source, target, 0L, layout.smplOffset());
+
+      for (int index = 0; index < fontSamples.size(); ++index) {
+        final var fontSample = fontSamples.get(index);
+        final var region = regions.get(index);
+        final var data = DustYardSampleEncoding.encode16(fontSample.source().load());
+        final var hash = hashOf(data);
+        entries.add(new DustYardSF2Manifest.Entry(region, hash));
+
+        final var old = previousByName.get(fontSample.name());
+        if (old != null && old.region().equals(region) && old.hash().equals(hash)) {
+          continue;
+        }
+
+        LOG.debug("patching: {}", fontSample.name());
+        DustYardSampleEncoding.writeFullyAt(target, data, region.offset());
+        written += region.length();
+        ++changed;
+      }
+
+      written += zeroGaps(target, layout, regions);
+
+      final var dataEnd = layout.smplOffset() + layout.smplSize();
+      written += copyRange(source, target, dataEnd, layout.fileSize() - dataEnd);
+      target.truncate(layout.fileSize());
+    }
+
+    LOG.info(
+      "incremental: {} of {} samples changed, wrote {} bytes",
+      Integer.valueOf(changed),
+      Integer.valueOf(entries.size()),
+      Long.valueOf(written)
+    );
+    return entries;
+  }
+
+  /**
+   * Zero the parts of the sample data chunk that are not occupied by
+   * samples. These hold the padding that follows each sample.
+   */
+
+  private static long zeroGaps(
+    final FileChannel target,
+    final DustYardSF2Layout layout,
+    final List<DustYardSF2SampleRegion> regions)
+    throws IOException
+  {
+    final var ordered = new ArrayList<>(regions);
+    ordered.sort(Comparator.comparingLong(DustYardSF2SampleRegion::offset));
+
+    final var zeros = ByteBuffer.allocate(4096);
+    var written = 0L;
+    var position = layout.smplOffset();
+    final var end = layout.smplOffset() + layout.smplSize();
+
+    for (final var region : ordered) {
+      written += writeZeros(target, zeros, position, region.offset());
+      position = Math.max(position, region.offset() + region.length());
+    }
+    written += writeZeros(target, zeros, position, end);
+    return written;
+  }
+
+  private static long writeZeros(
+    final FileChannel target,
+    final ByteBuffer zeros,
+    final long start,
+    final long end)
+    throws IOException
+  {
+    var position = start;
+    while (position < end) {
+      zeros.clear();
+      zeros.limit((int) Math.min(zeros.capacity(), end - position));
+      DustYardSampleEncoding.writeFullyAt(target, zeros, position);
+      position += zeros.limit();
+    }
+    return Math.max(0L, end - start);
+  }
+
+  private static long copyRange(
+    final FileChannel source,
+    final FileChannel target,
+    final long position,
+    final long count)
+    throws IOException
+  {
+    var copied = 0L;
+    target.position(position);
+    while (copied < count) {
+      final var r = source.transferTo(position + copied, count - copied, target);
+      if (r <= 0L) {
+        throw new IOException(
+          String.format("Unexpected EOF copying from offset %d", Long.valueOf(position)));
+      }
+      copied += r;
+    }
+    return copied;
+  }
+
+  private static String hashOf(
+    final ByteBuffer data)
+  {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    digest.update(data.duplicate());
+    return HexFormat.of().formatHex(digest.digest());
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The data for a soundfont sample was obtained.
+ */
+
+@Name("com.io7m.music.kit.dust_yard.SampleLoad")
+@Label("Sample Load")
+@Description("The data for a soundfont sample was obtained.")
+@Category({"Dust Yard", "Generator"})
+@Enabled(false)
+@StackTrace(false)
+public final class DustYardJFRSampleLoadEvent extends Event
+{
+  @Label("File")
+  @Description("The sample file")
+  String file;
+
+  @Label("Frames")
+  @Description("The number of frames in the sample")
+  long frames;
+
+  @Label("Sample Rate")
+  @Description("The sample rate in Hz")
+  int sampleRate;
+
+  /**
+   * Create an event.
+   */
+
+  public DustYardJFRSampleLoadEvent()
+  {
+
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The data for a soundfont sample was written.
+ */
+
+@Name("com.io7m.music.kit.dust_yard.SampleWrite")
+@Label("Sample Write")
+@Description("The data for a soundfont sample was written.")
+@Category({"Dust Yard", "Generator"})
+@Enabled(false)
+@StackTrace(false)
+public final class DustYardJFRSampleWriteEvent extends Event
+{
+  @Label("Sample")
+  @Description("The sample name")
+  String sample;
+
+  @Label("Frames")
+  @Description("The number of frames in the sample")
+  long frames;
+
+  @Label("Size")
+  @Description("The size of the written sample data")
+  @DataAmount
+  long size;
+
+  /**
+   * Create an event.
+   */
+
+  public DustYardJFRSampleWriteEvent()
+  {
+
+  }
+
+  /**
+   * End the event, and commit it if it is enabled and exceeds its threshold.
+   *
+   * @param name   The sample name
+   * @param frames The number of frames written
+   */
+
+  void endAndCommit(
+    final String name,
+    final long frames)
+  {
+    this.end();
+    if (this.shouldCommit()) {
+      this.sample = name;
+      this.frames = frames;
+      this.size = frames * 2L;
+      this.commit();
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A writer that fills the sample regions of a soundfont "skeleton" through a
+ * memory mapping.
+ *
+ * <p>The skeleton already has the final size of the soundfont file, so the
+ * sample data chunk can be mapped in its entirety. Samples are quantized
+ * directly into the mapping, and the mapping is forced to storage once all
+ * samples have been written. The completed skeleton then replaces the target
+ * file.</p>
+ */
+
+public final class DustYardMappedWriter
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(DustYardMappedWriter.class);
+
+  private DustYardMappedWriter()
+  {
+
+  }
+
+  /**
+   * Write the given soundfont file.
+   *
+   * @param fileOutput  The output file
+   * @param skeleton    The skeleton file
+   * @param fontSamples The samples, in the order they were added to the builder
+   *
+   * @throws IOException On errors
+   */
+
+  public static void write(
+    final Path fileOutput,
+    final Path skeleton,
+    final List<DustYardFontSample> fontSamples)
+    throws IOException
+  {
+    Objects.requireNonNull(fileOutput, "fileOutput");
+    Objects.requireNonNull(skeleton, "skeleton");
+    Objects.requireNonNull(fontSamples, "fontSamples");
+
+    DustYardSF2Manifest.invalidate(fileOutput);
+
+    final var layout =
+      DustYardSF2Layout.read(skeleton);
+    final var regions =
+      DustYardIncrementalWriter.regionsFor(layout, fontSamples);
+
+    if (layout.smplSize() > Integer.MAX_VALUE) {
+      throw new IOException(
+        String.format(
+          "Sample data size %d is too large to be mapped",
+          Long.valueOf(layout.smplSize()))
+      );
+    }
+
+    final var time0 = System.nanoTime();
+
+    try (var channel = FileChannel.open(skeleton, READ, WRITE)) {
+      final var mapped =
+        channel.map(READ_WRITE, layout.smplOffset(), layout.smplSize());
+      final var writer =
+        new DustYardSampleWriter();
+
+      for (int index = 0; index < fontSamples.size(); ++index) {
+        final var fontSample = fontSamples.get(index);
+        final var region = regions.get(index);
+
+        LOG.debug("mapping: {}", fontSample.name());
+
+        final var event = new DustYardJFRSampleWriteEvent();
+        event.begin();
+        mapped.position(Math.toIntExact(region.offset() - layout.smplOffset()));
+        writer.encodeInto(fontSample.source().load(), mapped);
+        event.endAndCommit(fontSample.name(), fontSample.source().frames());
+      }
+
+      mapped.force();
+    }
+
+    Files.move(skeleton, fileOutput, ATOMIC_MOVE, REPLACE_EXISTING);
+
+    final var time1 = System.nanoTime();
+    LOG.info(
+      "mapped: wrote {} samples ({} bytes) in {}ms",
+      Integer.valueOf(fontSamples.size()),
+      Long.valueOf(layout.smplSize()),
+      Long.valueOf((time1 - time0) / 1_000_000L)
+    );
+  }
+}
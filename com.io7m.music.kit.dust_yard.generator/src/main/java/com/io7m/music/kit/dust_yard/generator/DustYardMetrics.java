@@ -0,0 +1,443 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Metrics recorded for each stage of a build: wall time, bytes read and
+ * written, samples processed, and bytes allocated by each thread. The
+ * metrics are safe to update from multiple threads.
+ *
+ * <p>The wall time of a stage is the time from the start of the first
+ * measurement of the stage to the end of the last, so that stages whose work
+ * is spread across many concurrent measurements are not overcounted. The
+ * sum of the durations of the individual measurements is recorded
+ * separately as the busy time.</p>
+ *
+ * <p>The JVM does not measure the allocations of virtual threads. A stage
+ * with any measurement of work on a virtual thread reports its allocation as
+ * unmeasured rather than as zero.</p>
+ */
+
+public final class DustYardMetrics
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(DustYardMetrics.class);
+
+  private static final int VERSION = 2;
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+    allocationBean();
+
+  private final EnumMap<DustYardStage, Stage> stages;
+
+  /**
+   * Create empty metrics.
+   */
+
+  public DustYardMetrics()
+  {
+    this.stages = new EnumMap<>(DustYardStage.class);
+    for (final var stage : DustYardStage.values()) {
+      this.stages.put(stage, new Stage());
+    }
+  }
+
+  private static com.sun.management.ThreadMXBean allocationBean()
+  {
+    final var bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof final com.sun.management.ThreadMXBean sun
+      && sun.isThreadAllocatedMemorySupported()) {
+      try {
+        if (!sun.isThreadAllocatedMemoryEnabled()) {
+          sun.setThreadAllocatedMemoryEnabled(true);
+        }
+        return sun;
+      } catch (final UnsupportedOperationException | SecurityException e) {
+        LOG.debug("thread allocation measurement unavailable", e);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Begin a measurement of work done on the current thread.
+   *
+   * @param stage The stage
+   *
+   * @return The measurement, which must be closed when the work completes
+   */
+
+  public Measurement begin(
+    final DustYardStage stage)
+  {
+    return new Measurement(
+      this.stages.get(Objects.requireNonNull(stage, "stage")), false);
+  }
+
+  /**
+   * Begin a measurement of work that may be done on any thread, such as
+   * work submitted to an executor. Allocations made by all threads are
+   * attributed to the stage, so concurrent stages should be measured with
+   * {@link #begin(DustYardStage)} instead. Only the allocations of platform
+   * threads are visible.
+   *
+   * @param stage The stage
+   *
+   * @return The measurement, which must be closed when the work completes
+   */
+
+  public Measurement beginAllThreads(
+    final DustYardStage stage)
+  {
+    return new Measurement(
+      this.stages.get(Objects.requireNonNull(stage, "stage")), true);
+  }
+
+  /**
+   * Write the metrics to the given file as JSON. The file is written to a
+   * temporary file and atomically renamed into place.
+   *
+   * @param file The output file
+   *
+   * @throws IOException On errors
+   */
+
+  public void writeJSON(
+    final Path file)
+    throws IOException
+  {
+    Objects.requireNonNull(file, "file");
+
+    final var parent = file.toAbsolutePath().getParent();
+    final var temporary =
+      parent.resolve(String.format("%s-%s.tmp", file.getFileName(), UUID.randomUUID()));
+
+    try {
+      try (var writer = Files.newBufferedWriter(temporary, UTF_8)) {
+        this.writeJSON(writer);
+      }
+      Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+    LOG.info("metrics: wrote {}", file);
+  }
+
+  private void writeJSON(
+    final BufferedWriter writer)
+    throws IOException
+  {
+    writer.write("{\n");
+    writer.write(String.format("  \"version\": %d,\n", Integer.valueOf(VERSION)));
+    writer.write(String.format(
+      "  \"allocationMeasured\": %s,\n", Boolean.valueOf(THREADS != null)));
+    writer.write("  \"stages\": [");
+
+    var first = true;
+    for (final var entry : this.stages.entrySet()) {
+      final var stage = entry.getValue();
+      if (stage.invocations.sum() == 0L) {
+        continue;
+      }
+
+      writer.write(first ? "\n" : ",\n");
+      first = false;
+
+      final var wallNanos = stage.wallNanos();
+      final var seconds = wallNanos / 1_000_000_000.0;
+      final var samples = stage.samples.sum();
+      final var samplesPerSecond = seconds > 0.0 ? samples / seconds : 0.0;
+
+      writer.write("    {\n");
+      writer.write(String.format(
+        "      \"name\": \"%s\",\n", entry.getKey().jsonName()));
+      writer.write(String.format(
+        "      \"invocations\": %d,\n", Long.valueOf(stage.invocations.sum())));
+      writer.write(String.format(
+        "      \"wallNanos\": %d,\n", Long.valueOf(wallNanos)));
+      writer.write(String.format(
+        "      \"busyNanos\": %d,\n", Long.valueOf(stage.busyNanos.sum())));
+      writer.write(String.format(
+        "      \"bytesRead\": %d,\n", Long.valueOf(stage.bytesRead.sum())));
+      writer.write(String.format(
+        "      \"bytesWritten\": %d,\n", Long.valueOf(stage.bytesWritten.sum())));
+      writer.write(String.format(
+        "      \"samples\": %d,\n", Long.valueOf(samples)));
+      writer.write(String.format(
+        Locale.ROOT,
+        "      \"samplesPerSecond\": %.1f,\n",
+        Double.valueOf(samplesPerSecond)));
+      /*
+       * A stage whose allocations were not measured on every invocation has
+       * no meaningful total, and so reports null instead of a partial sum.
+       */
+
+      final var unmeasured = stage.unmeasured.sum();
+      final var measured = THREADS != null && unmeasured == 0L;
+      writer.write(String.format(
+        "      \"allocationMeasured\": %s,\n", Boolean.valueOf(measured)));
+      writer.write(String.format(
+        "      \"allocationUnmeasuredInvocations\": %d,\n",
+        Long.valueOf(unmeasured)));
+      writer.write("      \"allocatedBytesByThread\": {");
+
+      var firstThread = true;
+      var allocated = 0L;
+      for (final var thread : stage.allocatedByThread.entrySet()) {
+        writer.write(firstThread ? "\n" : ",\n");
+        firstThread = false;
+        final var bytes = thread.getValue().sum();
+        allocated += bytes;
+        writer.write(String.format(
+          "        \"%s\": %d", escape(thread.getKey()), Long.valueOf(bytes)));
+      }
+      writer.write(firstThread ? "},\n" : "\n      },\n");
+      writer.write(
+        measured
+          ? String.format("      \"allocatedBytes\": %d\n", Long.valueOf(allocated))
+          : "      \"allocatedBytes\": null\n");
+      writer.write("    }");
+    }
+
+    writer.write(first ? "]\n" : "\n  ]\n");
+    writer.write("}\n");
+  }
+
+  private static String escape(
+    final String text)
+  {
+    final var result = new StringBuilder(text.length());
+    for (int index = 0; index < text.length(); ++index) {
+      final var c = text.charAt(index);
+      switch (c) {
+        case '"' -> result.append("\\\"");
+        case '\\' -> result.append("\\\\");
+        default -> {
+          if (c < 0x20) {
+            result.append(String.format("\\u%04x", Integer.valueOf(c)));
+          } else {
+            result.append(c);
+          }
+        }
+      }
+    }
+    return result.toString();
+  }
+
+  private static Map<Long, Long> allocatedByAllThreads()
+  {
+    final var ids = THREADS.getAllThreadIds();
+    final var bytes = THREADS.getThreadAllocatedBytes(ids);
+    final var result = new HashMap<Long, Long>(ids.length);
+    for (int index = 0; index < ids.length; ++index) {
+      if (bytes[index] >= 0L) {
+        result.put(Long.valueOf(ids[index]), Long.valueOf(bytes[index]));
+      }
+    }
+    return result;
+  }
+
+  private static final class Stage
+  {
+    private final AtomicLong firstStart;
+    private final AtomicLong lastEnd;
+    private final LongAdder invocations;
+    private final LongAdder busyNanos;
+    private final LongAdder bytesRead;
+    private final LongAdder bytesWritten;
+    private final LongAdder samples;
+    private final LongAdder unmeasured;
+    private final ConcurrentSkipListMap<String, LongAdder> allocatedByThread;
+
+    Stage()
+    {
+      this.firstStart = new AtomicLong(Long.MAX_VALUE);
+      this.lastEnd = new AtomicLong(Long.MIN_VALUE);
+      this.invocations = new LongAdder();
+      this.busyNanos = new LongAdder();
+      this.bytesRead = new LongAdder();
+      this.bytesWritten = new LongAdder();
+      this.samples = new LongAdder();
+      this.unmeasured = new LongAdder();
+      this.allocatedByThread = new ConcurrentSkipListMap<>();
+    }
+
+    long wallNanos()
+    {
+      final var start = this.firstStart.get();
+      final var end = this.lastEnd.get();
+      return end >= start ? end - start : 0L;
+    }
+
+    void allocated(
+      final String thread,
+      final long bytes)
+    {
+      if (bytes > 0L) {
+        this.allocatedByThread
+          .computeIfAbsent(thread, ignored -> new LongAdder())
+          .add(bytes);
+      }
+    }
+  }
+
+  /**
+   * A measurement of a single piece of work within a stage.
+   */
+
+  public static final class Measurement implements AutoCloseable
+  {
+    private final Stage stage;
+    private final long start;
+    private final Thread thread;
+    private final long threadAllocated;
+    private final Map<Long, Long> allAllocated;
+    private long bytesRead;
+    private long bytesWritten;
+    private long samples;
+
+    private Measurement(
+      final Stage inStage,
+      final boolean allThreads)
+    {
+      this.stage = inStage;
+      this.thread = Thread.currentThread();
+
+      /*
+       * The allocation counter of a virtual thread is not available, and is
+       * reported as -1.
+       */
+
+      if (THREADS == null) {
+        this.threadAllocated = 0L;
+        this.allAllocated = null;
+      } else if (allThreads) {
+        this.threadAllocated = 0L;
+        this.allAllocated = allocatedByAllThreads();
+      } else if (this.thread.isVirtual()) {
+        this.threadAllocated = -1L;
+        this.allAllocated = null;
+      } else {
+        this.threadAllocated = THREADS.getCurrentThreadAllocatedBytes();
+        this.allAllocated = null;
+      }
+      this.start = System.nanoTime();
+    }
+
+    /**
+     * Record that bytes were read.
+     *
+     * @param count The number of bytes
+     */
+
+    public void addBytesRead(
+      final long count)
+    {
+      this.bytesRead += count;
+    }
+
+    /**
+     * Record that bytes were written.
+     *
+     * @param count The number of bytes
+     */
+
+    public void addBytesWritten(
+      final long count)
+    {
+      this.bytesWritten += count;
+    }
+
+    /**
+     * Record that samples were processed.
+     *
+     * @param count The number of sample frames
+     */
+
+    public void addSamples(
+      final long count)
+    {
+      this.samples += count;
+    }
+
+    @Override
+    public void close()
+    {
+      final var end = System.nanoTime();
+
+      if (THREADS != null) {
+        if (this.allAllocated != null) {
+          final var ids = THREADS.getAllThreadIds();
+          final var bytes = THREADS.getThreadAllocatedBytes(ids);
+          final var infos = THREADS.getThreadInfo(ids);
+          for (int index = 0; index < ids.length; ++index) {
+            if (bytes[index] < 0L || infos[index] == null) {
+              continue;
+            }
+            final var before =
+              this.allAllocated.getOrDefault(Long.valueOf(ids[index]), Long.valueOf(0L));
+            this.stage.allocated(
+              infos[index].getThreadName(),
+              bytes[index] - before.longValue()
+            );
+          }
+        } else {
+          final var allocated =
+            this.threadAllocated < 0L
+              ? -1L
+              : THREADS.getCurrentThreadAllocatedBytes();
+          if (allocated < 0L) {
+            this.stage.unmeasured.increment();
+          } else {
+            this.stage.allocated(
+              this.thread.getName(), allocated - this.threadAllocated);
+          }
+        }
+      }
+
+      this.stage.firstStart.accumulateAndGet(this.start, Math::min);
+      this.stage.lastEnd.accumulateAndGet(end, Math::max);
+      this.stage.invocations.increment();
+      this.stage.busyNanos.add(end - this.start);
+      this.stage.bytesRead.add(this.bytesRead);
+      this.stage.bytesWritten.add(this.bytesWritten);
+      this.stage.samples.add(this.samples);
+    }
+  }
+}
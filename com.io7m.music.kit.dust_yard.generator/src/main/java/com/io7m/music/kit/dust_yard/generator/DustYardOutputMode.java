@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+/**
+ * The ways in which the soundfont file can be written.
+ */
+
+public enum DustYardOutputMode
+{
+  /**
+   * Write the entire file from scratch.
+   */
+
+  STANDARD,
+
+  /**
+   * Keep a manifest of sample offsets and hashes next to the file, and only
+   * rewrite the parts of an existing file that have changed.
+   */
+
+  INCREMENTAL,
+
+  /**
+   * Write the file structure first, and then fill in the sample data using
+   * multiple threads.
+   */
+
+  PARALLEL,
+
+  /**
+   * Write the file structure first, and then fill in the sample data through
+   * a memory mapping of the file.
+   */
+
+  MAPPED
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A decoded sample consisting of signed 16-bit little-endian mono PCM data.
+ *
+ * @param sampleRate The sample rate
+ * @param data       The PCM data
+ */
+
+public record DustYardPCM(
+  float sampleRate,
+  byte[] data)
+{
+  /**
+   * A decoded sample consisting of signed 16-bit little-endian mono PCM data.
+   *
+   * @param sampleRate The sample rate
+   * @param data       The PCM data
+   */
+
+  public DustYardPCM
+  {
+    Objects.requireNonNull(data, "data");
+
+    if (data.length % 2 != 0) {
+      throw new IllegalArgumentException(
+        String.format(
+          "PCM data length %d must be a multiple of 2",
+          Integer.valueOf(data.length))
+      );
+    }
+  }
+
+  /**
+   * Read all of the given stream, which must be in the format returned by
+   * {@link DustYardFLACToMono16#readAs16Mono(java.nio.file.Path)}.
+   *
+   * @param stream The stream
+   *
+   * @return The decoded sample
+   *
+   * @throws IOException On errors
+   */
+
+  public static DustYardPCM of(
+    final AudioInputStream stream)
+    throws IOException
+  {
+    final var format = stream.getFormat();
+    if (format.getChannels() != 1
+      || format.getSampleSizeInBits() != 16
+      || format.isBigEndian()
+      || !Objects.equals(format.getEncoding(), AudioFormat.Encoding.PCM_SIGNED)) {
+      throw new IOException(
+        String.format("Unsupported audio format: %s", format)
+      );
+    }
+    return new DustYardPCM(format.getSampleRate(), stream.readAllBytes());
+  }
+
+  /**
+   * @return The number of frames in the sample
+   */
+
+  public long frames()
+  {
+    return this.data.length / 2L;
+  }
+
+  /**
+   * @return The audio format of the sample data
+   */
+
+  public AudioFormat format()
+  {
+    return new AudioFormat(
+      AudioFormat.Encoding.PCM_SIGNED,
+      this.sampleRate,
+      16,
+      1,
+      2,
+      this.sampleRate,
+      false
+    );
+  }
+
+  /**
+   * @return A new stream that reads the sample data
+   */
+
+  public AudioInputStream stream()
+  {
+    return new AudioInputStream(
+      new ByteArrayInputStream(this.data),
+      this.format(),
+      this.frames()
+    );
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A writer that fills the sample regions of a soundfont "skeleton" in
+ * parallel.
+ *
+ * <p>The skeleton contains the complete soundfont structure, including the
+ * preset data, with the sample data regions left empty. The offset of every
+ * sample region is known from the skeleton's layout, so the regions can be
+ * written in any order using positional writes. Each worker claims the next
+ * unwritten sample until none remain, and the completed skeleton then
+ * replaces the target file.</p>
+ */
+
+public final class DustYardParallelWriter
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(DustYardParallelWriter.class);
+
+  private DustYardParallelWriter()
+  {
+
+  }
+
+  /**
+   * Write the given soundfont file.
+   *
+   * @param fileOutput  The output file
+   * @param skeleton    The skeleton file
+   * @param fontSamples The samples, in the order they were added to the builder
+   * @param executor    The executor used to write samples
+   * @param workers     The maximum number of samples written at once
+   * @param metrics     The metrics to which the work done by each worker is
+   *                    added
+   *
+   * @throws IOException On errors
+   */
+
+  public static void write(
+    final Path fileOutput,
+    final Path skeleton,
+    final List<DustYardFontSample> fontSamples,
+    final ExecutorService executor,
+    final int workers,
+    final DustYardMetrics metrics)
+    throws IOException
+  {
+    Objects.requireNonNull(fileOutput, "fileOutput");
+    Objects.requireNonNull(skeleton, "skeleton");
+    Objects.requireNonNull(fontSamples, "fontSamples");
+    Objects.requireNonNull(executor, "executor");
+    Objects.requireNonNull(metrics, "metrics");
+
+    if (workers < 1) {
+      throw new IllegalArgumentException(
+        String.format("Worker count %d must be positive", Integer.valueOf(workers))
+      );
+    }
+
+    DustYardSF2Manifest.invalidate(fileOutput);
+
+    final var layout =
+      DustYardSF2Layout.read(skeleton);
+    final var regions =
+      DustYardIncrementalWriter.regionsFor(layout, fontSamples);
+
+    final var time0 = System.nanoTime();
+    final var next = new AtomicInteger(0);
+    final var taskCount = Math.min(workers, Math.max(1, fontSamples.size()));
+
+    try (var channel = FileChannel.open(skeleton, WRITE)) {
+      final var tasks = new DustYardTaskGroup(executor);
+      for (int task = 0; task < taskCount; ++task) {
+        tasks.submit(
+          String.format("write %d", Integer.valueOf(task)),
+          () -> {
+            final var writer = new DustYardSampleWriter();
+            final var measurement = metrics.begin(DustYardStage.SERIALIZE);
+            try {
+              while (true) {
+                final var index = next.getAndIncrement();
+                if (index >= fontSamples.size()) {
+                  return null;
+                }
+
+                final var fontSample = fontSamples.get(index);
+                LOG.debug("writing: {}", fontSample.name());
+
+                final var event = new DustYardJFRSampleWriteEvent();
+                event.begin();
+                writer.writeAt(
+                  fontSample.source().load(),
+                  channel,
+                  regions.get(index).offset()
+                );
+                event.endAndCommit(
+                  fontSample.name(), fontSample.source().frames());
+              }
+            } finally {
+              measurement.close();
+            }
+          });
+      }
+      tasks.await();
+    }
+
+    Files.move(skeleton, fileOutput, ATOMIC_MOVE, REPLACE_EXISTING);
+
+    final var time1 = System.nanoTime();
+    LOG.info(
+      "parallel: wrote {} samples ({} bytes) with {} workers in {}ms",
+      Integer.valueOf(fontSamples.size()),
+      Long.valueOf(layout.smplSize()),
+      Integer.valueOf(taskCount),
+      Long.valueOf((time1 - time0) / 1_000_000L)
+    );
+  }
+}
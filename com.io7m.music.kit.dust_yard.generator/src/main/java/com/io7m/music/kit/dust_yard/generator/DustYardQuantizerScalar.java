@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.util.Objects;
+
+/**
+ * A quantization kernel that processes one sample at a time.
+ */
+
+public final class DustYardQuantizerScalar implements DustYardQuantizerType
+{
+  /**
+   * A quantization kernel that processes one sample at a time.
+   */
+
+  public DustYardQuantizerScalar()
+  {
+
+  }
+
+  @Override
+  public void quantize(
+    final double[] source,
+    final short[] target,
+    final int count)
+  {
+    Objects.checkFromIndexSize(0, count, source.length);
+    Objects.checkFromIndexSize(0, count, target.length);
+
+    for (int index = 0; index < count; ++index) {
+      target[index] = DustYardSampleBuffer16.quantize(source[index]);
+    }
+  }
+}
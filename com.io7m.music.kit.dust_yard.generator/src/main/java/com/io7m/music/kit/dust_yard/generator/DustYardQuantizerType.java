@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+/**
+ * A kernel that quantizes blocks of samples to signed 16-bit values.
+ *
+ * <p>Samples are scaled by {@link DustYardSampleBuffer16#SCALE}, rounded to
+ * the nearest integer (with ties rounded to even), and clipped to the range
+ * of a {@code short}. The results are identical to those of
+ * {@link DustYardSampleBuffer16#quantize(double)}.</p>
+ */
+
+public interface DustYardQuantizerType
+{
+  /**
+   * Quantize {@code count} samples.
+   *
+   * @param source The source samples
+   * @param target The quantized samples
+   * @param count  The number of samples
+   */
+
+  void quantize(
+    double[] source,
+    short[] target,
+    int count);
+}
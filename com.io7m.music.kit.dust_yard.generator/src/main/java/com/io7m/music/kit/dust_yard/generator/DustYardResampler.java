@@ -0,0 +1,244 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A rational polyphase resampler. The resampler upsamples by {@code L},
+ * filters with a Kaiser-windowed sinc lowpass filter, and downsamples by
+ * {@code M}, evaluating only the filter phases that contribute to output
+ * frames. The filter coefficients are computed once when the resampler is
+ * created; resampling a sample allocates nothing but the output array, and
+ * a resampler can be used from any number of threads at once.
+ */
+
+public final class DustYardResampler
+{
+  /**
+   * The largest number of filter phases a resampler may have. Rate pairs
+   * that would require more phases (such as 44100Hz to 47999Hz) are rejected.
+   */
+
+  public static final int MAXIMUM_PHASES = 1024;
+
+  private static final int ZERO_CROSSINGS = 16;
+  private static final double ROLLOFF = 0.9;
+  private static final double KAISER_BETA = 9.0;
+
+  private final int sourceRate;
+  private final int targetRate;
+  private final int up;
+  private final int down;
+  private final int taps;
+  private final double[] coefficients;
+
+  private DustYardResampler(
+    final int inSourceRate,
+    final int inTargetRate)
+  {
+    this.sourceRate = inSourceRate;
+    this.targetRate = inTargetRate;
+
+    final var divisor = gcd(inSourceRate, inTargetRate);
+    this.up = inTargetRate / divisor;
+    this.down = inSourceRate / divisor;
+
+    if (this.up > MAXIMUM_PHASES) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Resampling from %dHz to %dHz requires %d filter phases (maximum %d)",
+          Integer.valueOf(inSourceRate),
+          Integer.valueOf(inTargetRate),
+          Integer.valueOf(this.up),
+          Integer.valueOf(MAXIMUM_PHASES))
+      );
+    }
+
+    /*
+     * The cutoff is expressed in cycles per sample at the upsampled rate,
+     * and lies just below the lower of the two Nyquist frequencies.
+     */
+
+    final var stretch = Math.max(this.up, this.down);
+    final var cutoff = ROLLOFF * 0.5 / stretch;
+    final var halfWidth = ZERO_CROSSINGS * stretch / (ROLLOFF * this.up);
+    this.taps = 2 * (int) Math.ceil(halfWidth);
+
+    final var length = this.taps * this.up;
+    final var center = length / 2;
+    final var window = besselI0(KAISER_BETA);
+
+    this.coefficients = new double[length];
+    for (int index = 0; index < length; ++index) {
+      final var offset = index - center;
+      final var ratio = (double) offset / center;
+      final var kaiser =
+        besselI0(KAISER_BETA * Math.sqrt(Math.max(0.0, 1.0 - ratio * ratio)))
+          / window;
+
+      final var x = 2.0 * cutoff * offset;
+      final var sinc =
+        offset == 0 ? 1.0 : Math.sin(Math.PI * x) / (Math.PI * x);
+
+      /*
+       * Coefficients are stored grouped by phase so that the inner loop
+       * reads them sequentially.
+       */
+
+      final var phase = index % this.up;
+      final var tap = index / this.up;
+      this.coefficients[phase * this.taps + tap] =
+        2.0 * cutoff * sinc * kaiser * this.up;
+    }
+  }
+
+  /**
+   * Create a resampler.
+   *
+   * @param sourceRate The rate of the samples that will be resampled
+   * @param targetRate The target rate
+   *
+   * @return A new resampler
+   */
+
+  public static DustYardResampler create(
+    final int sourceRate,
+    final int targetRate)
+  {
+    if (sourceRate <= 0 || targetRate <= 0) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Sample rates %d and %d must be positive",
+          Integer.valueOf(sourceRate),
+          Integer.valueOf(targetRate))
+      );
+    }
+    return new DustYardResampler(sourceRate, targetRate);
+  }
+
+  /**
+   * @return The rate of the samples that will be resampled
+   */
+
+  public int sourceRate()
+  {
+    return this.sourceRate;
+  }
+
+  /**
+   * @return The target rate
+   */
+
+  public int targetRate()
+  {
+    return this.targetRate;
+  }
+
+  /**
+   * Resample the given sample.
+   *
+   * @param pcm The sample
+   *
+   * @return The resampled sample
+   */
+
+  public DustYardPCM apply(
+    final DustYardPCM pcm)
+  {
+    if ((int) pcm.sampleRate() != this.sourceRate
+      || pcm.sampleRate() != this.sourceRate) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Sample rate %s does not match the resampler rate %d",
+          Float.valueOf(pcm.sampleRate()),
+          Integer.valueOf(this.sourceRate))
+      );
+    }
+
+    if (this.up == this.down) {
+      return pcm;
+    }
+
+    final var input =
+      ByteBuffer.wrap(pcm.data())
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .asShortBuffer();
+
+    final var inputFrames = input.capacity();
+    final var outputFrames = Math.toIntExact(
+      ((long) inputFrames * this.up + this.down - 1L) / this.down
+    );
+
+    final var result = new byte[Math.multiplyExact(outputFrames, 2)];
+    final var center = (long) this.taps * this.up / 2L;
+
+    for (int frame = 0; frame < outputFrames; ++frame) {
+      final var time = (long) frame * this.down + center;
+      final var phase = (int) (time % this.up);
+      final var base = (int) (time / this.up);
+      final var offset = phase * this.taps;
+
+      final var first = Math.max(0, base - (inputFrames - 1));
+      final var last = Math.min(this.taps - 1, base);
+
+      var sum = 0.0;
+      for (int tap = first; tap <= last; ++tap) {
+        sum += this.coefficients[offset + tap] * input.get(base - tap);
+      }
+
+      final var value =
+        (int) Math.rint(Math.min(32767.0, Math.max(-32768.0, sum)));
+      result[frame * 2] = (byte) value;
+      result[frame * 2 + 1] = (byte) (value >> 8);
+    }
+
+    return new DustYardPCM(this.targetRate, result);
+  }
+
+  private static double besselI0(
+    final double x)
+  {
+    var sum = 1.0;
+    var term = 1.0;
+    final var half = x / 2.0;
+    for (int k = 1; k < 64; ++k) {
+      final var factor = half / k;
+      term *= factor * factor;
+      sum += term;
+      if (term < sum * 1.0e-16) {
+        break;
+      }
+    }
+    return sum;
+  }
+
+  private static int gcd(
+    final int a,
+    final int b)
+  {
+    var x = a;
+    var y = b;
+    while (y != 0) {
+      final var t = x % y;
+      x = y;
+      y = t;
+    }
+    return x;
+  }
+}
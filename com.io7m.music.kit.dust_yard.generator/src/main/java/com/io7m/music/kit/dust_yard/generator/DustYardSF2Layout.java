@@ -0,0 +1,241 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The layout of an SF2 file: the location of the sample data chunk, the
+ * location of the preset data (the "hydra"), and the region occupied by
+ * each sample.
+ *
+ * @param fileSize   The size of the file
+ * @param smplOffset The offset of the data of the {@code smpl} chunk
+ * @param smplSize   The size of the data of the {@code smpl} chunk
+ * @param pdtaOffset The offset of the {@code pdta} list chunk header
+ * @param pdtaSize   The size of the {@code pdta} list chunk including its header
+ * @param samples    The sample regions, in file order
+ */
+
+public record DustYardSF2Layout(
+  long fileSize,
+  long smplOffset,
+  long smplSize,
+  long pdtaOffset,
+  long pdtaSize,
+  List<DustYardSF2SampleRegion> samples)
+{
+  private static final int SHDR_RECORD_SIZE = 46;
+
+  /**
+   * The layout of an SF2 file.
+   *
+   * @param fileSize   The size of the file
+   * @param smplOffset The offset of the data of the {@code smpl} chunk
+   * @param smplSize   The size of the data of the {@code smpl} chunk
+   * @param pdtaOffset The offset of the {@code pdta} list chunk header
+   * @param pdtaSize   The size of the {@code pdta} list chunk including its header
+   * @param samples    The sample regions, in file order
+   */
+
+  public DustYardSF2Layout
+  {
+    samples = List.copyOf(Objects.requireNonNull(samples, "samples"));
+  }
+
+  /**
+   * Read the layout of the given SF2 file.
+   *
+   * @param file The file
+   *
+   * @return The layout
+   *
+   * @throws IOException On errors, or if the file is not a valid SF2 file
+   */
+
+  public static DustYardSF2Layout read(
+    final Path file)
+    throws IOException
+  {
+    try (var channel = FileChannel.open(file, READ)) {
+      return read(file, channel);
+    }
+  }
+
+  private static DustYardSF2Layout read(
+    final Path file,
+    final FileChannel channel)
+    throws IOException
+  {
+    final var fileSize = channel.size();
+    final var riff = readBytes(channel, 0L, 12);
+    if (!"RIFF".equals(fourCC(riff, 0)) || !"sfbk".equals(fourCC(riff, 8))) {
+      throw new IOException(String.format("%s: Not an SF2 file", file));
+    }
+
+    final var riffEnd =
+      Math.min(fileSize, 8L + Integer.toUnsignedLong(riff.getInt(4)));
+
+    var smplOffset = -1L;
+    var smplSize = -1L;
+    var pdtaOffset = -1L;
+    var pdtaSize = -1L;
+    var shdrOffset = -1L;
+    var shdrSize = -1L;
+
+    var position = 12L;
+    while (position + 8L <= riffEnd) {
+      final var header = readBytes(channel, position, 8);
+      final var id = fourCC(header, 0);
+      final var size = Integer.toUnsignedLong(header.getInt(4));
+
+      if ("LIST".equals(id)) {
+        final var listType = fourCC(readBytes(channel, position + 8L, 4), 0);
+        final var listEnd = position + 8L + size;
+        if ("sdta".equals(listType)) {
+          final var chunk = findChunk(channel, position + 12L, listEnd, "smpl");
+          if (chunk != null) {
+            smplOffset = chunk[0];
+            smplSize = chunk[1];
+          }
+        } else if ("pdta".equals(listType)) {
+          pdtaOffset = position;
+          pdtaSize = 8L + size;
+          final var chunk = findChunk(channel, position + 12L, listEnd, "shdr");
+          if (chunk != null) {
+            shdrOffset = chunk[0];
+            shdrSize = chunk[1];
+          }
+        }
+      }
+      position += 8L + size + (size & 1L);
+    }
+
+    if (smplOffset < 0L || pdtaOffset < 0L || shdrOffset < 0L) {
+      throw new IOException(
+        String.format("%s: Missing smpl, pdta, or shdr chunk", file));
+    }
+
+    final var count = (int) (shdrSize / SHDR_RECORD_SIZE);
+    final var shdr = readBytes(channel, shdrOffset, count * SHDR_RECORD_SIZE);
+    final var samples = new ArrayList<DustYardSF2SampleRegion>(count);
+
+    /*
+     * The last sample header is the terminal "EOS" record.
+     */
+
+    for (int index = 0; index < count - 1; ++index) {
+      final var base = index * SHDR_RECORD_SIZE;
+      final var name = sampleName(shdr, base);
+      final var start = Integer.toUnsignedLong(shdr.getInt(base + 20));
+      final var end = Integer.toUnsignedLong(shdr.getInt(base + 24));
+      final var offset = smplOffset + (start * 2L);
+      final var length = (end - start) * 2L;
+
+      if (end < start || offset + length > smplOffset + smplSize) {
+        throw new IOException(
+          String.format("%s: Sample %s lies outside the smpl chunk", file, name));
+      }
+      samples.add(new DustYardSF2SampleRegion(name, offset, length));
+    }
+
+    return new DustYardSF2Layout(
+      fileSize,
+      smplOffset,
+      smplSize,
+      pdtaOffset,
+      pdtaSize,
+      samples
+    );
+  }
+
+  /**
+   * Find the data offset and size of the chunk with the given ID.
+   */
+
+  private static long[] findChunk(
+    final FileChannel channel,
+    final long start,
+    final long end,
+    final String name)
+    throws IOException
+  {
+    var position = start;
+    while (position + 8L <= end) {
+      final var header = readBytes(channel, position, 8);
+      final var size = Integer.toUnsignedLong(header.getInt(4));
+      if (name.equals(fourCC(header, 0))) {
+        return new long[]{position + 8L, size};
+      }
+      position += 8L + size + (size & 1L);
+    }
+    return null;
+  }
+
+  private static String sampleName(
+    final ByteBuffer buffer,
+    final int base)
+  {
+    final var bytes = new byte[20];
+    buffer.get(base, bytes);
+    var length = 0;
+    while (length < bytes.length && bytes[length] != 0) {
+      ++length;
+    }
+    return new String(bytes, 0, length, US_ASCII);
+  }
+
+  private static String fourCC(
+    final ByteBuffer buffer,
+    final int offset)
+  {
+    final var bytes = new byte[4];
+    buffer.get(offset, bytes);
+    return new String(bytes, US_ASCII);
+  }
+
+  private static ByteBuffer readBytes(
+    final FileChannel channel,
+    final long position,
+    final int size)
+    throws IOException
+  {
+    final var buffer =
+      ByteBuffer.allocate(size)
+        .order(LITTLE_ENDIAN);
+
+    while (buffer.hasRemaining()) {
+      final var r = channel.read(buffer, position + buffer.position());
+      if (r == -1) {
+        throw new EOFException(
+          String.format("Unexpected EOF at offset %d", Long.valueOf(position)));
+      }
+    }
+    return buffer.flip();
+  }
+}
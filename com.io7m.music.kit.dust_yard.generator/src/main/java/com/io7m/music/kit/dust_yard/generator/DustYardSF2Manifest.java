@@ -0,0 +1,293 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A manifest describing the layout of a previously written SF2 file, along
+ * with a hash of the data of each sample. The manifest records the identity
+ * of the file it describes, so that a file that has since been replaced or
+ * modified by anything else is not mistaken for the file in the manifest.
+ *
+ * @param identity The identity of the file
+ * @param samples  The samples
+ */
+
+public record DustYardSF2Manifest(
+  Identity identity,
+  List<Entry> samples)
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(DustYardSF2Manifest.class);
+
+  private static final String HEADER = "dust_yard-manifest 2";
+
+  /**
+   * A manifest describing the layout of a previously written SF2 file.
+   *
+   * @param identity The identity of the file
+   * @param samples  The samples
+   */
+
+  public DustYardSF2Manifest
+  {
+    Objects.requireNonNull(identity, "identity");
+    samples = List.copyOf(Objects.requireNonNull(samples, "samples"));
+  }
+
+  /**
+   * Delete the manifest of the given SF2 file, if any. Writers that replace
+   * the file without maintaining the manifest must call this before writing.
+   *
+   * @param file The SF2 file
+   *
+   * @throws IOException On errors
+   */
+
+  public static void invalidate(
+    final Path file)
+    throws IOException
+  {
+    Files.deleteIfExists(manifestFileFor(file));
+  }
+
+  /**
+   * @param file The SF2 file
+   *
+   * @return The manifest file used for the given SF2 file
+   */
+
+  public static Path manifestFileFor(
+    final Path file)
+  {
+    return file.resolveSibling(file.getFileName() + ".manifest");
+  }
+
+  /**
+   * Read a manifest. Missing or malformed manifests are treated as absent.
+   *
+   * @param file The manifest file
+   *
+   * @return The manifest, if one could be read
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static Optional<DustYardSF2Manifest> read(
+    final Path file)
+    throws IOException
+  {
+    final List<String> lines;
+    try {
+      lines = Files.readAllLines(file, UTF_8);
+    } catch (final NoSuchFileException e) {
+      return Optional.empty();
+    }
+
+    try {
+      if (lines.size() < 2 || !HEADER.equals(lines.get(0))) {
+        throw new IllegalArgumentException("Unrecognized header");
+      }
+
+      final var identityFields =
+        field(lines.get(1), "identity", 4);
+      final var identity =
+        new Identity(
+          Long.parseLong(identityFields[1]),
+          Long.parseLong(identityFields[2]),
+          identityFields[3]
+        );
+
+      final var samples = new ArrayList<Entry>(lines.size() - 2);
+      for (int index = 2; index < lines.size(); ++index) {
+        final var fields = field(lines.get(index), "sample", 5);
+        samples.add(new Entry(
+          new DustYardSF2SampleRegion(
+            fields[1],
+            Long.parseLong(fields[2]),
+            Long.parseLong(fields[3])
+          ),
+          fields[4]
+        ));
+      }
+      return Optional.of(new DustYardSF2Manifest(identity, samples));
+    } catch (final IllegalArgumentException e) {
+      LOG.warn("ignoring malformed manifest {}: {}", file, e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  private static String[] field(
+    final String line,
+    final String name,
+    final int count)
+  {
+    final var fields = line.split(" ");
+    if (fields.length != count || !name.equals(fields[0])) {
+      throw new IllegalArgumentException(
+        String.format("Malformed line: %s", line));
+    }
+    return fields;
+  }
+
+  /**
+   * Atomically write the manifest to the given file.
+   *
+   * @param file The output file
+   *
+   * @throws IOException On errors
+   */
+
+  public void write(
+    final Path file)
+    throws IOException
+  {
+    final var text = new StringBuilder(128 + this.samples.size() * 128);
+    text.append(HEADER);
+    text.append('\n');
+    text.append("identity ");
+    text.append(this.identity.size());
+    text.append(' ');
+    text.append(this.identity.modified());
+    text.append(' ');
+    text.append(this.identity.key());
+    text.append('\n');
+
+    for (final var entry : this.samples) {
+      final var region = entry.region();
+      text.append("sample ");
+      text.append(region.name());
+      text.append(' ');
+      text.append(region.offset());
+      text.append(' ');
+      text.append(region.length());
+      text.append(' ');
+      text.append(entry.hash());
+      text.append('\n');
+    }
+
+    final var temporary =
+      file.resolveSibling(file.getFileName() + ".tmp");
+    Files.writeString(temporary, text, UTF_8);
+    Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+  }
+
+  /**
+   * The identity of a file: its size, its modification time, and the key
+   * the file system uses to identify it (such as the device and inode),
+   * where available.
+   *
+   * @param size     The size of the file
+   * @param modified The modification time of the file in nanoseconds since
+   *                 the epoch
+   * @param key      The file key, or {@code -} if the file system has none
+   */
+
+  public record Identity(
+    long size,
+    long modified,
+    String key)
+  {
+    /**
+     * The identity of a file.
+     *
+     * @param size     The size of the file
+     * @param modified The modification time of the file in nanoseconds since
+     *                 the epoch
+     * @param key      The file key, or {@code -} if the file system has none
+     */
+
+    public Identity
+    {
+      Objects.requireNonNull(key, "key");
+      if (key.isEmpty() || key.indexOf(' ') >= 0 || key.indexOf('\n') >= 0) {
+        throw new IllegalArgumentException(
+          String.format("Malformed file key: %s", key));
+      }
+    }
+
+    /**
+     * Determine the identity of the given file.
+     *
+     * @param file The file
+     *
+     * @return The identity
+     *
+     * @throws IOException On errors
+     */
+
+    public static Identity of(
+      final Path file)
+      throws IOException
+    {
+      final var attributes =
+        Files.readAttributes(file, BasicFileAttributes.class);
+      final var key =
+        Objects.toString(attributes.fileKey(), "-")
+          .replace(' ', '_')
+          .replace('\n', '_');
+
+      return new Identity(
+        attributes.size(),
+        attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+        key.isEmpty() ? "-" : key
+      );
+    }
+  }
+
+  /**
+   * A sample in the manifest.
+   *
+   * @param region The region occupied by the sample
+   * @param hash   The hash of the sample data
+   */
+
+  public record Entry(
+    DustYardSF2SampleRegion region,
+    String hash)
+  {
+    /**
+     * A sample in the manifest.
+     *
+     * @param region The region occupied by the sample
+     * @param hash   The hash of the sample data
+     */
+
+    public Entry
+    {
+      Objects.requireNonNull(region, "region");
+      Objects.requireNonNull(hash, "hash");
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.util.Objects;
+
+/**
+ * The region of an SF2 file occupied by the data of a single sample.
+ *
+ * @param name   The sample name
+ * @param offset The offset in bytes of the sample data from the start of the file
+ * @param length The length in bytes of the sample data
+ */
+
+public record DustYardSF2SampleRegion(
+  String name,
+  long offset,
+  long length)
+{
+  /**
+   * The region of an SF2 file occupied by the data of a single sample.
+   *
+   * @param name   The sample name
+   * @param offset The offset in bytes of the sample data from the start of the file
+   * @param length The length in bytes of the sample data
+   */
+
+  public DustYardSF2SampleRegion
+  {
+    Objects.requireNonNull(name, "name");
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import com.io7m.jsamplebuffer.api.SampleBufferType;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.Objects;
+
+import static java.nio.ByteOrder.nativeOrder;
+
+/**
+ * A sample buffer that stores interleaved signed 16-bit samples, using two
+ * bytes per sample rather than the eight used by a buffer of doubles.
+ *
+ * <p>Values are converted to and from the {@code [-1.0, 1.0]} range used by
+ * {@link SampleBufferType} by scaling by {@link #SCALE}, rounding to the
+ * nearest integer, and clipping to the range of a {@code short}. Converting a
+ * sample to a double and back yields the original sample.</p>
+ */
+
+public final class DustYardSampleBuffer16 implements SampleBufferType
+{
+  /**
+   * The scale factor used to convert between doubles and 16-bit samples.
+   */
+
+  public static final double SCALE = 32767.0;
+
+  private final ShortBuffer data;
+  private final int channels;
+  private final long frames;
+  private final double sampleRate;
+
+  private DustYardSampleBuffer16(
+    final ShortBuffer inData,
+    final int inChannels,
+    final long inFrames,
+    final double inSampleRate)
+  {
+    this.data =
+      Objects.requireNonNull(inData, "data");
+    this.channels =
+      inChannels;
+    this.frames =
+      inFrames;
+    this.sampleRate =
+      inSampleRate;
+  }
+
+  /**
+   * Create a buffer on the Java heap.
+   *
+   * @param channels   The number of channels
+   * @param frames     The number of frames
+   * @param sampleRate The sample rate
+   *
+   * @return A new zero-filled buffer
+   */
+
+  public static DustYardSampleBuffer16 createHeap(
+    final int channels,
+    final long frames,
+    final double sampleRate)
+  {
+    final var size = sizeOf(channels, frames);
+    return new DustYardSampleBuffer16(
+      ShortBuffer.allocate(size),
+      channels,
+      frames,
+      sampleRate
+    );
+  }
+
+  /**
+   * Create a buffer in direct memory.
+   *
+   * @param channels   The number of channels
+   * @param frames     The number of frames
+   * @param sampleRate The sample rate
+   *
+   * @return A new zero-filled buffer
+   */
+
+  public static DustYardSampleBuffer16 createDirect(
+    final int channels,
+    final long frames,
+    final double sampleRate)
+  {
+    final var size = sizeOf(channels, frames);
+    return new DustYardSampleBuffer16(
+      ByteBuffer.allocateDirect(size * 2)
+        .order(nativeOrder())
+        .asShortBuffer(),
+      channels,
+      frames,
+      sampleRate
+    );
+  }
+
+  /**
+   * Create a buffer of the given kind.
+   *
+   * @param kind       The kind of storage
+   * @param channels   The number of channels
+   * @param frames     The number of frames
+   * @param sampleRate The sample rate
+   *
+   * @return A new zero-filled buffer
+   */
+
+  public static DustYardSampleBuffer16 create(
+    final DustYardSampleBufferKind kind,
+    final int channels,
+    final long frames,
+    final double sampleRate)
+  {
+    return switch (kind) {
+      case HEAP -> createHeap(channels, frames, sampleRate);
+      case DIRECT -> createDirect(channels, frames, sampleRate);
+    };
+  }
+
+  private static int sizeOf(
+    final int channels,
+    final long frames)
+  {
+    if (channels < 1) {
+      throw new IllegalArgumentException(
+        String.format("Channel count %d must be positive", Integer.valueOf(channels)));
+    }
+    if (frames < 0L) {
+      throw new IllegalArgumentException(
+        String.format("Frame count %d must be non-negative", Long.valueOf(frames)));
+    }
+    return Math.toIntExact(Math.multiplyExact(frames, (long) channels));
+  }
+
+  /**
+   * Convert a double in the range {@code [-1.0, 1.0]} to a 16-bit sample,
+   * clipping values outside of the range.
+   *
+   * @param value The value
+   *
+   * @return A 16-bit sample
+   */
+
+  public static short quantize(
+    final double value)
+  {
+    /*
+     * The clipping is branch-free so that loops over this method can be
+     * vectorized by the JIT compiler.
+     */
+
+    final var clipped =
+      Math.min((double) Short.MAX_VALUE, Math.max((double) Short.MIN_VALUE, value * SCALE));
+    return (short) (int) Math.rint(clipped);
+  }
+
+  /**
+   * @return A view of the samples in this buffer, positioned at the first sample
+   */
+
+  public ShortBuffer data()
+  {
+    return this.data.duplicate().clear();
+  }
+
+  /**
+   * @return {@code true} if the samples are stored in direct memory
+   */
+
+  public boolean isDirect()
+  {
+    return this.data.isDirect();
+  }
+
+  @Override
+  public int channels()
+  {
+    return this.channels;
+  }
+
+  @Override
+  public long frames()
+  {
+    return this.frames;
+  }
+
+  @Override
+  public long samples()
+  {
+    return this.frames * (long) this.channels;
+  }
+
+  @Override
+  public double sampleRate()
+  {
+    return this.sampleRate;
+  }
+
+  @Override
+  public double frameGetExact(
+    final long index)
+  {
+    this.checkMono();
+    return this.data.get(this.frameIndex(index)) / SCALE;
+  }
+
+  @Override
+  public void frameGetExact(
+    final long index,
+    final double[] output)
+  {
+    final var base = this.frameIndex(index);
+    for (int channel = 0; channel < this.channels; ++channel) {
+      output[channel] = this.data.get(base + channel) / SCALE;
+    }
+  }
+
+  @Override
+  public void frameSetAll(
+    final long index,
+    final double value)
+  {
+    final var base = this.frameIndex(index);
+    final var sample = quantize(value);
+    for (int channel = 0; channel < this.channels; ++channel) {
+      this.data.put(base + channel, sample);
+    }
+  }
+
+  @Override
+  public void frameSetExact(
+    final long index,
+    final double value)
+  {
+    this.checkMono();
+    this.data.put(this.frameIndex(index), quantize(value));
+  }
+
+  @Override
+  public void frameSetExact(
+    final long index,
+    final double[] input)
+  {
+    final var base = this.frameIndex(index);
+    for (int channel = 0; channel < this.channels; ++channel) {
+      this.data.put(base + channel, quantize(input[channel]));
+    }
+  }
+
+  private int frameIndex(
+    final long index)
+  {
+    Objects.checkIndex(index, this.frames);
+    return (int) (index * this.channels);
+  }
+
+  private void checkMono()
+  {
+    if (this.channels != 1) {
+      throw new IllegalStateException(
+        String.format(
+          "Buffer has %d channels; single-channel access requires a mono buffer",
+          Integer.valueOf(this.channels))
+      );
+    }
+  }
+}
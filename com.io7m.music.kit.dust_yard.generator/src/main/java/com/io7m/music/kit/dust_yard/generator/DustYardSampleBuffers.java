@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import com.io7m.jsamplebuffer.api.SampleBufferType;
+import com.io7m.jsamplebuffer.xmedia.SampleBufferXMedia;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+/**
+ * Functions to create the sample buffers used to hold converted samples.
+ */
+
+public final class DustYardSampleBuffers
+{
+  private DustYardSampleBuffers()
+  {
+
+  }
+
+  /**
+   * Create a sample buffer holding the given PCM data.
+   *
+   * @param kind The kind of storage
+   * @param pcm  The PCM data
+   *
+   * @return A sample buffer
+   */
+
+  public static DustYardSampleBuffer16 ofPCM(
+    final DustYardSampleBufferKind kind,
+    final DustYardPCM pcm)
+  {
+    final var buffer =
+      DustYardSampleBuffer16.create(kind, 1, pcm.frames(), pcm.sampleRate());
+
+    buffer.data()
+      .put(ByteBuffer.wrap(pcm.data()).order(LITTLE_ENDIAN).asShortBuffer());
+    return buffer;
+  }
+
+  /**
+   * Read a sample buffer from the given stream. Signed 16-bit little-endian
+   * streams are copied directly; other formats are converted.
+   *
+   * @param kind   The kind of storage
+   * @param stream The audio stream
+   *
+   * @return A sample buffer
+   *
+   * @throws IOException On errors
+   */
+
+  public static SampleBufferType ofStream(
+    final DustYardSampleBufferKind kind,
+    final AudioInputStream stream)
+    throws IOException
+  {
+    Objects.requireNonNull(kind, "kind");
+
+    final var format = stream.getFormat();
+    if (format.getChannels() == 1
+      && format.getSampleSizeInBits() == 16
+      && !format.isBigEndian()
+      && Objects.equals(format.getEncoding(), AudioFormat.Encoding.PCM_SIGNED)) {
+      return ofPCM(kind, DustYardPCM.of(stream));
+    }
+
+    return SampleBufferXMedia.sampleBufferOfStream(
+      stream,
+      (channels, frames, sampleRate) -> {
+        return DustYardSampleBuffer16.create(kind, channels, frames, sampleRate);
+      }
+    );
+  }
+
+  /**
+   * Read a sample buffer from the given audio file.
+   *
+   * @param kind The kind of storage
+   * @param file The audio file
+   *
+   * @return A sample buffer
+   *
+   * @throws IOException On errors
+   */
+
+  public static SampleBufferType ofFile(
+    final DustYardSampleBufferKind kind,
+    final Path file)
+    throws IOException
+  {
+    try (var stream = AudioSystem.getAudioInputStream(file.toFile())) {
+      return ofStream(kind, stream);
+    } catch (final UnsupportedAudioFileException e) {
+      throw new IOException(e);
+    }
+  }
+}
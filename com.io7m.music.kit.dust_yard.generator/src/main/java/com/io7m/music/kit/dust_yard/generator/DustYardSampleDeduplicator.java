@@ -0,0 +1,251 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import com.io7m.jsamplebuffer.api.SampleBufferType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A deduplicator of sample data. Each sample is fingerprinted, and samples
+ * whose 16-bit PCM data is identical to, or within a given tolerance of, a
+ * sample seen earlier are replaced by the earlier sample.
+ *
+ * <p>Fingerprinting requires the data of every sample to be loaded while the
+ * soundfont is described. The data of each unique sample is retained so that
+ * it can be written later without being loaded a second time, and later
+ * samples are compared against that retained data; no other copy of the
+ * data is kept.</p>
+ *
+ * @param <T> The type of samples
+ */
+
+public final class DustYardSampleDeduplicator<T>
+{
+  private final int tolerance;
+  private final Map<String, T> byHash;
+  private final Map<String, List<Candidate<T>>> byShape;
+  private long removedSamples;
+  private long removedBytes;
+
+  /**
+   * Create a deduplicator.
+   *
+   * @param inTolerance The largest difference between corresponding 16-bit
+   *                    sample values for which samples are considered to be
+   *                    duplicates; 0 removes only identical samples
+   */
+
+  public DustYardSampleDeduplicator(
+    final int inTolerance)
+  {
+    if (inTolerance < 0) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Tolerance %d must be non-negative", Integer.valueOf(inTolerance)));
+    }
+
+    this.tolerance = inTolerance;
+    this.byHash = new HashMap<>();
+    this.byShape = new HashMap<>();
+  }
+
+  /**
+   * A function that creates a new sample.
+   *
+   * @param <T> The type of samples
+   */
+
+  public interface FactoryType<T>
+  {
+    /**
+     * Create a sample.
+     *
+     * @param source The source of the sample data
+     *
+     * @return A sample
+     *
+     * @throws IOException On errors
+     */
+
+    T create(DustYardSampleSourceType source)
+      throws IOException;
+  }
+
+  /**
+   * Find a sample with the same data as the given source, or create one with
+   * the given factory if no such sample exists.
+   *
+   * @param source  The source of the sample data
+   * @param factory The sample factory
+   *
+   * @return The existing or new sample
+   *
+   * @throws IOException On errors
+   */
+
+  public T deduplicate(
+    final DustYardSampleSourceType source,
+    final FactoryType<T> factory)
+    throws IOException
+  {
+    Objects.requireNonNull(source, "source");
+    Objects.requireNonNull(factory, "factory");
+
+    final var buffer = source.load();
+    final var data = DustYardSampleEncoding.encode16(buffer);
+    final var rate = (int) source.sampleRate();
+    final var hash = String.format("%s:%d", hashOf(data), Integer.valueOf(rate));
+
+    final var identical = this.byHash.get(hash);
+    if (identical != null) {
+      this.removed(data);
+      return identical;
+    }
+
+    final var shape =
+      String.format("%d:%d", Long.valueOf(source.frames()), Integer.valueOf(rate));
+
+    if (this.tolerance > 0) {
+      final var candidates = this.byShape.get(shape);
+      if (candidates != null) {
+        final var samples = data.duplicate().order(data.order()).asShortBuffer();
+        for (final var candidate : candidates) {
+          if (this.withinTolerance(candidate.buffer, samples)) {
+            this.byHash.put(hash, candidate.sample);
+            this.removed(data);
+            return candidate.sample;
+          }
+        }
+      }
+    }
+
+    final var sample = factory.create(new Retained(buffer));
+    this.byHash.put(hash, sample);
+    if (this.tolerance > 0) {
+      this.byShape.computeIfAbsent(shape, ignored -> new ArrayList<>())
+        .add(new Candidate<>(sample, buffer));
+    }
+    return sample;
+  }
+
+  private boolean withinTolerance(
+    final SampleBufferType existing,
+    final ShortBuffer samples)
+  {
+    final var count = samples.remaining();
+
+    if (existing instanceof final DustYardSampleBuffer16 existing16) {
+      final var data = existing16.data();
+      for (int index = 0; index < count; ++index) {
+        final var difference = Math.abs(data.get(index) - samples.get(index));
+        if (difference > this.tolerance) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    for (int index = 0; index < count; ++index) {
+      final var value =
+        DustYardSampleBuffer16.quantize(existing.frameGetExact(index));
+      final var difference = Math.abs(value - samples.get(index));
+      if (difference > this.tolerance) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void removed(
+    final ByteBuffer data)
+  {
+    ++this.removedSamples;
+    this.removedBytes += data.remaining();
+  }
+
+  private static String hashOf(
+    final ByteBuffer data)
+  {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    digest.update(data.duplicate());
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * @return The number of samples replaced by earlier samples
+   */
+
+  public long removedSamples()
+  {
+    return this.removedSamples;
+  }
+
+  /**
+   * @return The size in bytes of the sample data of the replaced samples
+   */
+
+  public long removedBytes()
+  {
+    return this.removedBytes;
+  }
+
+  private record Candidate<T>(
+    T sample,
+    SampleBufferType buffer)
+  {
+
+  }
+
+  private record Retained(
+    SampleBufferType buffer)
+    implements DustYardSampleSourceType
+  {
+    @Override
+    public long frames()
+    {
+      return this.buffer.frames();
+    }
+
+    @Override
+    public double sampleRate()
+    {
+      return this.buffer.sampleRate();
+    }
+
+    @Override
+    public SampleBufferType load()
+    {
+      return this.buffer;
+    }
+  }
+}
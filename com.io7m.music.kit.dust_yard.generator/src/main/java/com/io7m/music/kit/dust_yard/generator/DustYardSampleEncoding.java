@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import com.io7m.jsamplebuffer.api.SampleBufferType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+/**
+ * Functions to encode sample buffers as the 16-bit PCM data stored in
+ * soundfont files.
+ */
+
+public final class DustYardSampleEncoding
+{
+  private DustYardSampleEncoding()
+  {
+
+  }
+
+  /**
+   * Encode the given mono sample buffer as signed 16-bit little-endian PCM.
+   * The data of 16-bit buffers is copied as-is.
+   *
+   * @param source The sample buffer
+   *
+   * @return A buffer ready for reading
+   */
+
+  public static ByteBuffer encode16(
+    final SampleBufferType source)
+  {
+    final var buffer =
+      ByteBuffer.allocate(Math.toIntExact(source.samples() * 2L))
+        .order(LITTLE_ENDIAN);
+
+    if (source instanceof final DustYardSampleBuffer16 source16) {
+      buffer.asShortBuffer().put(source16.data());
+      return buffer;
+    }
+
+    for (var index = 0L; index < source.frames(); ++index) {
+      buffer.putShort(
+        DustYardSampleBuffer16.quantize(source.frameGetExact(index)));
+    }
+
+    return buffer.flip();
+  }
+
+  /**
+   * Write all of the given buffer to the channel.
+   *
+   * @param channel The channel
+   * @param buffer  The buffer
+   *
+   * @throws IOException On errors
+   */
+
+  public static void writeFully(
+    final WritableByteChannel channel,
+    final ByteBuffer buffer)
+    throws IOException
+  {
+    final var expected = buffer.remaining();
+    final var wrote = channel.write(buffer);
+    if (wrote != expected) {
+      throw new IOException(
+        new StringBuilder(32)
+          .append("Wrote too few bytes (wrote ")
+          .append(wrote)
+          .append(" expected ")
+          .append(expected)
+          .append(")")
+          .toString()
+      );
+    }
+  }
+
+  /**
+   * Write all of the given buffer to the channel at the given position.
+   *
+   * @param channel  The channel
+   * @param buffer   The buffer
+   * @param position The position in the file
+   *
+   * @throws IOException On errors
+   */
+
+  public static void writeFullyAt(
+    final FileChannel channel,
+    final ByteBuffer buffer,
+    final long position)
+    throws IOException
+  {
+    var offset = position;
+    while (buffer.hasRemaining()) {
+      offset += channel.write(buffer, offset);
+    }
+  }
+}
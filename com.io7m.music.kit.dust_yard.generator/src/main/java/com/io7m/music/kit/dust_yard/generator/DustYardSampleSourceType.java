@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import com.io7m.jsamplebuffer.api.SampleBufferType;
+
+import java.io.IOException;
+
+/**
+ * A source of sample data for a single soundfont sample.
+ */
+
+public interface DustYardSampleSourceType
+{
+  /**
+   * @return The number of (mono) frames in the sample
+   */
+
+  long frames();
+
+  /**
+   * @return The sample rate
+   */
+
+  double sampleRate();
+
+  /**
+   * Load the sample data. The returned buffer is not retained by the source,
+   * and so can be discarded as soon as it has been written.
+   *
+   * @return The sample data
+   *
+   * @throws IOException On errors
+   */
+
+  SampleBufferType load()
+    throws IOException;
+}
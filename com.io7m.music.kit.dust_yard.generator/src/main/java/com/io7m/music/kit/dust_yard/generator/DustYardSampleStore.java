@@ -0,0 +1,269 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import com.io7m.jsamplebuffer.api.SampleBufferType;
+
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory store of converted samples. Samples are keyed by the path of
+ * the intermediate file that would otherwise have been written for them, so
+ * that the converted instrument descriptions can be used unchanged whether
+ * or not the intermediate files actually exist.
+ */
+
+public final class DustYardSampleStore
+{
+  private final DustYardSampleBufferKind kind;
+  private final ConcurrentHashMap<Path, SampleBufferType> samples;
+
+  /**
+   * Create an empty store that keeps samples on the Java heap.
+   */
+
+  public DustYardSampleStore()
+  {
+    this(DustYardSampleBufferKind.HEAP);
+  }
+
+  /**
+   * Create an empty store.
+   *
+   * @param inKind The kind of storage used for sample buffers
+   */
+
+  public DustYardSampleStore(
+    final DustYardSampleBufferKind inKind)
+  {
+    this.kind = Objects.requireNonNull(inKind, "kind");
+    this.samples = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Store a converted sample.
+   *
+   * @param file The intermediate file path
+   * @param pcm  The sample data
+   */
+
+  public void put(
+    final Path file,
+    final DustYardPCM pcm)
+  {
+    this.put(file, DustYardSampleBuffers.ofPCM(this.kind, pcm));
+  }
+
+  /**
+   * Store a converted sample.
+   *
+   * @param file   The intermediate file path
+   * @param buffer The sample data
+   */
+
+  public void put(
+    final Path file,
+    final SampleBufferType buffer)
+  {
+    this.samples.put(
+      Objects.requireNonNull(file, "file"),
+      Objects.requireNonNull(buffer, "buffer")
+    );
+  }
+
+  /**
+   * Find a converted sample.
+   *
+   * @param file The intermediate file path
+   *
+   * @return The sample data, if present
+   */
+
+  public Optional<SampleBufferType> find(
+    final Path file)
+  {
+    return Optional.ofNullable(this.samples.get(file));
+  }
+
+  /**
+   * Find a converted sample, falling back to reading the intermediate file
+   * if the sample is not in memory.
+   *
+   * @param file The intermediate file path
+   *
+   * @return The sample data
+   *
+   * @throws IOException On errors
+   */
+
+  public SampleBufferType findOrRead(
+    final Path file)
+    throws IOException
+  {
+    final var existing = this.samples.get(file);
+    if (existing != null) {
+      return existing;
+    }
+    return DustYardSampleBuffers.ofFile(this.kind, file);
+  }
+
+  /**
+   * Remove a converted sample from memory, falling back to reading the
+   * intermediate file if the sample is not in memory.
+   *
+   * @param file The intermediate file path
+   *
+   * @return The sample data
+   *
+   * @throws IOException On errors
+   */
+
+  public SampleBufferType takeOrRead(
+    final Path file)
+    throws IOException
+  {
+    final var existing = this.samples.remove(file);
+    if (existing != null) {
+      return existing;
+    }
+    return DustYardSampleBuffers.ofFile(this.kind, file);
+  }
+
+  /**
+   * Obtain a source for the given sample.
+   *
+   * @param file    The intermediate file path
+   * @param loading The loading mode
+   *
+   * @return A sample source
+   *
+   * @throws IOException On errors
+   */
+
+  public DustYardSampleSourceType source(
+    final Path file,
+    final DustYardSampleLoading loading)
+    throws IOException
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(loading, "loading");
+
+    return switch (loading) {
+      case EAGER -> new Resident(this.findOrRead(file));
+      case LAZY -> this.deferred(file);
+    };
+  }
+
+  /**
+   * @param loading The loading mode
+   *
+   * @return A function that obtains sources from this store
+   */
+
+  public DustYardSampleSourcesType sources(
+    final DustYardSampleLoading loading)
+  {
+    Objects.requireNonNull(loading, "loading");
+    return file -> this.source(file, loading);
+  }
+
+  private DustYardSampleSourceType deferred(
+    final Path file)
+    throws IOException
+  {
+    final var existing = this.samples.get(file);
+    if (existing != null) {
+      return new Deferred(this, file, existing.frames(), existing.sampleRate());
+    }
+
+    /*
+     * Only the file header is read here; the sample data is read when the
+     * source is loaded.
+     */
+
+    try {
+      final var format = AudioSystem.getAudioFileFormat(file.toFile());
+      if (format.getFrameLength() == AudioSystem.NOT_SPECIFIED) {
+        throw new IOException(
+          String.format("%s: Unknown frame count", file));
+      }
+      return new Deferred(
+        this,
+        file,
+        format.getFrameLength(),
+        format.getFormat().getSampleRate()
+      );
+    } catch (final UnsupportedAudioFileException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private record Resident(
+    SampleBufferType buffer)
+    implements DustYardSampleSourceType
+  {
+    @Override
+    public long frames()
+    {
+      return this.buffer.frames();
+    }
+
+    @Override
+    public double sampleRate()
+    {
+      return this.buffer.sampleRate();
+    }
+
+    @Override
+    public SampleBufferType load()
+    {
+      return this.buffer;
+    }
+  }
+
+  private record Deferred(
+    DustYardSampleStore store,
+    Path file,
+    long frames,
+    double sampleRate)
+    implements DustYardSampleSourceType
+  {
+    @Override
+    public SampleBufferType load()
+      throws IOException
+    {
+      final var buffer = this.store.takeOrRead(this.file);
+      if (buffer.frames() != this.frames || buffer.channels() != 1) {
+        throw new IOException(
+          String.format(
+            "%s: Expected %d mono frames, but loaded %d frames of %d channels",
+            this.file,
+            Long.valueOf(this.frames),
+            Long.valueOf(buffer.frames()),
+            Integer.valueOf(buffer.channels()))
+        );
+      }
+      return buffer;
+    }
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import com.io7m.jsamplebuffer.api.SampleBufferType;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+/**
+ * A writer that encodes mono sample buffers as signed 16-bit little-endian
+ * PCM. Samples are encoded a block at a time into a reusable direct buffer,
+ * so writing a sample allocates nothing per frame.
+ *
+ * <p>Writers are not thread-safe; each thread must use its own writer.</p>
+ */
+
+public final class DustYardSampleWriter
+{
+  /**
+   * The default number of frames encoded at a time.
+   */
+
+  public static final int DEFAULT_BLOCK_FRAMES = 8192;
+
+  private final DustYardQuantizerType quantizer;
+  private final int blockFrames;
+  private final double[] frames;
+  private final short[] quantized;
+  private final ByteBuffer block;
+  private final ShortBuffer blockShorts;
+
+  /**
+   * Create a writer using the scalar quantizer.
+   */
+
+  public DustYardSampleWriter()
+  {
+    this(new DustYardQuantizerScalar(), DEFAULT_BLOCK_FRAMES);
+  }
+
+  /**
+   * Create a writer.
+   *
+   * @param inQuantizer   The quantization kernel
+   * @param inBlockFrames The number of frames encoded at a time
+   */
+
+  public DustYardSampleWriter(
+    final DustYardQuantizerType inQuantizer,
+    final int inBlockFrames)
+  {
+    this.quantizer =
+      Objects.requireNonNull(inQuantizer, "quantizer");
+
+    if (inBlockFrames < 1) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Block size %d must be positive",
+          Integer.valueOf(inBlockFrames))
+      );
+    }
+
+    this.blockFrames = inBlockFrames;
+    this.frames = new double[inBlockFrames];
+    this.quantized = new short[inBlockFrames];
+    this.block =
+      ByteBuffer.allocateDirect(Math.multiplyExact(inBlockFrames, 2))
+        .order(LITTLE_ENDIAN);
+    this.blockShorts = this.block.asShortBuffer();
+  }
+
+  /**
+   * Write the given sample to the channel at the channel's current position.
+   *
+   * @param source  The sample
+   * @param channel The channel
+   *
+   * @throws IOException On errors
+   */
+
+  public void write(
+    final SampleBufferType source,
+    final WritableByteChannel channel)
+    throws IOException
+  {
+    Objects.requireNonNull(channel, "channel");
+
+    final var data16 = dataOf(source);
+    final var count = source.frames();
+    for (var offset = 0L; offset < count; offset += this.blockFrames) {
+      this.encodeBlock(source, data16, offset, count);
+      DustYardSampleEncoding.writeFully(channel, this.block);
+    }
+  }
+
+  /**
+   * Write the given sample to the channel at the given position.
+   *
+   * @param source   The sample
+   * @param channel  The channel
+   * @param position The position in the file
+   *
+   * @throws IOException On errors
+   */
+
+  public void writeAt(
+    final SampleBufferType source,
+    final FileChannel channel,
+    final long position)
+    throws IOException
+  {
+    Objects.requireNonNull(channel, "channel");
+
+    final var data16 = dataOf(source);
+    final var count = source.frames();
+    for (var offset = 0L; offset < count; offset += this.blockFrames) {
+      this.encodeBlock(source, data16, offset, count);
+      DustYardSampleEncoding.writeFullyAt(channel, this.block, position + offset * 2L);
+    }
+  }
+
+  /**
+   * Encode the given sample directly into the given buffer at the buffer's
+   * current position, and advance the position past the encoded data.
+   *
+   * @param source The sample
+   * @param target The target buffer
+   */
+
+  public void encodeInto(
+    final SampleBufferType source,
+    final ByteBuffer target)
+  {
+    Objects.requireNonNull(target, "target");
+
+    final var data16 = dataOf(source);
+    final var count = Math.toIntExact(source.frames());
+    final var size = Math.multiplyExact(count, 2);
+    if (target.remaining() < size) {
+      throw new BufferOverflowException();
+    }
+
+    final var shorts =
+      target.slice(target.position(), size)
+        .order(LITTLE_ENDIAN)
+        .asShortBuffer();
+
+    if (data16 != null) {
+      shorts.put(0, data16, 0, count);
+    } else {
+      for (var offset = 0; offset < count; offset += this.blockFrames) {
+        final var blockSize = Math.min(this.blockFrames, count - offset);
+        for (int index = 0; index < blockSize; ++index) {
+          this.frames[index] = source.frameGetExact((long) offset + index);
+        }
+        this.quantizer.quantize(this.frames, this.quantized, blockSize);
+        shorts.put(offset, this.quantized, 0, blockSize);
+      }
+    }
+
+    target.position(target.position() + size);
+  }
+
+  /**
+   * @return The underlying 16-bit data for 16-bit mono buffers, or
+   * {@code null} if the buffer must be quantized
+   */
+
+  private static ShortBuffer dataOf(
+    final SampleBufferType source)
+  {
+    Objects.requireNonNull(source, "source");
+
+    if (source.channels() != 1) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Sample has %d channels, but only mono samples can be written",
+          Integer.valueOf(source.channels()))
+      );
+    }
+    if (source instanceof final DustYardSampleBuffer16 source16) {
+      return source16.data();
+    }
+    return null;
+  }
+
+  /**
+   * Encode a block of frames starting at {@code offset} into the block
+   * buffer, leaving the buffer ready for reading.
+   */
+
+  private void encodeBlock(
+    final SampleBufferType source,
+    final ShortBuffer data16,
+    final long offset,
+    final long count)
+  {
+    final var size = (int) Math.min(this.blockFrames, count - offset);
+
+    if (data16 != null) {
+      this.blockShorts.put(0, data16, Math.toIntExact(offset), size);
+    } else {
+      for (int index = 0; index < size; ++index) {
+        this.frames[index] = source.frameGetExact(offset + index);
+      }
+      this.quantizer.quantize(this.frames, this.quantized, size);
+      this.blockShorts.put(0, this.quantized, 0, size);
+    }
+
+    this.block.clear();
+    this.block.limit(size * 2);
+  }
+}
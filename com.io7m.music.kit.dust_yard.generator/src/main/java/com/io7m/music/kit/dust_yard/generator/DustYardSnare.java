@@ -21,12 +21,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Objects;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import static com.io7m.music.kit.dust_yard.generator.DustYardSnareStrikeKind.CROSS_STICK_STRIKE;
 import static com.io7m.music.kit.dust_yard.generator.DustYardSnareStrikeKind.HEAD_CENTER_STRIKE;
@@ -42,10 +40,6 @@ public final class DustYardSnare
   private static final Logger LOG =
     LoggerFactory.getLogger(DustYardSnare.class);
 
-  private static final Pattern SNARE_PATTERN =
-    Pattern.compile(
-      "([0-9]+)__quartertone__sd14x08tama-vhp-([a-z0-9]+)-([a-z0-9]+)-v([0-9]+)\\.flac");
-
   private final EnumMap<DustYardSnareTautnessKind, DustYardSnareTautnessFiles> snare;
 
   public DustYardSnare(
@@ -57,55 +51,53 @@ public final class DustYardSnare
   public static DustYardSnare open(
     final Path directory)
     throws IOException
+  {
+    return of(DustYardSourceIndex.scan(directory));
+  }
+
+  public static DustYardSnare of(
+    final List<DustYardSourceFile> files)
   {
     final var snare =
       new EnumMap<DustYardSnareTautnessKind, DustYardSnareTautnessFiles>(
         DustYardSnareTautnessKind.class
       );
 
-    try (var pathStream = Files.list(directory)) {
-      final var files =
-        pathStream
-          .map(Path::toAbsolutePath)
-          .sorted()
-          .collect(Collectors.toList());
-
-      for (final var file : files) {
-        final var fileName = file.getFileName().toString();
-        final var matcher = SNARE_PATTERN.matcher(fileName);
-        if (matcher.matches()) {
-          final var tautness =
-            matcher.group(2);
-          final var stick =
-            matcher.group(3);
-          final var velocity =
-            matcher.group(4);
-
-          LOG.info("{} {} {}", tautness, stick, velocity);
-          switch (tautness) {
-            case "0sn": {
-              handleTautness(snare, file, SNARES_OFF, stick, velocity);
-              break;
-            }
-            case "lsn": {
-              handleTautness(snare, file, SNARES_LOOSE, stick, velocity);
-              break;
-            }
-            case "tsn": {
-              handleTautness(snare, file, SNARES_TIGHT, stick, velocity);
-              break;
-            }
-            default: {
-              throw new IllegalStateException(
-                String.format("Unexpected value: %s", tautness)
-              );
-            }
+    for (final var sourceFile : files) {
+      if (sourceFile.kind() == DustYardSourceKind.SNARE) {
+        final var file =
+          sourceFile.file();
+        final var tautness =
+          sourceFile.group(2);
+        final var stick =
+          sourceFile.group(3);
+        final var velocity =
+          sourceFile.group(4);
+
+        LOG.info("{} {} {}", tautness, stick, velocity);
+        switch (tautness) {
+          case "0sn": {
+            handleTautness(snare, file, SNARES_OFF, stick, velocity);
+            break;
+          }
+          case "lsn": {
+            handleTautness(snare, file, SNARES_LOOSE, stick, velocity);
+            break;
+          }
+          case "tsn": {
+            handleTautness(snare, file, SNARES_TIGHT, stick, velocity);
+            break;
+          }
+          default: {
+            throw new IllegalStateException(
+              String.format("Unexpected value: %s", tautness)
+            );
           }
         }
       }
-
-      return new DustYardSnare(snare);
     }
+
+    return new DustYardSnare(snare);
   }
 
   private static void handleTautness(
@@ -16,22 +16,14 @@
 
 package com.io7m.music.kit.dust_yard.generator;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import javax.sound.sampled.AudioFileFormat;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.EnumMap;
 
 public final class DustYardSnareConversion
 {
-  private static final Logger LOG =
-    LoggerFactory.getLogger(DustYardSnareConversion.class);
+  private static final String INSTRUMENT = "snare";
 
   private DustYardSnareConversion()
   {
@@ -42,46 +34,58 @@ public final class DustYardSnareConversion
     final DustYardSnare snareInput,
     final Path outputDirectory)
     throws IOException
+  {
+    return convertFLACs(DustYardConverter.serial(), snareInput, outputDirectory);
+  }
+
+  public static DustYardSnare convertFLACs(
+    final DustYardConverter converter,
+    final DustYardSnare snareInput,
+    final Path outputDirectory)
+    throws IOException
   {
     final var snareOutput =
       new EnumMap<DustYardSnareTautnessKind, DustYardSnareTautnessFiles>(
         DustYardSnareTautnessKind.class
       );
+    final var conversions =
+      new ArrayList<DustYardConversion>();
 
-    try {
-      snareInput.snare().forEach((tautnessKind, tautnessFiles) -> {
-        tautnessFiles.filesByKind().forEach((strikeKind, strikeFiles) -> {
-          strikeFiles.filesByVelocity().forEach((velocity, path) -> {
-            try {
-              convert(
+    for (final var tautnessEntry : snareInput.snare().entrySet()) {
+      final var tautnessKind = tautnessEntry.getKey();
+      final var tautnessFiles = tautnessEntry.getValue();
+      for (final var strikeEntry : tautnessFiles.filesByKind().entrySet()) {
+        final var strikeKind = strikeEntry.getKey();
+        final var strikeFiles = strikeEntry.getValue();
+        for (final var velocityEntry : strikeFiles.filesByVelocity().entrySet()) {
+          final var velocity = velocityEntry.getKey();
+          final var path = velocityEntry.getValue();
+          conversions.add(
+            new DustYardConversion(
+              INSTRUMENT,
+              path,
+              outputFile(
                 snareOutput,
                 tautnessKind,
                 strikeKind,
                 velocity,
-                path,
-                outputDirectory
-              );
-            } catch (final IOException e) {
-              throw new UncheckedIOException(e);
-            }
-          });
-        });
-      });
-    } catch (final UncheckedIOException e) {
-      throw e.getCause();
+                outputDirectory)
+            )
+          );
+        }
+      }
     }
 
+    converter.convertAll(conversions);
     return new DustYardSnare(snareOutput);
   }
 
-  private static void convert(
+  private static Path outputFile(
     final EnumMap<DustYardSnareTautnessKind, DustYardSnareTautnessFiles> snareOutput,
     final DustYardSnareTautnessKind tautnessKind,
     final DustYardSnareStrikeKind strikeKind,
     final Integer velocity,
-    final Path path,
     final Path outputDirectory)
-    throws IOException
   {
     final var outputFileDirectory =
       outputDirectory.resolve(tautnessKind.name())
@@ -90,16 +94,6 @@ public final class DustYardSnareConversion
       outputFileDirectory.resolve(
         String.format("%02d.wav", velocity));
 
-    Files.createDirectories(outputFileDirectory);
-
-    LOG.info("write {}", outputFile);
-
-    try (var stream = DustYardFLACToMono16.readAs16Mono(path)) {
-      AudioSystem.write(stream, AudioFileFormat.Type.WAVE, outputFile.toFile());
-    } catch (final UnsupportedAudioFileException e) {
-      throw new IOException(e);
-    }
-
     final var tautnessFiles =
       snareOutput.computeIfAbsent(tautnessKind, k -> new DustYardSnareTautnessFiles());
     final var strikeFiles =
@@ -112,5 +106,6 @@ public final class DustYardSnareConversion
       velocity,
       outputFile
     );
+    return outputFile;
   }
 }
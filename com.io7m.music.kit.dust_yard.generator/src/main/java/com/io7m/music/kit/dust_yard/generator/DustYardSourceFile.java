@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A classified source file.
+ *
+ * @param file   The absolute path of the file
+ * @param size   The size of the file
+ * @param kind   The kind of file
+ * @param groups The parts of the file name captured when classifying it
+ */
+
+public record DustYardSourceFile(
+  Path file,
+  long size,
+  DustYardSourceKind kind,
+  List<String> groups)
+{
+  /**
+   * A classified source file.
+   *
+   * @param file   The absolute path of the file
+   * @param size   The size of the file
+   * @param kind   The kind of file
+   * @param groups The parts of the file name captured when classifying it
+   */
+
+  public DustYardSourceFile
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(kind, "kind");
+    groups = List.copyOf(Objects.requireNonNull(groups, "groups"));
+  }
+
+  /**
+   * Classify the given file.
+   *
+   * @param file The absolute path of the file
+   * @param size The size of the file
+   *
+   * @return The classified file, if the file is of a known kind
+   */
+
+  public static Optional<DustYardSourceFile> classify(
+    final Path file,
+    final long size)
+  {
+    final var fileName = file.getFileName().toString();
+    for (final var kind : DustYardSourceKind.values()) {
+      final var groups = kind.match(fileName);
+      if (groups.isPresent()) {
+        return Optional.of(new DustYardSourceFile(file, size, kind, groups.get()));
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * @param index The group index, starting at 1 as with regular expressions
+   *
+   * @return The captured group
+   */
+
+  public String group(
+    final int index)
+  {
+    return this.groups.get(index - 1);
+  }
+}
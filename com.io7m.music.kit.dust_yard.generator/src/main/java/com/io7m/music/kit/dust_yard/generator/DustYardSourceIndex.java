@@ -0,0 +1,414 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * An index of the classified source files beneath a directory.
+ *
+ * <p>The source tree is walked breadth-first, with the directories at each
+ * level listed in parallel, and every file name is classified once. The
+ * resulting index is saved to a file. On subsequent builds, a directory whose
+ * modification time is unchanged, and whose files all have their recorded
+ * sizes, is not listed or classified again.</p>
+ */
+
+public final class DustYardSourceIndex
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(DustYardSourceIndex.class);
+
+  private static final int MAGIC = 0x44594931;
+  private static final int VERSION = 1;
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+
+  private static final Comparator<DustYardSourceFile> BY_FILE =
+    Comparator.comparing(DustYardSourceFile::file);
+
+  private final Path root;
+  private final Map<Path, Directory> directories;
+
+  private DustYardSourceIndex(
+    final Path inRoot,
+    final Map<Path, Directory> inDirectories)
+  {
+    this.root =
+      Objects.requireNonNull(inRoot, "root");
+    this.directories =
+      Objects.requireNonNull(inDirectories, "directories");
+  }
+
+  /**
+   * Classify the files in a single directory, without consulting or saving
+   * an index.
+   *
+   * @param directory The directory
+   *
+   * @return The classified files, sorted by path
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static List<DustYardSourceFile> scan(
+    final Path directory)
+    throws IOException
+  {
+    final var absolute = directory.toAbsolutePath();
+    return list(absolute, modifiedTime(absolute)).files();
+  }
+
+  /**
+   * Build an index of the given source tree, reusing the entries of the
+   * index saved in {@code indexFile} for any directories that have not
+   * changed, and then save the new index to {@code indexFile}.
+   *
+   * @param root      The root of the source tree
+   * @param indexFile The file holding the saved index
+   * @param executor  The executor used to list directories
+   * @param workers   The number of directories listed concurrently
+   *
+   * @return The index
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static DustYardSourceIndex build(
+    final Path root,
+    final Path indexFile,
+    final ExecutorService executor,
+    final int workers)
+    throws IOException
+  {
+    Objects.requireNonNull(indexFile, "indexFile");
+    Objects.requireNonNull(executor, "executor");
+
+    final var absoluteRoot =
+      root.toAbsolutePath().normalize();
+    final var previous =
+      load(absoluteRoot, indexFile);
+    final var directories =
+      new ConcurrentHashMap<Path, Directory>();
+    final var listed =
+      new AtomicInteger();
+
+    var level = List.of(absoluteRoot);
+    while (!level.isEmpty()) {
+      final var current = level;
+      final var next = new AtomicInteger();
+      final var tasks = new DustYardTaskGroup(executor);
+      final var count = Math.max(1, Math.min(workers, current.size()));
+
+      for (int worker = 0; worker < count; ++worker) {
+        tasks.submit("index", () -> {
+          while (true) {
+            final var index = next.getAndIncrement();
+            if (index >= current.size()) {
+              return null;
+            }
+
+            final var directory = current.get(index);
+            final var modified = modifiedTime(directory);
+            var entry = previous.get(directory);
+            if (entry == null || !entry.isUnchanged(modified)) {
+              entry = list(directory, modified);
+              listed.incrementAndGet();
+            }
+            directories.put(directory, entry);
+          }
+        });
+      }
+      tasks.await();
+
+      final var nextLevel = new ArrayList<Path>();
+      for (final var directory : current) {
+        for (final var name : directories.get(directory).subdirectories()) {
+          nextLevel.add(directory.resolve(name));
+        }
+      }
+      level = nextLevel;
+    }
+
+    LOG.info(
+      "index: {} directories, {} listed, {} reused",
+      Integer.valueOf(directories.size()),
+      Integer.valueOf(listed.get()),
+      Integer.valueOf(directories.size() - listed.get())
+    );
+
+    final var index = new DustYardSourceIndex(absoluteRoot, Map.copyOf(directories));
+    if (listed.get() > 0 || directories.size() != previous.size()) {
+      index.save(indexFile);
+    }
+    return index;
+  }
+
+  private static long modifiedTime(
+    final Path directory)
+    throws IOException
+  {
+    return Files.readAttributes(directory, BasicFileAttributes.class)
+      .lastModifiedTime()
+      .to(NANOSECONDS);
+  }
+
+  private static Directory list(
+    final Path directory,
+    final long modified)
+    throws IOException
+  {
+    final var subdirectories = new ArrayList<String>();
+    final var files = new ArrayList<DustYardSourceFile>();
+
+    Files.walkFileTree(directory, Set.of(), 1, new SimpleFileVisitor<>()
+    {
+      @Override
+      public FileVisitResult visitFile(
+        final Path file,
+        final BasicFileAttributes attributes)
+      {
+        if (attributes.isDirectory()) {
+          subdirectories.add(file.getFileName().toString());
+        } else if (attributes.isRegularFile()) {
+          DustYardSourceFile.classify(file, attributes.size())
+            .ifPresent(files::add);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+
+    subdirectories.sort(String::compareTo);
+    files.sort(BY_FILE);
+    return new Directory(modified, List.copyOf(subdirectories), List.copyOf(files));
+  }
+
+  /**
+   * Load a saved index. Missing, unreadable, or mismatched indices are
+   * treated as empty, causing the tree to be listed again.
+   */
+
+  private static Map<Path, Directory> load(
+    final Path root,
+    final Path indexFile)
+  {
+    try (var input = new DataInputStream(
+      new BufferedInputStream(Files.newInputStream(indexFile)))) {
+      if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+        LOG.warn("index: {}: not a recognized index; rebuilding", indexFile);
+        return Map.of();
+      }
+      if (!Objects.equals(input.readUTF(), root.toString())) {
+        LOG.info("index: {}: source directory changed; rebuilding", indexFile);
+        return Map.of();
+      }
+
+      final var kinds = DustYardSourceKind.values();
+      final var directoryCount = input.readInt();
+      final var directories = new HashMap<Path, Directory>(directoryCount);
+      for (int d = 0; d < directoryCount; ++d) {
+        final var directory = root.resolve(input.readUTF()).normalize();
+        final var modified = input.readLong();
+
+        final var subdirectoryCount = input.readInt();
+        final var subdirectories = new ArrayList<String>(subdirectoryCount);
+        for (int s = 0; s < subdirectoryCount; ++s) {
+          subdirectories.add(input.readUTF());
+        }
+
+        final var fileCount = input.readInt();
+        final var files = new ArrayList<DustYardSourceFile>(fileCount);
+        for (int f = 0; f < fileCount; ++f) {
+          final var file = directory.resolve(input.readUTF());
+          final var size = input.readLong();
+          final var kind = kinds[input.readUnsignedByte()];
+          final var groupCount = input.readUnsignedByte();
+          final var groups = new ArrayList<String>(groupCount);
+          for (int g = 0; g < groupCount; ++g) {
+            groups.add(input.readUTF());
+          }
+          files.add(new DustYardSourceFile(file, size, kind, groups));
+        }
+
+        directories.put(
+          directory,
+          new Directory(modified, List.copyOf(subdirectories), List.copyOf(files))
+        );
+      }
+      return directories;
+    } catch (final NoSuchFileException e) {
+      return Map.of();
+    } catch (final IOException | RuntimeException e) {
+      LOG.warn("index: {}: unreadable ({}); rebuilding", indexFile, e.getMessage());
+      return Map.of();
+    }
+  }
+
+  private void save(
+    final Path indexFile)
+    throws IOException
+  {
+    final var parent = indexFile.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+
+    final var temporary =
+      parent.resolve(String.format(
+        "%s-%s%s", indexFile.getFileName(), UUID.randomUUID(), TEMPORARY_SUFFIX));
+
+    try {
+      try (var output = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeUTF(this.root.toString());
+        output.writeInt(this.directories.size());
+
+        for (final var entry : this.directories.entrySet()) {
+          final var directory = entry.getValue();
+          output.writeUTF(this.root.relativize(entry.getKey()).toString());
+          output.writeLong(directory.modified());
+
+          output.writeInt(directory.subdirectories().size());
+          for (final var name : directory.subdirectories()) {
+            output.writeUTF(name);
+          }
+
+          output.writeInt(directory.files().size());
+          for (final var file : directory.files()) {
+            output.writeUTF(file.file().getFileName().toString());
+            output.writeLong(file.size());
+            output.writeByte(file.kind().ordinal());
+            output.writeByte(file.groups().size());
+            for (final var group : file.groups()) {
+              output.writeUTF(group);
+            }
+          }
+        }
+      }
+      Files.move(temporary, indexFile, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * @return The root of the indexed tree
+   */
+
+  public Path root()
+  {
+    return this.root;
+  }
+
+  /**
+   * @param directory A directory within the indexed tree
+   *
+   * @return The classified files directly within the directory, sorted by
+   * path
+   */
+
+  public List<DustYardSourceFile> filesIn(
+    final Path directory)
+  {
+    final var entry =
+      this.directories.get(directory.toAbsolutePath().normalize());
+    if (entry == null) {
+      return List.of();
+    }
+    return entry.files();
+  }
+
+  /**
+   * @return All classified files within the indexed tree, sorted by path
+   */
+
+  public List<DustYardSourceFile> files()
+  {
+    final var files = new ArrayList<DustYardSourceFile>();
+    for (final var directory : this.directories.values()) {
+      files.addAll(directory.files());
+    }
+    files.sort(BY_FILE);
+    return List.copyOf(files);
+  }
+
+  private record Directory(
+    long modified,
+    List<String> subdirectories,
+    List<DustYardSourceFile> files)
+  {
+    private Directory
+    {
+      Objects.requireNonNull(subdirectories, "subdirectories");
+      Objects.requireNonNull(files, "files");
+    }
+
+    /**
+     * A directory is unchanged if its modification time is the same as when
+     * it was listed (so no entries have been added, removed, or renamed),
+     * and its files all have their recorded sizes.
+     */
+
+    boolean isUnchanged(
+      final long newModified)
+      throws IOException
+    {
+      if (newModified != this.modified) {
+        return false;
+      }
+      for (final var file : this.files) {
+        try {
+          final var attributes =
+            Files.readAttributes(file.file(), BasicFileAttributes.class);
+          if (attributes.size() != file.size()) {
+            return false;
+          }
+        } catch (final NoSuchFileException e) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * The kinds of source files, identified by their file names.
+ */
+
+public enum DustYardSourceKind
+{
+  /**
+   * A snare sample.
+   */
+
+  SNARE(
+    "([0-9]+)__quartertone__sd14x08tama-vhp-([a-z0-9]+)-([a-z0-9]+)-v([0-9]+)\\.flac"),
+
+  /**
+   * A bass drum sample.
+   */
+
+  BASS_DRUM(
+    "([0-9]+)__quartertone__bd22x16-mlp-o-v([0-9]+)\\.flac"),
+
+  /**
+   * A china hi-hat sample.
+   */
+
+  CHINA_HI_HAT(
+    "([0-9]+)__quartertone__chh18x20-1-([a-z]+)-v16.flac"),
+
+  /**
+   * A splash cymbal sample.
+   */
+
+  SPLASH(
+    "([0-9]+)__quartertone__sc08inzilefx1-([a-z]+)-v([0-9]+)\\.flac");
+
+  private final Pattern pattern;
+
+  DustYardSourceKind(
+    final String inPattern)
+  {
+    this.pattern = Pattern.compile(inPattern);
+  }
+
+  /**
+   * Match the given file name against this kind of file.
+   *
+   * @param fileName The file name
+   *
+   * @return The groups captured by the match, starting with group 1, if the
+   * file name matches
+   */
+
+  public Optional<List<String>> match(
+    final String fileName)
+  {
+    final var matcher = this.pattern.matcher(fileName);
+    if (!matcher.matches()) {
+      return Optional.empty();
+    }
+
+    final var groups = new ArrayList<String>(matcher.groupCount());
+    for (int index = 1; index <= matcher.groupCount(); ++index) {
+      groups.add(matcher.group(index));
+    }
+    return Optional.of(List.copyOf(groups));
+  }
+}
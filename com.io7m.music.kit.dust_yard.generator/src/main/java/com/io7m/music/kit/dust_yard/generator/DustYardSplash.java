@@ -17,20 +17,14 @@
 package com.io7m.music.kit.dust_yard.generator;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public final class DustYardSplash
 {
-  private static final Pattern PATTERN =
-    Pattern.compile(
-      "([0-9]+)__quartertone__sc08inzilefx1-([a-z]+)-v([0-9]+)\\.flac");
-
   private final SortedMap<String, SortedMap<Integer, Path>> files;
 
   public DustYardSplash(
@@ -43,35 +37,31 @@ public final class DustYardSplash
     final Path directory)
     throws IOException
   {
-    final SortedMap<String, SortedMap<Integer, Path>> outFiles = new TreeMap<>();
+    return of(DustYardSourceIndex.scan(directory));
+  }
 
-    try (var pathStream = Files.list(directory)) {
-      final var files =
-        pathStream
-          .map(Path::toAbsolutePath)
-          .sorted()
-          .collect(Collectors.toList());
+  public static DustYardSplash of(
+    final List<DustYardSourceFile> files)
+  {
+    final SortedMap<String, SortedMap<Integer, Path>> outFiles = new TreeMap<>();
 
-      for (final var file : files) {
-        final var fileName = file.getFileName().toString();
-        final var matcher = PATTERN.matcher(fileName);
-        if (matcher.matches()) {
-          final var kind =
-            matcher.group(2);
-          final var velocity =
-            matcher.group(3);
-          final var velocityNumber =
-            Integer.valueOf(Integer.valueOf(velocity).intValue() - 1);
+    for (final var file : files) {
+      if (file.kind() == DustYardSourceKind.SPLASH) {
+        final var kind =
+          file.group(2);
+        final var velocity =
+          file.group(3);
+        final var velocityNumber =
+          Integer.valueOf(Integer.valueOf(velocity).intValue() - 1);
 
-          final var forVelocity =
-            outFiles.computeIfAbsent(kind, ignored -> new TreeMap<>());
+        final var forVelocity =
+          outFiles.computeIfAbsent(kind, ignored -> new TreeMap<>());
 
-          forVelocity.put(velocityNumber, file);
-        }
+        forVelocity.put(velocityNumber, file.file());
       }
-
-      return new DustYardSplash(outFiles);
     }
+
+    return new DustYardSplash(outFiles);
   }
 
   public SortedMap<String, SortedMap<Integer, Path>> files()
@@ -16,23 +16,16 @@
 
 package com.io7m.music.kit.dust_yard.generator;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import javax.sound.sampled.AudioFileFormat;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Locale;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
 public final class DustYardSplashConversion
 {
-  private static final Logger LOG =
-    LoggerFactory.getLogger(DustYardSplashConversion.class);
+  private static final String INSTRUMENT = "splash";
 
   private DustYardSplashConversion()
   {
@@ -43,47 +36,38 @@ public final class DustYardSplashConversion
     final DustYardSplash input,
     final Path outputDirectory)
     throws IOException
+  {
+    return convertFLACs(DustYardConverter.serial(), input, outputDirectory);
+  }
+
+  public static DustYardSplash convertFLACs(
+    final DustYardConverter converter,
+    final DustYardSplash input,
+    final Path outputDirectory)
+    throws IOException
   {
     final SortedMap<String, SortedMap<Integer, Path>> output = new TreeMap<>();
+    final var conversions = new ArrayList<DustYardConversion>();
 
     final var inputFiles = input.files();
     for (final var kind : inputFiles.keySet()) {
       final var byVelocity = inputFiles.get(kind);
       for (final var velocity : byVelocity.keySet()) {
         final var file = byVelocity.get(velocity);
-        convert(output, kind, velocity, file, outputDirectory);
-      }
-    }
+        final var outputFile =
+          outputDirectory.resolve(
+            String.format("%s_%02d.wav", kind.toUpperCase(Locale.ROOT), velocity)
+          );
 
-    return new DustYardSplash(output);
-  }
-
-  private static void convert(
-    final SortedMap<String, SortedMap<Integer, Path>> output,
-    final String kind,
-    final Integer velocity,
-    final Path path,
-    final Path outputDirectory)
-    throws IOException
-  {
-    final var outputFile =
-      outputDirectory.resolve(
-        String.format("%s_%02d.wav", kind.toUpperCase(Locale.ROOT), velocity)
-      );
+        conversions.add(new DustYardConversion(INSTRUMENT, file, outputFile));
 
-    Files.createDirectories(outputDirectory);
-
-    LOG.info("write {}", outputFile);
-
-    try (var stream = DustYardFLACToMono16.readAs16Mono(path)) {
-      AudioSystem.write(stream, AudioFileFormat.Type.WAVE, outputFile.toFile());
-    } catch (final UnsupportedAudioFileException e) {
-      throw new IOException(e);
+        final var outputVel =
+          output.computeIfAbsent(kind, ignored -> new TreeMap<>());
+        outputVel.put(velocity, outputFile);
+      }
     }
 
-    final var outputVel =
-      output.computeIfAbsent(kind, ignored -> new TreeMap<>());
-
-    outputVel.put(velocity, outputFile);
+    converter.convertAll(conversions);
+    return new DustYardSplash(output);
   }
 }
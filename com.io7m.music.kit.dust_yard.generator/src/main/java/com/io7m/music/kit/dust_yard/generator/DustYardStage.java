@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+/**
+ * The stages of a build for which metrics are recorded.
+ */
+
+public enum DustYardStage
+{
+  /**
+   * Listing and classifying the files in the source directories.
+   */
+
+  SCAN("scan"),
+
+  /**
+   * Decoding source files.
+   */
+
+  DECODE("decode"),
+
+  /**
+   * Resampling and trimming decoded samples.
+   */
+
+  PROCESS("process"),
+
+  /**
+   * Writing intermediate WAV files.
+   */
+
+  WRITE("write"),
+
+  /**
+   * Obtaining the sample data for the soundfont.
+   */
+
+  LOAD("load"),
+
+  /**
+   * Building the instrument zones of the soundfont.
+   */
+
+  ZONES("zones"),
+
+  /**
+   * Writing the soundfont file.
+   */
+
+  SERIALIZE("serialize");
+
+  private final String jsonName;
+
+  DustYardStage(
+    final String inJsonName)
+  {
+    this.jsonName = inJsonName;
+  }
+
+  /**
+   * @return The name of the stage in reports
+   */
+
+  public String jsonName()
+  {
+    return this.jsonName;
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+/**
+ * Settings for trimming the pre-roll before the onset of samples. The onset
+ * of a sample is the first frame whose magnitude exceeds a threshold relative
+ * to the sample's peak. The sample is cut at the last zero crossing before
+ * the onset, so that the new start does not click.
+ *
+ * @param thresholdDecibels The threshold in decibels relative to the peak,
+ *                          which must be negative
+ */
+
+public record DustYardStartTrim(
+  double thresholdDecibels)
+{
+  /**
+   * Settings for trimming the pre-roll before the onset of samples.
+   *
+   * @param thresholdDecibels The threshold in decibels relative to the peak
+   */
+
+  public DustYardStartTrim
+  {
+    if (!(thresholdDecibels < 0.0) || !Double.isFinite(thresholdDecibels)) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Threshold %s must be a finite value below 0dB",
+          Double.valueOf(thresholdDecibels))
+      );
+    }
+  }
+
+  /**
+   * Trim the given sample. Samples that are entirely silent, that have no
+   * frame above the threshold, or that have no zero crossing before the
+   * onset, are returned unchanged.
+   *
+   * @param pcm The sample
+   *
+   * @return The trimmed sample
+   */
+
+  public DustYardPCM apply(
+    final DustYardPCM pcm)
+  {
+    final var data = pcm.data();
+    final var frames = data.length / 2;
+
+    var peak = 0;
+    for (int frame = 0; frame < frames; ++frame) {
+      peak = Math.max(peak, Math.abs(sampleAt(data, frame)));
+    }
+    if (peak == 0) {
+      return pcm;
+    }
+
+    final var threshold =
+      peak * Math.pow(10.0, this.thresholdDecibels / 20.0);
+
+    var onset = 0;
+    while (onset < frames && Math.abs(sampleAt(data, onset)) <= threshold) {
+      ++onset;
+    }
+    if (onset == frames) {
+      return pcm;
+    }
+
+    final var start = zeroCrossingBefore(data, onset);
+    if (start <= 0) {
+      return pcm;
+    }
+
+    final var result = new byte[(frames - start) * 2];
+    System.arraycopy(data, start * 2, result, 0, result.length);
+    return new DustYardPCM(pcm.sampleRate(), result);
+  }
+
+  /**
+   * Find the last zero crossing at or before {@code onset}. Of the two
+   * frames either side of a crossing, the one closer to zero is returned.
+   */
+
+  private static int zeroCrossingBefore(
+    final byte[] data,
+    final int onset)
+  {
+    for (int frame = onset; frame > 0; --frame) {
+      final var current = sampleAt(data, frame);
+      final var previous = sampleAt(data, frame - 1);
+      if (previous == 0) {
+        return frame - 1;
+      }
+      if (Integer.signum(previous) != Integer.signum(current)) {
+        return Math.abs(previous) < Math.abs(current) ? frame - 1 : frame;
+      }
+    }
+    return 0;
+  }
+
+  private static int sampleAt(
+    final byte[] data,
+    final int frame)
+  {
+    return (data[frame * 2] & 0xff) | (data[frame * 2 + 1] << 8);
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A group of named tasks that either all succeed, or fail as soon as any one
+ * of them fails. When a task fails, the remaining tasks are cancelled.
+ */
+
+public final class DustYardTaskGroup
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(DustYardTaskGroup.class);
+
+  private final ExecutorCompletionService<Object> completion;
+  private final List<Future<Object>> futures;
+  private final Map<Future<Object>, String> names;
+
+  /**
+   * Create a task group.
+   *
+   * @param executor The executor used to run tasks
+   */
+
+  public DustYardTaskGroup(
+    final ExecutorService executor)
+  {
+    this.completion =
+      new ExecutorCompletionService<>(
+        Objects.requireNonNull(executor, "executor"));
+    this.futures =
+      new ArrayList<>();
+    this.names =
+      new HashMap<>();
+  }
+
+  /**
+   * Submit a task to the group.
+   *
+   * @param name The task name, used in error messages
+   * @param task The task
+   * @param <T>  The type of returned values
+   *
+   * @return The future result of the task
+   */
+
+  @SuppressWarnings("unchecked")
+  public <T> Future<T> submit(
+    final String name,
+    final Callable<T> task)
+  {
+    Objects.requireNonNull(name, "name");
+    Objects.requireNonNull(task, "task");
+
+    final var future =
+      this.completion.submit((Callable<Object>) task);
+
+    this.futures.add(future);
+    this.names.put(future, name);
+    return (Future<T>) future;
+  }
+
+  /**
+   * Wait for all submitted tasks to complete.
+   *
+   * @throws IOException If any task fails
+   */
+
+  public void await()
+    throws IOException
+  {
+    for (int index = 0; index < this.futures.size(); ++index) {
+      final Future<Object> future;
+      try {
+        future = this.completion.take();
+      } catch (final InterruptedException e) {
+        this.cancelAll();
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for tasks");
+      }
+
+      try {
+        future.get();
+      } catch (final InterruptedException e) {
+        this.cancelAll();
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for tasks");
+      } catch (final CancellationException e) {
+        this.cancelAll();
+        throw new IOException(
+          String.format("Task '%s' was cancelled", this.names.get(future)),
+          e
+        );
+      } catch (final ExecutionException e) {
+        this.cancelAll();
+        final var name = this.names.get(future);
+        final var cause = e.getCause();
+        LOG.error("task '{}' failed: {}", name, cause.getMessage());
+        throw new IOException(
+          String.format("Task '%s' failed: %s", name, cause.getMessage()),
+          cause
+        );
+      }
+    }
+  }
+
+  private void cancelAll()
+  {
+    for (final var future : this.futures) {
+      future.cancel(true);
+    }
+  }
+}
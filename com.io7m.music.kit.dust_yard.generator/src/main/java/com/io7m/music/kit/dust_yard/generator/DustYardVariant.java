@@ -0,0 +1,313 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An additional kit built from the same converted samples as the main kit.
+ * A variant may use a lower sample rate, fewer velocity layers, and fewer
+ * snare tautness kinds than the main kit.
+ *
+ * @param name           The variant name
+ * @param targetFile     The output soundfont file
+ * @param sampleRate     The rate to which samples are resampled, if any
+ * @param velocityLayers The maximum number of velocity layers per key, if any
+ * @param snareTautness  The snare tautness kinds included in the kit
+ */
+
+public record DustYardVariant(
+  String name,
+  Path targetFile,
+  OptionalInt sampleRate,
+  OptionalInt velocityLayers,
+  Set<DustYardSnareTautnessKind> snareTautness)
+{
+  /**
+   * An additional kit built from the same converted samples as the main kit.
+   *
+   * @param name           The variant name
+   * @param targetFile     The output soundfont file
+   * @param sampleRate     The rate to which samples are resampled, if any
+   * @param velocityLayers The maximum number of velocity layers per key, if
+   *                       any
+   * @param snareTautness  The snare tautness kinds included in the kit
+   */
+
+  public DustYardVariant
+  {
+    Objects.requireNonNull(name, "name");
+    Objects.requireNonNull(targetFile, "targetFile");
+    Objects.requireNonNull(sampleRate, "sampleRate");
+    Objects.requireNonNull(velocityLayers, "velocityLayers");
+    snareTautness = Set.copyOf(snareTautness);
+
+    if (sampleRate.isPresent() && sampleRate.getAsInt() <= 0) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Sample rate %d must be positive",
+          Integer.valueOf(sampleRate.getAsInt()))
+      );
+    }
+    if (velocityLayers.isPresent() && velocityLayers.getAsInt() <= 0) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Velocity layer count %d must be positive",
+          Integer.valueOf(velocityLayers.getAsInt()))
+      );
+    }
+    if (snareTautness.isEmpty()) {
+      throw new IllegalArgumentException(
+        "At least one snare tautness kind must be included");
+    }
+  }
+
+  /**
+   * Parse a variant. The syntax is {@code name:key=value,...}, where the
+   * keys are {@code target} (required), {@code sample-rate},
+   * {@code velocity-layers}, and {@code snare-tautness}. The snare tautness
+   * kinds are given as a {@code +} separated list of {@code off},
+   * {@code loose}, and {@code tight}.
+   *
+   * @param text The text
+   *
+   * @return A variant
+   */
+
+  public static DustYardVariant parse(
+    final String text)
+  {
+    final var separator = text.indexOf(':');
+    if (separator <= 0) {
+      throw new IllegalArgumentException(
+        String.format("Variant %s must be of the form name:key=value,...", text)
+      );
+    }
+
+    final var name = text.substring(0, separator);
+    Path target = null;
+    var sampleRate = OptionalInt.empty();
+    var velocityLayers = OptionalInt.empty();
+    var tautness = EnumSet.allOf(DustYardSnareTautnessKind.class);
+
+    for (final var parameter : text.substring(separator + 1).split(",")) {
+      final var equals = parameter.indexOf('=');
+      if (equals < 0) {
+        throw new IllegalArgumentException(
+          String.format("Variant parameter %s must be of the form key=value", parameter)
+        );
+      }
+
+      final var key = parameter.substring(0, equals).trim();
+      final var value = parameter.substring(equals + 1).trim();
+      switch (key) {
+        case "target": {
+          target = Paths.get(value);
+          break;
+        }
+        case "sample-rate": {
+          sampleRate = OptionalInt.of(Integer.parseInt(value));
+          break;
+        }
+        case "velocity-layers": {
+          velocityLayers = OptionalInt.of(Integer.parseInt(value));
+          break;
+        }
+        case "snare-tautness": {
+          tautness = EnumSet.noneOf(DustYardSnareTautnessKind.class);
+          for (final var kind : value.split("\\+")) {
+            tautness.add(
+              DustYardSnareTautnessKind.valueOf(
+                "SNARES_" + kind.trim().toUpperCase(Locale.ROOT)));
+          }
+          break;
+        }
+        default: {
+          throw new IllegalArgumentException(
+            String.format("Unrecognized variant parameter: %s", key)
+          );
+        }
+      }
+    }
+
+    if (target == null) {
+      throw new IllegalArgumentException(
+        String.format("Variant %s requires a target file", name)
+      );
+    }
+    return new DustYardVariant(name, target, sampleRate, velocityLayers, tautness);
+  }
+
+  /**
+   * Select the snare samples included in the variant.
+   *
+   * @param snare The snare samples of the main kit
+   *
+   * @return The snare samples of the variant
+   */
+
+  public DustYardSnare snare(
+    final DustYardSnare snare)
+  {
+    final var output =
+      new EnumMap<DustYardSnareTautnessKind, DustYardSnareTautnessFiles>(
+        DustYardSnareTautnessKind.class
+      );
+
+    for (final var tautnessEntry : snare.snare().entrySet()) {
+      final var tautnessKind = tautnessEntry.getKey();
+      if (!this.snareTautness.contains(tautnessKind)) {
+        continue;
+      }
+
+      final var tautnessFiles = new DustYardSnareTautnessFiles();
+      for (final var strikeEntry : tautnessEntry.getValue().filesByKind().entrySet()) {
+        final var strikeFiles = new DustYardSnareStrikeFiles();
+        strikeFiles.filesByVelocity()
+          .putAll(this.velocities(strikeEntry.getValue().filesByVelocity()));
+        tautnessFiles.filesByKind().put(strikeEntry.getKey(), strikeFiles);
+      }
+      output.put(tautnessKind, tautnessFiles);
+    }
+    return new DustYardSnare(output);
+  }
+
+  /**
+   * Select the bass drum samples included in the variant.
+   *
+   * @param bassDrum The bass drum samples of the main kit
+   *
+   * @return The bass drum samples of the variant
+   */
+
+  public DustYardBassDrum bassDrum(
+    final DustYardBassDrum bassDrum)
+  {
+    return new DustYardBassDrum(this.velocities(bassDrum.byVelocity()));
+  }
+
+  /**
+   * Select the splash samples included in the variant.
+   *
+   * @param splash The splash samples of the main kit
+   *
+   * @return The splash samples of the variant
+   */
+
+  public DustYardSplash splash(
+    final DustYardSplash splash)
+  {
+    final SortedMap<String, SortedMap<Integer, Path>> output = new TreeMap<>();
+    for (final var entry : splash.files().entrySet()) {
+      output.put(entry.getKey(), this.velocities(entry.getValue()));
+    }
+    return new DustYardSplash(output);
+  }
+
+  /**
+   * Select at most the configured number of velocity layers, spread evenly
+   * from the softest to the loudest. A single layer keeps the loudest.
+   */
+
+  private SortedMap<Integer, Path> velocities(
+    final SortedMap<Integer, Path> byVelocity)
+  {
+    final var count = byVelocity.size();
+    if (this.velocityLayers.isEmpty()
+      || this.velocityLayers.getAsInt() >= count) {
+      return new TreeMap<>(byVelocity);
+    }
+
+    final var layers = this.velocityLayers.getAsInt();
+    final var keys = new ArrayList<>(byVelocity.keySet());
+    final var output = new TreeMap<Integer, Path>();
+    for (int layer = 0; layer < layers; ++layer) {
+      final var index =
+        layers == 1
+          ? count - 1
+          : (int) Math.round((layer * (count - 1.0)) / (layers - 1.0));
+      final var key = keys.get(index);
+      output.put(key, byVelocity.get(key));
+    }
+    return output;
+  }
+
+  /**
+   * Obtain sample sources for the variant. Samples are taken from the given
+   * store, which is left unchanged, and resampled if the variant has a
+   * sample rate that differs from that of the stored samples.
+   *
+   * @param store The store holding the samples of the main kit
+   * @param kind  The kind of storage used for resampled samples
+   *
+   * @return A function that obtains sources for the variant
+   */
+
+  public DustYardSampleSourcesType sources(
+    final DustYardSampleStore store,
+    final DustYardSampleBufferKind kind)
+  {
+    Objects.requireNonNull(store, "store");
+    Objects.requireNonNull(kind, "kind");
+
+    final var resident =
+      store.sources(DustYardSampleLoading.EAGER);
+    if (this.sampleRate.isEmpty()) {
+      return resident;
+    }
+
+    final var targetRate =
+      this.sampleRate.getAsInt();
+    final var resampled =
+      new DustYardSampleStore(kind);
+    final var resamplers =
+      new ConcurrentHashMap<Integer, DustYardResampler>();
+
+    return file -> {
+      final var source = resident.source(file);
+      final var rate = (int) source.sampleRate();
+      if (rate == targetRate) {
+        return source;
+      }
+
+      final var pcm =
+        new DustYardPCM(
+          (float) source.sampleRate(),
+          DustYardSampleEncoding.encode16(source.load()).array()
+        );
+      final var resampler =
+        resamplers.computeIfAbsent(
+          Integer.valueOf(rate),
+          key -> DustYardResampler.create(key.intValue(), targetRate)
+        );
+
+      resampled.put(file, resampler.apply(pcm));
+      return resampled.source(file, DustYardSampleLoading.EAGER);
+    };
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import java.util.Objects;
+
+/**
+ * The plan of a variant of the kit.
+ *
+ * @param name           The variant name
+ * @param font           The plan of the variant soundfont
+ * @param retainedMemory The estimated size in bytes of the resampled sample
+ *                       data held in memory by the variant
+ */
+
+public record DustYardVariantPlan(
+  String name,
+  DustYardFontPlan font,
+  long retainedMemory)
+{
+  /**
+   * The plan of a variant of the kit.
+   *
+   * @param name           The variant name
+   * @param font           The plan of the variant soundfont
+   * @param retainedMemory The estimated size in bytes of the resampled sample
+   *                       data held in memory by the variant
+   */
+
+  public DustYardVariantPlan
+  {
+    Objects.requireNonNull(name, "name");
+    Objects.requireNonNull(font, "font");
+  }
+}
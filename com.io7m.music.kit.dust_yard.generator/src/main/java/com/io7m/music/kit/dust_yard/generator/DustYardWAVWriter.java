@@ -0,0 +1,231 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.generator;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A streaming WAV writer.
+ *
+ * <p>The writer emits a header with placeholder sizes, copies the PCM data
+ * through a fixed-size buffer, and then seeks back to fill in the sizes.
+ * The length of the stream does not need to be known in advance, and the
+ * memory used does not depend on the length of the stream.</p>
+ */
+
+public final class DustYardWAVWriter
+{
+  private static final int HEADER_SIZE = 44;
+  private static final int BUFFER_SIZE = 65536;
+  private static final long MAXIMUM_DATA_SIZE = 0xffff_ffffL - (HEADER_SIZE - 8);
+
+  private DustYardWAVWriter()
+  {
+
+  }
+
+  /**
+   * Write the given sample to a WAV file.
+   *
+   * @param pcm  The sample
+   * @param file The output file
+   *
+   * @throws IOException On errors
+   */
+
+  public static void write(
+    final DustYardPCM pcm,
+    final Path file)
+    throws IOException
+  {
+    Objects.requireNonNull(pcm, "pcm");
+
+    write(
+      new AudioInputStream(
+        new ByteArrayInputStream(pcm.data()),
+        pcm.format(),
+        pcm.frames()),
+      file
+    );
+  }
+
+  /**
+   * Write the given stream to a WAV file. The stream must contain signed
+   * little-endian PCM data of at least 16 bits, or unsigned 8-bit PCM data.
+   *
+   * @param stream The stream
+   * @param file   The output file
+   *
+   * @return The number of bytes of PCM data written
+   *
+   * @throws IOException On errors
+   */
+
+  public static long write(
+    final AudioInputStream stream,
+    final Path file)
+    throws IOException
+  {
+    Objects.requireNonNull(stream, "stream");
+    Objects.requireNonNull(file, "file");
+
+    final var format = stream.getFormat();
+    checkFormat(format);
+
+    try (var output = new Output(file)) {
+      final var bytes = new byte[BUFFER_SIZE];
+      while (true) {
+        final var r = stream.read(bytes);
+        if (r == -1) {
+          break;
+        }
+        output.write(bytes, 0, r);
+      }
+      return output.finish(format);
+    }
+  }
+
+  private static void checkFormat(
+    final AudioFormat format)
+    throws IOException
+  {
+    final var encoding = format.getEncoding();
+    final var bits = format.getSampleSizeInBits();
+
+    /*
+     * WAV files store 8-bit samples as unsigned values, and larger samples
+     * as signed values.
+     */
+
+    final var signedLE =
+      Objects.equals(encoding, AudioFormat.Encoding.PCM_SIGNED)
+        && bits > 8
+        && !format.isBigEndian();
+    final var unsigned8 =
+      Objects.equals(encoding, AudioFormat.Encoding.PCM_UNSIGNED) && bits == 8;
+
+    if (!(signedLE || unsigned8) || bits % 8 != 0 || format.getChannels() < 1) {
+      throw new IOException(
+        String.format("Unsupported audio format: %s", format));
+    }
+  }
+
+  private static ByteBuffer header(
+    final AudioFormat format,
+    final long dataSize)
+  {
+    final var channels = format.getChannels();
+    final var bits = format.getSampleSizeInBits();
+    final var rate = Math.round(format.getSampleRate());
+    final var blockAlign = channels * (bits / 8);
+
+    final var buffer =
+      ByteBuffer.allocate(HEADER_SIZE).order(LITTLE_ENDIAN);
+
+    buffer.put((byte) 'R').put((byte) 'I').put((byte) 'F').put((byte) 'F');
+    buffer.putInt((int) (HEADER_SIZE - 8 + dataSize + (dataSize % 2L)));
+    buffer.put((byte) 'W').put((byte) 'A').put((byte) 'V').put((byte) 'E');
+    buffer.put((byte) 'f').put((byte) 'm').put((byte) 't').put((byte) ' ');
+    buffer.putInt(16);
+    buffer.putShort((short) 1);
+    buffer.putShort((short) channels);
+    buffer.putInt(rate);
+    buffer.putInt(rate * blockAlign);
+    buffer.putShort((short) blockAlign);
+    buffer.putShort((short) bits);
+    buffer.put((byte) 'd').put((byte) 'a').put((byte) 't').put((byte) 'a');
+    buffer.putInt((int) dataSize);
+    return buffer.flip();
+  }
+
+  /**
+   * A WAV file that is written incrementally. The header is written when
+   * the file is finished, so the format and length of the data do not need
+   * to be known in advance.
+   */
+
+  static final class Output implements Closeable
+  {
+    private final Path file;
+    private final FileChannel channel;
+    private long dataSize;
+
+    Output(
+      final Path inFile)
+      throws IOException
+    {
+      this.file = Objects.requireNonNull(inFile, "file");
+      this.channel = FileChannel.open(inFile, CREATE, TRUNCATE_EXISTING, WRITE);
+      DustYardSampleEncoding.writeFully(
+        this.channel, ByteBuffer.allocate(HEADER_SIZE));
+    }
+
+    void write(
+      final byte[] bytes,
+      final int offset,
+      final int length)
+      throws IOException
+    {
+      this.dataSize += length;
+      if (this.dataSize > MAXIMUM_DATA_SIZE) {
+        throw new IOException(
+          String.format("%s: Data is too large for a WAV file", this.file));
+      }
+      DustYardSampleEncoding.writeFully(
+        this.channel, ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    long finish(
+      final AudioFormat format)
+      throws IOException
+    {
+      checkFormat(format);
+
+      /*
+       * RIFF chunks are padded to an even size.
+       */
+
+      if (this.dataSize % 2L != 0L) {
+        DustYardSampleEncoding.writeFully(this.channel, ByteBuffer.allocate(1));
+      }
+
+      DustYardSampleEncoding.writeFullyAt(
+        this.channel, header(format, this.dataSize), 0L);
+      return this.dataSize;
+    }
+
+    @Override
+    public void close()
+      throws IOException
+    {
+      this.channel.close();
+    }
+  }
+}
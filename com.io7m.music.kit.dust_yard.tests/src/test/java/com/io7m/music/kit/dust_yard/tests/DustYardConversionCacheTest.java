@@ -0,0 +1,300 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.tests;
+
+import com.io7m.music.kit.dust_yard.generator.DustYardConversionCache;
+import com.io7m.music.kit.dust_yard.generator.DustYardPCM;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class DustYardConversionCacheTest
+{
+  private static final String PARAMETERS = "test";
+
+  /**
+   * The size of the header of each cache entry.
+   */
+
+  private static final int HEADER_SIZE = 24;
+
+  @TempDir
+  private Path directory;
+
+  private Path source(
+    final String name,
+    final String content)
+    throws IOException
+  {
+    final var file = this.directory.resolve(name);
+    Files.writeString(file, content);
+    return file;
+  }
+
+  private static DustYardPCM pcm(
+    final int frames,
+    final int seed)
+  {
+    final var data = new byte[frames * 2];
+    for (int index = 0; index < data.length; ++index) {
+      data[index] = (byte) (index * 31 + seed);
+    }
+    return new DustYardPCM(48000.0f, data);
+  }
+
+  private static List<Path> entries(
+    final Path cacheDirectory)
+    throws IOException
+  {
+    try (var stream = Files.walk(cacheDirectory)) {
+      return stream.filter(p -> p.toString().endsWith(".pcm"))
+        .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * A key that has never been stored is not found.
+   */
+
+  @Test
+  public void testMiss()
+    throws IOException
+  {
+    final var cache =
+      DustYardConversionCache.open(this.directory.resolve("cache"), 1_000_000L);
+    final var key =
+      cache.keyOf(this.source("a.flac", "a"), PARAMETERS);
+
+    assertTrue(cache.find(key).isEmpty());
+  }
+
+  /**
+   * A stored entry is found with identical contents, including after the
+   * cache is reopened.
+   */
+
+  @Test
+  public void testHit()
+    throws IOException
+  {
+    final var cacheDirectory = this.directory.resolve("cache");
+    final var cache =
+      DustYardConversionCache.open(cacheDirectory, 1_000_000L);
+    final var key =
+      cache.keyOf(this.source("a.flac", "a"), PARAMETERS);
+    final var pcm = pcm(100, 1);
+
+    cache.put(key, pcm);
+
+    final var found = cache.find(key).orElseThrow();
+    assertEquals(48000.0, found.sampleRate(), 0.0);
+    assertArrayEquals(pcm.data(), found.data());
+
+    final var reopened =
+      DustYardConversionCache.open(cacheDirectory, 1_000_000L);
+    assertArrayEquals(pcm.data(), reopened.find(key).orElseThrow().data());
+  }
+
+  /**
+   * Keys depend on both the source contents and the conversion parameters.
+   */
+
+  @Test
+  public void testKeys()
+    throws IOException
+  {
+    final var cache =
+      DustYardConversionCache.open(this.directory.resolve("cache"), 1_000_000L);
+    final var a = this.source("a.flac", "a");
+    final var b = this.source("b.flac", "b");
+    final var aCopy = this.source("c.flac", "a");
+
+    assertEquals(cache.keyOf(a, PARAMETERS), cache.keyOf(aCopy, PARAMETERS));
+    assertNotEquals(cache.keyOf(a, PARAMETERS), cache.keyOf(b, PARAMETERS));
+    assertNotEquals(cache.keyOf(a, PARAMETERS), cache.keyOf(a, "other"));
+  }
+
+  /**
+   * An entry with a corrupted header is discarded and deleted.
+   */
+
+  @Test
+  public void testCorruptHeader()
+    throws IOException
+  {
+    final var cacheDirectory = this.directory.resolve("cache");
+    final var cache =
+      DustYardConversionCache.open(cacheDirectory, 1_000_000L);
+    final var key =
+      cache.keyOf(this.source("a.flac", "a"), PARAMETERS);
+
+    cache.put(key, pcm(100, 1));
+
+    final var entry = entries(cacheDirectory).get(0);
+    final var data = Files.readAllBytes(entry);
+    data[0] = (byte) (data[0] ^ 0xff);
+    Files.write(entry, data);
+
+    assertTrue(cache.find(key).isEmpty());
+    assertFalse(Files.exists(entry));
+  }
+
+  /**
+   * An entry whose payload does not match its checksum is discarded and
+   * deleted.
+   */
+
+  @Test
+  public void testCorruptChecksum()
+    throws IOException
+  {
+    final var cacheDirectory = this.directory.resolve("cache");
+    final var cache =
+      DustYardConversionCache.open(cacheDirectory, 1_000_000L);
+    final var key =
+      cache.keyOf(this.source("a.flac", "a"), PARAMETERS);
+
+    cache.put(key, pcm(100, 1));
+
+    final var entry = entries(cacheDirectory).get(0);
+    final var data = Files.readAllBytes(entry);
+    data[HEADER_SIZE + 10] = (byte) (data[HEADER_SIZE + 10] ^ 0x01);
+    Files.write(entry, data);
+
+    assertTrue(cache.find(key).isEmpty());
+    assertFalse(Files.exists(entry));
+  }
+
+  /**
+   * A truncated entry, such as one left behind by a killed build, is
+   * discarded.
+   */
+
+  @Test
+  public void testTruncated()
+    throws IOException
+  {
+    final var cacheDirectory = this.directory.resolve("cache");
+    final var cache =
+      DustYardConversionCache.open(cacheDirectory, 1_000_000L);
+    final var key =
+      cache.keyOf(this.source("a.flac", "a"), PARAMETERS);
+
+    cache.put(key, pcm(100, 1));
+
+    final var entry = entries(cacheDirectory).get(0);
+    final var data = Files.readAllBytes(entry);
+    Files.write(entry, Arrays.copyOf(data, data.length - 7));
+
+    assertTrue(cache.find(key).isEmpty());
+  }
+
+  /**
+   * Temporary files left behind by interrupted builds are deleted when the
+   * cache is opened.
+   */
+
+  @Test
+  public void testStaleTemporaryFiles()
+    throws IOException
+  {
+    final var cacheDirectory = this.directory.resolve("cache");
+    Files.createDirectories(cacheDirectory.resolve("ab"));
+    final var stale = cacheDirectory.resolve("ab").resolve("ab00-x.tmp");
+    Files.writeString(stale, "stale");
+
+    DustYardConversionCache.open(cacheDirectory, 1_000_000L);
+    assertFalse(Files.exists(stale));
+  }
+
+  /**
+   * When the cache exceeds its maximum size, the least recently used
+   * entries are evicted. Finding an entry counts as using it.
+   */
+
+  @Test
+  public void testEviction()
+    throws IOException
+  {
+    final var cacheDirectory = this.directory.resolve("cache");
+    final var entrySize = HEADER_SIZE + 200;
+    final var cache =
+      DustYardConversionCache.open(cacheDirectory, entrySize * 2L);
+
+    final var keyA = cache.keyOf(this.source("a.flac", "a"), PARAMETERS);
+    final var keyB = cache.keyOf(this.source("b.flac", "b"), PARAMETERS);
+    final var keyC = cache.keyOf(this.source("c.flac", "c"), PARAMETERS);
+
+    cache.put(keyA, pcm(100, 1));
+    cache.put(keyB, pcm(100, 2));
+    assertEquals(2L, entries(cacheDirectory).size());
+
+    /*
+     * Make both entries old, with A older than B, and then use A.
+     */
+
+    final var past = Instant.now().minusSeconds(3600L);
+    for (final var entry : entries(cacheDirectory)) {
+      final var name = entry.getFileName().toString();
+      Files.setLastModifiedTime(
+        entry,
+        FileTime.from(name.startsWith(keyA) ? past : past.plusSeconds(60L))
+      );
+    }
+    assertTrue(cache.find(keyA).isPresent());
+
+    cache.put(keyC, pcm(100, 3));
+
+    assertEquals(2L, entries(cacheDirectory).size());
+    assertTrue(cache.find(keyA).isPresent());
+    assertTrue(cache.find(keyB).isEmpty());
+    assertTrue(cache.find(keyC).isPresent());
+  }
+
+  /**
+   * Opening a cache with a smaller maximum size evicts entries immediately.
+   */
+
+  @Test
+  public void testEvictionOnOpen()
+    throws IOException
+  {
+    final var cacheDirectory = this.directory.resolve("cache");
+    final var cache =
+      DustYardConversionCache.open(cacheDirectory, 1_000_000L);
+
+    cache.put(cache.keyOf(this.source("a.flac", "a"), PARAMETERS), pcm(100, 1));
+    cache.put(cache.keyOf(this.source("b.flac", "b"), PARAMETERS), pcm(100, 2));
+
+    DustYardConversionCache.open(cacheDirectory, HEADER_SIZE + 200L);
+    assertEquals(1L, entries(cacheDirectory).size());
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.tests;
+
+import com.io7m.jnoisetype.writer.api.NTBuilderProviderType;
+import com.io7m.music.kit.dust_yard.generator.DustYard;
+import com.io7m.music.kit.dust_yard.generator.DustYardClient;
+import com.io7m.music.kit.dust_yard.generator.DustYardDaemon;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class DustYardDaemonTest
+{
+  @TempDir
+  private Path directory;
+
+  private Path socket;
+  private DustYardDaemon daemon;
+  private Thread thread;
+
+  /**
+   * A builder provider that fails every build that reaches it.
+   */
+
+  private static NTBuilderProviderType failingBuilders()
+  {
+    return (NTBuilderProviderType) Proxy.newProxyInstance(
+      DustYardDaemonTest.class.getClassLoader(),
+      new Class<?>[]{NTBuilderProviderType.class},
+      (proxy, method, args) -> {
+        throw new IllegalStateException("Builders are\nunavailable");
+      }
+    );
+  }
+
+  /**
+   * Send the given request lines, and return the first line of the
+   * response. Nothing more is sent after the given lines.
+   */
+
+  private static String request(
+    final Path socketFile,
+    final List<String> lines)
+    throws IOException
+  {
+    try (var channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      channel.connect(UnixDomainSocketAddress.of(socketFile));
+
+      final var writer =
+        new BufferedWriter(
+          new OutputStreamWriter(Channels.newOutputStream(channel), UTF_8));
+      final var reader =
+        new BufferedReader(
+          new InputStreamReader(Channels.newInputStream(channel), UTF_8));
+
+      for (final var line : lines) {
+        writer.write(line);
+        writer.newLine();
+      }
+      writer.flush();
+      channel.shutdownOutput();
+      return reader.readLine();
+    }
+  }
+
+  private static SocketChannel connect(
+    final Path socketFile)
+    throws IOException
+  {
+    final var channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+    channel.connect(UnixDomainSocketAddress.of(socketFile));
+    return channel;
+  }
+
+  private void start(
+    final NTBuilderProviderType builders)
+    throws IOException
+  {
+    final var opened =
+      DustYardDaemon.open(this.socket, builders, DustYard.writerProvider());
+
+    this.daemon = opened;
+    this.thread = new Thread(() -> {
+      try {
+        opened.run();
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    this.thread.start();
+  }
+
+  /**
+   * A request whose arguments cannot be parsed; the daemon answers it
+   * without running a build.
+   */
+
+  private String unrecognized()
+    throws IOException
+  {
+    return request(
+      this.socket,
+      List.of(
+        this.directory.toString(),
+        "source",
+        "temporary",
+        "target.sf2",
+        "nope",
+        ""
+      )
+    );
+  }
+
+  @BeforeEach
+  public void setup()
+  {
+    this.socket = this.directory.resolve("daemon.sock");
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws Exception
+  {
+    if (this.daemon != null) {
+      this.daemon.close();
+      this.thread.join(10_000L);
+    }
+  }
+
+  /**
+   * Arguments that cannot be parsed produce an error response carrying the
+   * parser's message.
+   */
+
+  @Test
+  public void testUnrecognizedArgument()
+    throws IOException
+  {
+    this.start(DustYard.builderProvider());
+    assertEquals("ERROR Unrecognized argument: nope", this.unrecognized());
+  }
+
+  /**
+   * The client reports an error response as a failed build.
+   */
+
+  @Test
+  public void testClientError()
+    throws IOException
+  {
+    this.start(DustYard.builderProvider());
+
+    final var ex = assertThrows(IOException.class, () -> {
+      DustYardClient.build(this.socket, this.directory, List.of("source"));
+    });
+    assertTrue(
+      ex.getMessage().startsWith("Build failed: usage: "),
+      ex.getMessage());
+  }
+
+  /**
+   * A build that fails produces an error response whose message is kept on
+   * a single line, and the daemon goes on serving requests.
+   */
+
+  @Test
+  public void testBuildFailure()
+    throws IOException
+  {
+    Files.createDirectories(this.directory.resolve("source"));
+    this.start(failingBuilders());
+
+    final var request =
+      List.of(
+        this.directory.toString(),
+        "source",
+        "temporary",
+        "target.sf2",
+        "--plan",
+        "--index",
+        ""
+      );
+
+    assertEquals("ERROR Builders are unavailable", request(this.socket, request));
+    assertEquals("ERROR Builders are unavailable", request(this.socket, request));
+  }
+
+  /**
+   * Connections that send nothing, or that end part way through a request,
+   * do not stop the daemon.
+   */
+
+  @Test
+  public void testIncompleteRequests()
+    throws IOException
+  {
+    this.start(DustYard.builderProvider());
+
+    connect(this.socket).close();
+    assertEquals(null, request(this.socket, List.of(this.directory.toString())));
+    assertEquals("ERROR Unrecognized argument: nope", this.unrecognized());
+  }
+
+  /**
+   * A client that stalls while sending its request does not prevent other
+   * clients from being served.
+   */
+
+  @Test
+  public void testStalledClient()
+    throws IOException
+  {
+    this.start(DustYard.builderProvider());
+
+    try (var stalled = connect(this.socket)) {
+      assertTrue(stalled.isConnected());
+      assertEquals("ERROR Unrecognized argument: nope", this.unrecognized());
+      assertEquals("ERROR Unrecognized argument: nope", this.unrecognized());
+    }
+  }
+
+  /**
+   * A second daemon refuses to replace the socket of a running daemon, and
+   * the running daemon is unaffected.
+   */
+
+  @Test
+  public void testAlreadyRunning()
+    throws IOException
+  {
+    this.start(DustYard.builderProvider());
+
+    final var ex = assertThrows(IOException.class, () -> {
+      DustYardDaemon.open(
+        this.socket,
+        DustYard.builderProvider(),
+        DustYard.writerProvider()
+      );
+    });
+    assertTrue(ex.getMessage().contains("already listening"), ex.getMessage());
+    assertEquals("ERROR Unrecognized argument: nope", this.unrecognized());
+  }
+
+  /**
+   * The socket of a daemon that is no longer running is replaced.
+   */
+
+  @Test
+  public void testStaleSocket()
+    throws IOException
+  {
+    try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      server.bind(UnixDomainSocketAddress.of(this.socket));
+    }
+    assertTrue(Files.exists(this.socket));
+
+    this.start(DustYard.builderProvider());
+    assertEquals("ERROR Unrecognized argument: nope", this.unrecognized());
+  }
+
+  /**
+   * A file that is not a socket is never replaced.
+   */
+
+  @Test
+  public void testNotSocket()
+    throws IOException
+  {
+    Files.writeString(this.socket, "data");
+
+    final var ex = assertThrows(IOException.class, () -> {
+      DustYardDaemon.open(
+        this.socket,
+        DustYard.builderProvider(),
+        DustYard.writerProvider()
+      );
+    });
+    assertTrue(ex.getMessage().contains("not a socket"), ex.getMessage());
+    assertEquals("data", Files.readString(this.socket));
+  }
+
+  /**
+   * Only the owner can use the socket, and no temporary files are left
+   * behind. The socket is removed when the daemon is closed.
+   */
+
+  @Test
+  public void testSocketFile()
+    throws Exception
+  {
+    this.start(DustYard.builderProvider());
+
+    try (var files = Files.list(this.directory)) {
+      assertEquals(List.of(this.socket), files.toList());
+    }
+    if (Files.getFileStore(this.socket).supportsFileAttributeView("posix")) {
+      assertEquals(
+        PosixFilePermissions.fromString("rw-------"),
+        Files.getPosixFilePermissions(this.socket)
+      );
+    }
+
+    this.daemon.close();
+    this.thread.join(10_000L);
+    this.daemon = null;
+    assertTrue(!Files.exists(this.socket));
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.tests;
+
+import com.io7m.music.kit.dust_yard.generator.DustYardEndTrim;
+import com.io7m.music.kit.dust_yard.generator.DustYardPCM;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class DustYardEndTrimTest
+{
+  private static final float RATE = 8000.0f;
+
+  static DustYardPCM pcm(
+    final int... samples)
+  {
+    final var buffer =
+      ByteBuffer.allocate(samples.length * 2).order(LITTLE_ENDIAN);
+    for (final var sample : samples) {
+      buffer.putShort((short) sample);
+    }
+    return new DustYardPCM(RATE, buffer.array());
+  }
+
+  static int[] samples(
+    final DustYardPCM pcm)
+  {
+    final var buffer = ByteBuffer.wrap(pcm.data()).order(LITTLE_ENDIAN);
+    final var result = new int[pcm.data().length / 2];
+    for (int index = 0; index < result.length; ++index) {
+      result[index] = buffer.getShort();
+    }
+    return result;
+  }
+
+  /**
+   * A threshold of 0dB would treat every frame as silence, so only negative
+   * thresholds are accepted.
+   */
+
+  @Test
+  public void testThresholdInvalid()
+  {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DustYardEndTrim(0.0, 0.0);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DustYardEndTrim(3.0, 0.0);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DustYardEndTrim(Double.NaN, 0.0);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DustYardEndTrim(Double.NEGATIVE_INFINITY, 0.0);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DustYardEndTrim(-60.0, -1.0);
+    });
+  }
+
+  /**
+   * Silent samples, and samples that are loud up to their last frame, are
+   * returned unchanged.
+   */
+
+  @Test
+  public void testUnchanged()
+  {
+    final var trim = new DustYardEndTrim(-60.0, 1.0);
+
+    final var silent = pcm(0, 0, 0, 0);
+    assertSame(silent, trim.apply(silent));
+
+    final var loud = pcm(1000, -1000, 1000, -1000);
+    assertSame(loud, trim.apply(loud));
+  }
+
+  /**
+   * Frames after the last frame above the threshold are removed, and
+   * nothing is faded when the fade is empty.
+   */
+
+  @Test
+  public void testTrim()
+  {
+    final var trim = new DustYardEndTrim(-60.0, 0.0);
+    final var result = trim.apply(pcm(1000, -1000, 500, 1, -1, 0, 1, 0));
+
+    assertEquals(RATE, result.sampleRate());
+    assertArrayEquals(new int[]{1000, -1000, 500}, samples(result));
+  }
+
+  /**
+   * The fade keeps the frames after the end, scaled down to silence.
+   */
+
+  @Test
+  public void testFade()
+  {
+    final var trim = new DustYardEndTrim(-20.0, 0.5);
+    final var result =
+      trim.apply(pcm(1000, -1000, 80, 80, 80, 80, 80, 80, 80, 80));
+
+    assertArrayEquals(new int[]{1000, -1000, 60, 40, 20, 0}, samples(result));
+  }
+
+  /**
+   * A threshold just below the peak keeps only the loudest frame when it is
+   * the first frame, rather than running off the start of the sample.
+   */
+
+  @Test
+  public void testPeakAtStart()
+  {
+    final var trim = new DustYardEndTrim(-0.01, 0.0);
+    final var result = trim.apply(pcm(1000, 900, 800, 700));
+
+    assertArrayEquals(new int[]{1000}, samples(result));
+  }
+}
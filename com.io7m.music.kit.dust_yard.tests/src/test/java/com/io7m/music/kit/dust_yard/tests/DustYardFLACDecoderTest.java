@@ -0,0 +1,261 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.tests;
+
+import com.io7m.music.kit.dust_yard.generator.DustYardDownmix;
+import com.io7m.music.kit.dust_yard.generator.DustYardFLACDecoder;
+import com.io7m.music.kit.dust_yard.generator.DustYardFLACToMono16;
+import com.io7m.music.kit.dust_yard.generator.DustYardPCM;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class DustYardFLACDecoderTest
+{
+  private static final int SAMPLE_RATE = 44100;
+  private static final int FRAMES = 10000;
+
+  @TempDir
+  private Path directory;
+
+  /**
+   * @return Interleaved samples in which each channel has a different phase
+   */
+
+  private static int[] samples(
+    final int channels,
+    final int bits)
+  {
+    final var maximum = (1 << (bits - 1)) - 1;
+    final var samples = new int[FRAMES * channels];
+    for (int frame = 0; frame < FRAMES; ++frame) {
+      for (int channel = 0; channel < channels; ++channel) {
+        final var value = 0.8 * Math.sin(frame * 0.013 + channel * 1.7);
+        samples[frame * channels + channel] =
+          (int) Math.round(value * maximum);
+      }
+    }
+    return samples;
+  }
+
+  private Path flac(
+    final int[] samples,
+    final int channels,
+    final int bits)
+    throws IOException
+  {
+    final var file =
+      this.directory.resolve(String.format("%d-%d.flac", channels, bits));
+    Files.write(
+      file, DustYardTestFLAC.encode(samples, channels, bits, SAMPLE_RATE));
+    return file;
+  }
+
+  private static DustYardPCM javax(
+    final Path file)
+    throws IOException, UnsupportedAudioFileException
+  {
+    try (var stream = DustYardFLACToMono16.readAs16Mono(file)) {
+      return DustYardPCM.of(stream);
+    }
+  }
+
+  private static short[] shorts(
+    final DustYardPCM pcm)
+  {
+    final var result = new short[pcm.data().length / 2];
+    ByteBuffer.wrap(pcm.data())
+      .order(LITTLE_ENDIAN)
+      .asShortBuffer()
+      .get(result);
+    return result;
+  }
+
+  private static void assertClose(
+    final DustYardPCM expected,
+    final DustYardPCM received,
+    final int tolerance)
+  {
+    assertEquals(expected.sampleRate(), received.sampleRate(), 0.0);
+
+    final var expectedShorts = shorts(expected);
+    final var receivedShorts = shorts(received);
+    assertEquals(expectedShorts.length, receivedShorts.length);
+
+    for (int index = 0; index < expectedShorts.length; ++index) {
+      final var difference =
+        Math.abs(expectedShorts[index] - receivedShorts[index]);
+      assertTrue(
+        difference <= tolerance,
+        String.format(
+          "Sample %d: |%d - %d| > %d",
+          Integer.valueOf(index),
+          Short.valueOf(expectedShorts[index]),
+          Short.valueOf(receivedShorts[index]),
+          Integer.valueOf(tolerance))
+      );
+    }
+  }
+
+  /**
+   * 16-bit mono files decode to exactly the same PCM as through javax.sound.
+   */
+
+  @Test
+  public void testMono16()
+    throws Exception
+  {
+    final var file = this.flac(samples(1, 16), 1, 16);
+    final var expected = javax(file);
+    final var received = DustYardFLACDecoder.decode(file);
+
+    assertEquals(FRAMES * 2, received.data().length);
+    assertEquals(expected.sampleRate(), received.sampleRate(), 0.0);
+    assertArrayEquals(expected.data(), received.data());
+  }
+
+  /**
+   * Stereo files are averaged, as they are through javax.sound, to within
+   * the rounding of the final sample.
+   */
+
+  @Test
+  public void testStereo16()
+    throws Exception
+  {
+    final var file = this.flac(samples(2, 16), 2, 16);
+    assertClose(javax(file), DustYardFLACDecoder.decode(file), 1);
+  }
+
+  /**
+   * 24-bit files are reduced to 16 bits. javax.sound scales through float
+   * and truncates, so results can differ by a little more than rounding.
+   */
+
+  @Test
+  public void testStereo24()
+    throws Exception
+  {
+    final var file = this.flac(samples(2, 24), 2, 24);
+    assertClose(javax(file), DustYardFLACDecoder.decode(file), 2);
+  }
+
+  /**
+   * 8-bit files are widened to 16 bits.
+   */
+
+  @Test
+  public void testMono8()
+    throws Exception
+  {
+    final var file = this.flac(samples(1, 8), 1, 8);
+    assertClose(javax(file), DustYardFLACDecoder.decode(file), 2);
+  }
+
+  /**
+   * Streaming to a WAV file yields the same data as decoding into memory.
+   */
+
+  @Test
+  public void testDecodeToWAV()
+    throws Exception
+  {
+    final var file = this.flac(samples(2, 24), 2, 24);
+    final var wav = this.directory.resolve("out.wav");
+    final var expected = DustYardFLACDecoder.decode(file);
+
+    final var written =
+      DustYardFLACDecoder.decodeToWAV(file, DustYardDownmix.MID, wav);
+    assertEquals(expected.frames(), (long) written.getFrameLength());
+    assertEquals(
+      expected.format().toString(), written.getFormat().toString());
+
+    try (var stream = AudioSystem.getAudioInputStream(wav.toFile())) {
+      assertEquals(expected.format().toString(), stream.getFormat().toString());
+      assertArrayEquals(expected.data(), stream.readAllBytes());
+    }
+  }
+
+  /**
+   * Selecting a single channel yields exactly that channel.
+   */
+
+  @Test
+  public void testSingleChannel()
+    throws Exception
+  {
+    final var samples = samples(2, 16);
+    final var file = this.flac(samples, 2, 16);
+
+    final var left =
+      shorts(DustYardFLACDecoder.decode(file, DustYardDownmix.parse("left")));
+    final var right =
+      shorts(DustYardFLACDecoder.decode(file, DustYardDownmix.parse("right")));
+    final var weighted =
+      shorts(DustYardFLACDecoder.decode(file, DustYardDownmix.parse("weighted:0,1")));
+
+    assertEquals(FRAMES, left.length);
+    for (int frame = 0; frame < FRAMES; ++frame) {
+      assertEquals(samples[frame * 2], left[frame]);
+      assertEquals(samples[frame * 2 + 1], right[frame]);
+    }
+    assertArrayEquals(right, weighted);
+  }
+
+  /**
+   * A weighted downmix that does not match the channel count fails.
+   */
+
+  @Test
+  public void testWeightsMismatch()
+    throws Exception
+  {
+    final var file = this.flac(samples(2, 16), 2, 16);
+    final var ex =
+      assertThrows(IOException.class, () -> {
+        DustYardFLACDecoder.decode(file, DustYardDownmix.parse("weighted:1,1,1"));
+      });
+    assertTrue(ex.getMessage().contains(file.toString()));
+  }
+
+  /**
+   * Files that are not FLAC files fail.
+   */
+
+  @Test
+  public void testNotFLAC()
+    throws IOException
+  {
+    final var file = this.directory.resolve("bad.flac");
+    Files.write(file, new byte[1024]);
+    assertThrows(IOException.class, () -> {
+      DustYardFLACDecoder.decode(file);
+    });
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.tests;
+
+import com.io7m.music.kit.dust_yard.generator.DustYardFontSample;
+import com.io7m.music.kit.dust_yard.generator.DustYardIncrementalWriter;
+import com.io7m.music.kit.dust_yard.generator.DustYardMappedWriter;
+import com.io7m.music.kit.dust_yard.generator.DustYardSF2Manifest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class DustYardIncrementalWriterTest
+{
+  @TempDir
+  private Path directory;
+
+  private static Path skeletonFor(
+    final Path file)
+  {
+    return file.resolveSibling(file.getFileName() + ".skeleton");
+  }
+
+  private static void writeIncremental(
+    final Path file,
+    final List<DustYardFontSample> samples)
+    throws IOException
+  {
+    final var skeleton = skeletonFor(file);
+    DustYardTestFonts.skeleton(skeleton, samples);
+    DustYardIncrementalWriter.write(file, skeleton, samples);
+  }
+
+  /**
+   * @return The file produced by writing the given samples from scratch
+   */
+
+  private byte[] fresh(
+    final List<DustYardFontSample> samples)
+    throws IOException
+  {
+    final var file =
+      Files.createTempDirectory(this.directory, "fresh").resolve("fresh.sf2");
+    writeIncremental(file, samples);
+    return Files.readAllBytes(file);
+  }
+
+  private static long offsetOfSampleData(
+    final byte[] file)
+  {
+    for (int index = 0; index + 4 <= file.length; ++index) {
+      if (file[index] == 's'
+        && file[index + 1] == 'm'
+        && file[index + 2] == 'p'
+        && file[index + 3] == 'l') {
+        return index + 8L;
+      }
+    }
+    throw new IllegalStateException("No smpl chunk");
+  }
+
+  /**
+   * Writing without a manifest produces the same file as the other writers,
+   * and leaves a manifest and no skeleton behind.
+   */
+
+  @Test
+  public void testInitialWrite()
+    throws IOException
+  {
+    final var samples = DustYardTestFonts.samples(4, 100, 0);
+    final var file = this.directory.resolve("out.sf2");
+    writeIncremental(file, samples);
+
+    final var mapped = this.directory.resolve("mapped.sf2");
+    DustYardTestFonts.skeleton(skeletonFor(mapped), samples);
+    DustYardMappedWriter.write(mapped, skeletonFor(mapped), samples);
+
+    assertArrayEquals(Files.readAllBytes(mapped), Files.readAllBytes(file));
+    assertTrue(Files.isRegularFile(DustYardSF2Manifest.manifestFileFor(file)));
+    assertFalse(Files.exists(skeletonFor(file)));
+  }
+
+  /**
+   * Changed samples are patched, and the result is identical to a file
+   * written from scratch.
+   */
+
+  @Test
+  public void testPatchChanged()
+    throws IOException
+  {
+    final var file = this.directory.resolve("out.sf2");
+    writeIncremental(file, DustYardTestFonts.samples(4, 100, 0));
+
+    final var changed =
+      new ArrayList<>(DustYardTestFonts.samples(4, 100, 0));
+    changed.set(2, DustYardTestFonts.sample("S2", DustYardTestFonts.wave(100, 17)));
+
+    writeIncremental(file, changed);
+    assertArrayEquals(this.fresh(changed), Files.readAllBytes(file));
+  }
+
+  /**
+   * Samples that change size move the samples that follow them, and the
+   * result is identical to a file written from scratch.
+   */
+
+  @Test
+  public void testPatchResized()
+    throws IOException
+  {
+    final var file = this.directory.resolve("out.sf2");
+    writeIncremental(file, DustYardTestFonts.samples(4, 100, 0));
+
+    final var resized =
+      new ArrayList<>(DustYardTestFonts.samples(4, 100, 0));
+    resized.set(1, DustYardTestFonts.sample("S1", DustYardTestFonts.wave(150, 1)));
+
+    writeIncremental(file, resized);
+    assertArrayEquals(this.fresh(resized), Files.readAllBytes(file));
+
+    final var original = DustYardTestFonts.samples(4, 100, 0);
+    writeIncremental(file, original);
+    assertArrayEquals(this.fresh(original), Files.readAllBytes(file));
+  }
+
+  /**
+   * Only changed samples are written: damage to an unchanged sample in a
+   * file that the manifest still describes is not repaired.
+   */
+
+  @Test
+  public void testPatchWritesOnlyChanged()
+    throws IOException
+  {
+    final var file = this.directory.resolve("out.sf2");
+    final var samples = DustYardTestFonts.samples(4, 100, 0);
+    writeIncremental(file, samples);
+
+    final var data = Files.readAllBytes(file);
+    final var offset = (int) offsetOfSampleData(data);
+    data[offset + 2] = (byte) (data[offset + 2] ^ 0x7f);
+
+    final var modified = Files.getLastModifiedTime(file);
+    Files.write(file, data);
+    Files.setLastModifiedTime(file, modified);
+
+    writeIncremental(file, samples);
+    assertArrayEquals(data, Files.readAllBytes(file));
+  }
+
+  /**
+   * A file replaced by another writer is rewritten completely by the next
+   * incremental write, even if the replacement has the same size.
+   */
+
+  @Test
+  public void testModeSwitch()
+    throws IOException
+  {
+    final var file = this.directory.resolve("out.sf2");
+    final var samplesA = DustYardTestFonts.samples(4, 100, 0);
+    final var samplesB = DustYardTestFonts.samples(4, 100, 10);
+
+    writeIncremental(file, samplesA);
+
+    DustYardTestFonts.skeleton(skeletonFor(file), samplesB);
+    DustYardMappedWriter.write(file, skeletonFor(file), samplesB);
+    assertFalse(Files.exists(DustYardSF2Manifest.manifestFileFor(file)));
+    assertArrayEquals(this.fresh(samplesB), Files.readAllBytes(file));
+
+    writeIncremental(file, samplesA);
+    assertArrayEquals(this.fresh(samplesA), Files.readAllBytes(file));
+  }
+
+  /**
+   * A file modified by something other than a writer, which leaves the
+   * manifest in place, is rewritten completely by the next incremental
+   * write.
+   */
+
+  @Test
+  public void testForeignModification()
+    throws IOException
+  {
+    final var file = this.directory.resolve("out.sf2");
+    final var samplesA = DustYardTestFonts.samples(4, 100, 0);
+    final var samplesB = DustYardTestFonts.samples(4, 100, 10);
+
+    writeIncremental(file, samplesA);
+
+    final var other = this.fresh(samplesB);
+    final var modified = Files.getLastModifiedTime(file);
+    Files.write(file, other);
+    Files.setLastModifiedTime(
+      file,
+      FileTime.from(modified.to(TimeUnit.SECONDS) + 10L, TimeUnit.SECONDS)
+    );
+
+    assertEquals(other.length, Files.size(file));
+    assertNotEquals(
+      DustYardSF2Manifest.read(DustYardSF2Manifest.manifestFileFor(file))
+        .orElseThrow()
+        .identity(),
+      DustYardSF2Manifest.Identity.of(file)
+    );
+
+    writeIncremental(file, samplesA);
+    assertArrayEquals(this.fresh(samplesA), Files.readAllBytes(file));
+  }
+
+  /**
+   * Manifests written by earlier versions are ignored.
+   */
+
+  @Test
+  public void testOldManifest()
+    throws IOException
+  {
+    final var manifest = this.directory.resolve("out.sf2.manifest");
+    Files.writeString(manifest, "dust_yard-manifest 1\nsize 100\n");
+    assertTrue(DustYardSF2Manifest.read(manifest).isEmpty());
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.tests;
+
+import com.io7m.music.kit.dust_yard.generator.DustYardMetrics;
+import com.io7m.music.kit.dust_yard.generator.DustYardStage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class DustYardMetricsTest
+{
+  @TempDir
+  private Path directory;
+
+  private static void measure(
+    final DustYardMetrics metrics,
+    final DustYardStage stage)
+  {
+    final var measurement = metrics.begin(stage);
+    try {
+      final var data = new ArrayList<byte[]>();
+      for (int index = 0; index < 16; ++index) {
+        data.add(new byte[4096]);
+      }
+      measurement.addSamples(data.size());
+    } finally {
+      measurement.close();
+    }
+  }
+
+  private String json(
+    final DustYardMetrics metrics)
+    throws Exception
+  {
+    final var file = this.directory.resolve("metrics.json");
+    metrics.writeJSON(file);
+    return Files.readString(file, UTF_8);
+  }
+
+  /**
+   * Allocation on a virtual thread is reported as unmeasured, not as zero.
+   */
+
+  @Test
+  public void testVirtualThreadUnmeasured()
+    throws Exception
+  {
+    final var metrics = new DustYardMetrics();
+    final var thread =
+      Thread.ofVirtual().start(() -> measure(metrics, DustYardStage.DECODE));
+    thread.join();
+
+    final var text = this.json(metrics);
+    assertTrue(text.contains("\"allocationMeasured\": false"), text);
+    assertTrue(text.contains("\"allocationUnmeasuredInvocations\": 1"), text);
+    assertTrue(text.contains("\"allocatedBytes\": null"), text);
+    assertTrue(text.contains("\"samples\": 16"), text);
+  }
+
+  /**
+   * A stage measured on both platform and virtual threads is unmeasured.
+   */
+
+  @Test
+  public void testMixedThreadsUnmeasured()
+    throws Exception
+  {
+    final var metrics = new DustYardMetrics();
+    measure(metrics, DustYardStage.WRITE);
+    final var thread =
+      Thread.ofVirtual().start(() -> measure(metrics, DustYardStage.WRITE));
+    thread.join();
+
+    final var text = this.json(metrics);
+    assertTrue(text.contains("\"invocations\": 2"), text);
+    assertTrue(text.contains("\"allocationUnmeasuredInvocations\": 1"), text);
+    assertTrue(text.contains("\"allocatedBytes\": null"), text);
+  }
+
+  /**
+   * Allocation on a platform thread is measured if the JVM supports it.
+   */
+
+  @Test
+  public void testPlatformThreadMeasured()
+    throws Exception
+  {
+    final var metrics = new DustYardMetrics();
+    measure(metrics, DustYardStage.DECODE);
+
+    final var text = this.json(metrics);
+    assertTrue(text.contains("\"allocationUnmeasuredInvocations\": 0"), text);
+    if (text.contains("\"allocationMeasured\": true,\n  \"stages\"")) {
+      assertFalse(text.contains("\"allocatedBytes\": null"), text);
+      assertEquals(
+        2,
+        text.split("\"allocationMeasured\": true", -1).length - 1,
+        text
+      );
+    }
+  }
+}
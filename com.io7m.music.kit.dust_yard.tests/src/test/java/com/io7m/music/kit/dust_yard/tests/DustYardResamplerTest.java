@@ -0,0 +1,214 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.tests;
+
+import com.io7m.music.kit.dust_yard.generator.DustYardPCM;
+import com.io7m.music.kit.dust_yard.generator.DustYardResampler;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntToDoubleFunction;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class DustYardResamplerTest
+{
+  /**
+   * The number of output frames at each end of a sample that are affected
+   * by the edges of the input.
+   */
+
+  private static final int EDGE = 64;
+
+  private static DustYardPCM pcm(
+    final int rate,
+    final int frames,
+    final IntToDoubleFunction generator)
+  {
+    final var buffer =
+      ByteBuffer.allocate(frames * 2).order(LITTLE_ENDIAN);
+    for (int frame = 0; frame < frames; ++frame) {
+      buffer.putShort((short) Math.round(generator.applyAsDouble(frame)));
+    }
+    return new DustYardPCM(rate, buffer.array());
+  }
+
+  private static short[] shorts(
+    final DustYardPCM pcm)
+  {
+    final var result = new short[pcm.data().length / 2];
+    ByteBuffer.wrap(pcm.data())
+      .order(LITTLE_ENDIAN)
+      .asShortBuffer()
+      .get(result);
+    return result;
+  }
+
+  private static int peakInterior(
+    final short[] samples)
+  {
+    var peak = 0;
+    for (int index = EDGE; index < samples.length - EDGE; ++index) {
+      peak = Math.max(peak, Math.abs(samples[index]));
+    }
+    return peak;
+  }
+
+  /**
+   * The output has ceil(frames * target / source) frames at the target
+   * rate.
+   */
+
+  @Test
+  public void testLength()
+  {
+    final int[][] rates = {
+      {44100, 48000},
+      {48000, 44100},
+      {96000, 48000},
+      {22050, 48000},
+      {48000, 32000},
+    };
+
+    for (final var pair : rates) {
+      final var resampler = DustYardResampler.create(pair[0], pair[1]);
+      for (final var frames : new int[]{0, 1, 2, 441, 1000, 4801}) {
+        final var result = resampler.apply(pcm(pair[0], frames, i -> 0.0));
+        final var expected =
+          ((long) frames * pair[1] + pair[0] - 1L) / pair[0];
+
+        assertEquals((float) pair[1], result.sampleRate(), 0.0);
+        assertEquals(
+          expected,
+          result.frames(),
+          String.format("%d -> %d, %d frames", pair[0], pair[1], frames)
+        );
+      }
+    }
+  }
+
+  /**
+   * A constant signal passes through with unit gain, away from the edges.
+   */
+
+  @Test
+  public void testDCGain()
+  {
+    final int[][] rates = {
+      {44100, 48000},
+      {48000, 44100},
+      {96000, 48000},
+      {22050, 48000},
+    };
+
+    for (final var pair : rates) {
+      final var resampler = DustYardResampler.create(pair[0], pair[1]);
+      final var result =
+        shorts(resampler.apply(pcm(pair[0], pair[0] / 10, i -> 10000.0)));
+
+      for (int index = EDGE; index < result.length - EDGE; ++index) {
+        assertTrue(
+          Math.abs(result[index] - 10000) <= 2,
+          String.format(
+            "%d -> %d, frame %d: %d",
+            Integer.valueOf(pair[0]),
+            Integer.valueOf(pair[1]),
+            Integer.valueOf(index),
+            Short.valueOf(result[index]))
+        );
+      }
+    }
+  }
+
+  /**
+   * A tone well inside the passband keeps its amplitude.
+   */
+
+  @Test
+  public void testPassband()
+  {
+    final var resampler = DustYardResampler.create(44100, 48000);
+    final var result =
+      shorts(resampler.apply(pcm(44100, 4410, i -> {
+        return 16000.0 * Math.sin(2.0 * Math.PI * 1000.0 * i / 44100.0);
+      })));
+
+    final var peak = peakInterior(result);
+    assertTrue(Math.abs(peak - 16000) < 160, "Peak " + peak);
+  }
+
+  /**
+   * A tone above the target Nyquist frequency is removed.
+   */
+
+  @Test
+  public void testStopband()
+  {
+    final var resampler = DustYardResampler.create(48000, 22050);
+    final var result =
+      shorts(resampler.apply(pcm(48000, 4800, i -> {
+        return 16000.0 * Math.sin(2.0 * Math.PI * 16000.0 * i / 48000.0);
+      })));
+
+    final var peak = peakInterior(result);
+    assertTrue(peak < 16, "Peak " + peak);
+  }
+
+  /**
+   * Resampling to the same rate returns the sample unchanged.
+   */
+
+  @Test
+  public void testIdentity()
+  {
+    final var resampler = DustYardResampler.create(48000, 48000);
+    final var pcm = pcm(48000, 100, i -> i);
+    assertSame(pcm, resampler.apply(pcm));
+  }
+
+  /**
+   * Samples at the wrong rate are rejected.
+   */
+
+  @Test
+  public void testWrongRate()
+  {
+    final var resampler = DustYardResampler.create(44100, 48000);
+    assertThrows(IllegalArgumentException.class, () -> {
+      resampler.apply(pcm(48000, 100, i -> 0.0));
+    });
+  }
+
+  /**
+   * Rate pairs that require too many filter phases are rejected.
+   */
+
+  @Test
+  public void testTooManyPhases()
+  {
+    assertThrows(IllegalArgumentException.class, () -> {
+      DustYardResampler.create(44100, 47999);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      DustYardResampler.create(0, 48000);
+    });
+  }
+}
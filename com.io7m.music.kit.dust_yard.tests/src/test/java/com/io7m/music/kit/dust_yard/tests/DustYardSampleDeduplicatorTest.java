@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.tests;
+
+import com.io7m.music.kit.dust_yard.generator.DustYardSampleBuffer16;
+import com.io7m.music.kit.dust_yard.generator.DustYardSampleDeduplicator;
+import com.io7m.music.kit.dust_yard.generator.DustYardSampleSourceType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class DustYardSampleDeduplicatorTest
+{
+  private static final double LSB = 1.0 / DustYardSampleBuffer16.SCALE;
+
+  private static DustYardSampleSourceType source(
+    final double[] data)
+  {
+    return DustYardTestFonts.sample("S", data).source();
+  }
+
+  /**
+   * @return A wave whose values are exactly representable as 16-bit samples,
+   * so that offsets of whole sample values are not affected by rounding
+   */
+
+  private static double[] wave(
+    final int seed)
+  {
+    final var data = DustYardTestFonts.wave(1000, seed);
+    for (int index = 0; index < data.length; ++index) {
+      data[index] = Math.rint(data[index] / LSB) * LSB;
+    }
+    return data;
+  }
+
+  private static double[] offset(
+    final double[] data,
+    final int amount)
+  {
+    final var result = data.clone();
+    for (int index = 0; index < result.length; index += 7) {
+      result[index] += amount * LSB;
+    }
+    return result;
+  }
+
+  private static DustYardSampleSourceType add(
+    final DustYardSampleDeduplicator<DustYardSampleSourceType> deduplicator,
+    final double[] data)
+    throws IOException
+  {
+    return deduplicator.deduplicate(source(data), source -> source);
+  }
+
+  /**
+   * Identical samples are replaced by the first, and the removed data is
+   * counted.
+   */
+
+  @Test
+  public void testIdentical()
+    throws IOException
+  {
+    final var deduplicator = new DustYardSampleDeduplicator<DustYardSampleSourceType>(0);
+    final var data = wave(0);
+
+    final var first = add(deduplicator, data);
+    assertSame(first, add(deduplicator, data.clone()));
+    assertSame(first, add(deduplicator, data.clone()));
+    assertNotSame(first, add(deduplicator, wave(1)));
+
+    assertEquals(2L, deduplicator.removedSamples());
+    assertEquals(4000L, deduplicator.removedBytes());
+  }
+
+  /**
+   * Samples within the tolerance of a retained sample are replaced by it,
+   * and samples outside it are not.
+   */
+
+  @Test
+  public void testTolerance()
+    throws IOException
+  {
+    final var deduplicator = new DustYardSampleDeduplicator<DustYardSampleSourceType>(2);
+    final var data = wave(0);
+
+    final var first = add(deduplicator, data);
+    assertSame(first, add(deduplicator, offset(data, 2)));
+    assertSame(first, add(deduplicator, offset(data, -2)));
+
+    final var distinct = add(deduplicator, offset(data, 3));
+    assertNotSame(first, distinct);
+    assertSame(distinct, add(deduplicator, offset(data, 3)));
+    assertEquals(3L, deduplicator.removedSamples());
+  }
+
+  /**
+   * With no tolerance, samples that differ at all are kept.
+   */
+
+  @Test
+  public void testNoTolerance()
+    throws IOException
+  {
+    final var deduplicator = new DustYardSampleDeduplicator<DustYardSampleSourceType>(0);
+    final var data = wave(0);
+
+    assertNotSame(add(deduplicator, data), add(deduplicator, offset(data, 1)));
+    assertEquals(0L, deduplicator.removedSamples());
+  }
+
+  /**
+   * Samples of different lengths are never duplicates.
+   */
+
+  @Test
+  public void testLengths()
+    throws IOException
+  {
+    final var deduplicator = new DustYardSampleDeduplicator<DustYardSampleSourceType>(100);
+    final var data = wave(0);
+
+    assertNotSame(
+      add(deduplicator, data),
+      add(deduplicator, Arrays.copyOf(data, 999))
+    );
+  }
+
+  /**
+   * Negative tolerances are rejected.
+   */
+
+  @Test
+  public void testNegative()
+  {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DustYardSampleDeduplicator<>(-1);
+    });
+  }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.tests;
+
+import com.io7m.music.kit.dust_yard.generator.DustYardSourceFile;
+import com.io7m.music.kit.dust_yard.generator.DustYardSourceIndex;
+import com.io7m.music.kit.dust_yard.generator.DustYardSourceKind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class DustYardSourceIndexTest
+{
+  private static final String SNARE_0 =
+    "1__quartertone__sd14x08tama-vhp-ord-ctr-v1.flac";
+  private static final String SNARE_1 =
+    "2__quartertone__sd14x08tama-vhp-ord-ctr-v2.flac";
+  private static final String SNARE_2 =
+    "3__quartertone__sd14x08tama-vhp-ord-ctr-v3.flac";
+  private static final String BASS_DRUM =
+    "4__quartertone__bd22x16-mlp-o-v5.flac";
+  private static final String SPLASH =
+    "5__quartertone__sc08inzilefx1-open-v7.flac";
+
+  @TempDir
+  private Path directory;
+
+  private ExecutorService executor;
+  private Path root;
+  private Path snares;
+  private Path indexFile;
+  private long touches;
+
+  private static void file(
+    final Path file,
+    final int size)
+    throws IOException
+  {
+    Files.write(file, new byte[size]);
+  }
+
+  /**
+   * Make a change to a directory that a build would only notice if it
+   * listed the directory again, and then restore the directory's
+   * modification time.
+   */
+
+  private static void changeSilently(
+    final Path directory,
+    final IOAction action)
+    throws IOException
+  {
+    final var modified = Files.getLastModifiedTime(directory);
+    action.run();
+    Files.setLastModifiedTime(directory, modified);
+  }
+
+  /**
+   * Set a directory's modification time to one that no earlier build can
+   * have seen.
+   */
+
+  private void touchLater(
+    final Path directory)
+    throws IOException
+  {
+    this.touches += 1L;
+    Files.setLastModifiedTime(
+      directory,
+      FileTime.fromMillis(System.currentTimeMillis() + this.touches * 60_000L)
+    );
+  }
+
+  private static List<String> names(
+    final List<DustYardSourceFile> files)
+  {
+    return files.stream()
+      .map(file -> file.file().getFileName().toString())
+      .toList();
+  }
+
+  private interface IOAction
+  {
+    void run()
+      throws IOException;
+  }
+
+  private DustYardSourceIndex build()
+    throws IOException
+  {
+    return DustYardSourceIndex.build(this.root, this.indexFile, this.executor, 4);
+  }
+
+  @BeforeEach
+  public void setup()
+    throws IOException
+  {
+    this.executor = Executors.newFixedThreadPool(4);
+    this.root = this.directory.resolve("source");
+    this.snares = this.root.resolve("snare");
+    this.indexFile = this.directory.resolve("index.bin");
+
+    final var drums = this.root.resolve("drums");
+    final var splash = drums.resolve("splash");
+    Files.createDirectories(this.snares);
+    Files.createDirectories(splash);
+
+    file(this.snares.resolve(SNARE_0), 100);
+    file(this.snares.resolve(SNARE_1), 200);
+    file(this.snares.resolve("README.txt"), 10);
+    file(drums.resolve(BASS_DRUM), 300);
+    file(splash.resolve(SPLASH), 400);
+  }
+
+  @AfterEach
+  public void tearDown()
+    throws InterruptedException
+  {
+    this.executor.shutdown();
+    this.executor.awaitTermination(10L, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Every file at every depth is classified, and unknown files are ignored.
+   */
+
+  @Test
+  public void testBuild()
+    throws IOException
+  {
+    final var index = this.build();
+
+    assertEquals(this.root.toAbsolutePath().normalize(), index.root());
+    assertEquals(
+      List.of(SNARE_0, SNARE_1, BASS_DRUM, SPLASH),
+      names(index.files()).stream().sorted().toList()
+    );
+    assertEquals(List.of(SNARE_0, SNARE_1), names(index.filesIn(this.snares)));
+    assertEquals(List.of(), index.filesIn(this.directory.resolve("nonexistent")));
+
+    final var snare = index.filesIn(this.snares).get(1);
+    assertEquals(DustYardSourceKind.SNARE, snare.kind());
+    assertEquals(200L, snare.size());
+    assertEquals(List.of("2", "ord", "ctr", "2"), snare.groups());
+    assertTrue(Files.isRegularFile(this.indexFile));
+  }
+
+  /**
+   * A rebuild over an unchanged tree reuses every directory, returns the
+   * same files, and does not rewrite the index.
+   */
+
+  @Test
+  public void testReuseUnchanged()
+    throws IOException
+  {
+    final var first = this.build();
+    final var saved = Files.readAllBytes(this.indexFile);
+    final var savedTime = FileTime.from(1000L, TimeUnit.SECONDS);
+    Files.setLastModifiedTime(this.indexFile, savedTime);
+
+    final var second = this.build();
+    assertEquals(first.files(), second.files());
+    assertEquals(savedTime, Files.getLastModifiedTime(this.indexFile));
+    assertArrayEquals(saved, Files.readAllBytes(this.indexFile));
+  }
+
+  /**
+   * A directory whose modification time has not changed is not listed
+   * again, and one whose modification time has changed is.
+   */
+
+  @Test
+  public void testModificationTime()
+    throws IOException
+  {
+    this.build();
+
+    changeSilently(this.snares, () -> file(this.snares.resolve(SNARE_2), 50));
+    assertEquals(List.of(SNARE_0, SNARE_1), names(this.build().filesIn(this.snares)));
+
+    this.touchLater(this.snares);
+    assertEquals(
+      List.of(SNARE_0, SNARE_1, SNARE_2),
+      names(this.build().filesIn(this.snares))
+    );
+  }
+
+  /**
+   * A directory containing a file whose size has changed is listed again.
+   */
+
+  @Test
+  public void testSizeChanged()
+    throws IOException
+  {
+    this.build();
+
+    changeSilently(this.snares, () -> {
+      Files.write(
+        this.snares.resolve(SNARE_0),
+        new byte[23],
+        StandardOpenOption.APPEND);
+      file(this.snares.resolve(SNARE_2), 50);
+    });
+
+    final var files = this.build().filesIn(this.snares);
+    assertEquals(List.of(SNARE_0, SNARE_1, SNARE_2), names(files));
+    assertEquals(123L, files.get(0).size());
+  }
+
+  /**
+   * A directory containing a file that has been deleted is listed again.
+   */
+
+  @Test
+  public void testFileDeleted()
+    throws IOException
+  {
+    this.build();
+
+    changeSilently(this.snares, () -> {
+      Files.delete(this.snares.resolve(SNARE_0));
+    });
+    assertEquals(List.of(SNARE_1), names(this.build().filesIn(this.snares)));
+  }
+
+  /**
+   * New subdirectories are indexed, and removed ones are dropped.
+   */
+
+  @Test
+  public void testSubdirectories()
+    throws IOException
+  {
+    this.build();
+
+    final var extra = this.snares.resolve("extra");
+    Files.createDirectories(extra);
+    file(extra.resolve(SNARE_2), 50);
+    this.touchLater(this.snares);
+    assertEquals(List.of(SNARE_2), names(this.build().filesIn(extra)));
+
+    Files.delete(extra.resolve(SNARE_2));
+    Files.delete(extra);
+    this.touchLater(this.snares);
+
+    final var index = this.build();
+    assertEquals(List.of(), index.filesIn(extra));
+    assertEquals(4, index.files().size());
+  }
+
+  /**
+   * Unreadable indices, and indices of other trees, are ignored.
+   */
+
+  @Test
+  public void testIndexIgnored()
+    throws IOException
+  {
+    Files.write(this.indexFile, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+    assertEquals(4, this.build().files().size());
+
+    final var other = this.directory.resolve("other");
+    Files.createDirectories(other);
+    file(other.resolve(SNARE_2), 50);
+
+    final var index =
+      DustYardSourceIndex.build(other, this.indexFile, this.executor, 4);
+    assertEquals(List.of(SNARE_2), names(index.files()));
+  }
+
+  /**
+   * Scanning a single directory classifies only the files directly within
+   * it.
+   */
+
+  @Test
+  public void testScan()
+    throws IOException
+  {
+    assertEquals(
+      List.of(SNARE_0, SNARE_1),
+      names(DustYardSourceIndex.scan(this.snares))
+    );
+    assertEquals(List.of(), DustYardSourceIndex.scan(this.root));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.tests;
+
+import com.io7m.music.kit.dust_yard.generator.DustYardStartTrim;
+import org.junit.jupiter.api.Test;
+
+import static com.io7m.music.kit.dust_yard.tests.DustYardEndTrimTest.pcm;
+import static com.io7m.music.kit.dust_yard.tests.DustYardEndTrimTest.samples;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class DustYardStartTrimTest
+{
+  /**
+   * A threshold of 0dB would place the onset past the end of the sample, so
+   * only negative thresholds are accepted.
+   */
+
+  @Test
+  public void testThresholdInvalid()
+  {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DustYardStartTrim(0.0);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DustYardStartTrim(3.0);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DustYardStartTrim(Double.NaN);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      new DustYardStartTrim(Double.NEGATIVE_INFINITY);
+    });
+  }
+
+  /**
+   * Silent samples, and samples with no zero crossing before the onset, are
+   * returned unchanged.
+   */
+
+  @Test
+  public void testUnchanged()
+  {
+    final var trim = new DustYardStartTrim(-30.0);
+
+    final var silent = pcm(0, 0, 0, 0);
+    assertSame(silent, trim.apply(silent));
+
+    final var positive = pcm(1, 2, 3, 1000, 500);
+    assertSame(positive, trim.apply(positive));
+  }
+
+  /**
+   * The sample is cut at the last zero crossing before the onset.
+   */
+
+  @Test
+  public void testTrim()
+  {
+    final var trim = new DustYardStartTrim(-30.0);
+    final var result = trim.apply(pcm(3, -2, 1, -4, 5, 1000, -800, 200));
+
+    assertArrayEquals(new int[]{-4, 5, 1000, -800, 200}, samples(result));
+  }
+
+  /**
+   * A frame of exact silence before the onset is kept as the new start.
+   */
+
+  @Test
+  public void testTrimAtSilence()
+  {
+    final var trim = new DustYardStartTrim(-30.0);
+    final var result = trim.apply(pcm(5, 0, 3, 1000, -1000));
+
+    assertArrayEquals(new int[]{0, 3, 1000, -1000}, samples(result));
+  }
+
+  /**
+   * A threshold just below the peak places the onset at the loudest frame
+   * when it is the last frame, rather than past the end of the sample.
+   */
+
+  @Test
+  public void testPeakAtEnd()
+  {
+    final var trim = new DustYardStartTrim(-0.01);
+    final var result = trim.apply(pcm(2, -1, 1, 500, 1000));
+
+    assertArrayEquals(new int[]{1, 500, 1000}, samples(result));
+  }
+}
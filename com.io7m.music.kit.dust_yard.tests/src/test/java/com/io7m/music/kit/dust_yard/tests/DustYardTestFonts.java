@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.tests;
+
+import com.io7m.jnoisetype.writer.api.NTSampleBuilderType;
+import com.io7m.music.kit.dust_yard.generator.DustYardFontSample;
+import com.io7m.music.kit.dust_yard.generator.DustYardSampleBuffer16;
+import com.io7m.music.kit.dust_yard.generator.DustYardSampleSourceType;
+import com.io7m.jsamplebuffer.api.SampleBufferType;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Functions to construct soundfont samples and SF2 skeleton files without a
+ * soundfont builder.
+ */
+
+public final class DustYardTestFonts
+{
+  private static final int SHDR_RECORD_SIZE = 46;
+  private static final int PADDING_FRAMES = 46;
+
+  private DustYardTestFonts()
+  {
+
+  }
+
+  /**
+   * @param name The sample name
+   * @param data The sample data
+   *
+   * @return A sample with the given data, and a builder that does nothing
+   */
+
+  public static DustYardFontSample sample(
+    final String name,
+    final double[] data)
+  {
+    final var buffer =
+      DustYardSampleBuffer16.createHeap(1, data.length, 48000.0);
+    for (int index = 0; index < data.length; ++index) {
+      buffer.frameSetExact(index, data[index]);
+    }
+
+    final var builder =
+      (NTSampleBuilderType) Proxy.newProxyInstance(
+        DustYardTestFonts.class.getClassLoader(),
+        new Class<?>[]{NTSampleBuilderType.class},
+        (proxy, method, args) -> null
+      );
+
+    return new DustYardFontSample(builder, name, new Source(buffer));
+  }
+
+  /**
+   * @param count  The number of samples
+   * @param frames The number of frames in each sample
+   * @param seed   A value that determines the sample data
+   *
+   * @return A list of samples named {@code S0}, {@code S1}, ...
+   */
+
+  public static List<DustYardFontSample> samples(
+    final int count,
+    final int frames,
+    final int seed)
+  {
+    final var samples = new ArrayList<DustYardFontSample>(count);
+    for (int index = 0; index < count; ++index) {
+      samples.add(sample("S" + index, wave(frames, seed + index)));
+    }
+    return samples;
+  }
+
+  /**
+   * @param frames The number of frames
+   * @param seed   A value that determines the data
+   *
+   * @return A sine wave with a phase determined by the seed
+   */
+
+  public static double[] wave(
+    final int frames,
+    final int seed)
+  {
+    final var data = new double[frames];
+    for (int index = 0; index < frames; ++index) {
+      data[index] = Math.sin(index * 0.1 + seed) * 0.5;
+    }
+    return data;
+  }
+
+  /**
+   * Write an SF2 skeleton for the given samples: a file with an empty
+   * {@code INFO} list, a zeroed {@code smpl} chunk with room for each sample
+   * and its padding, and a {@code shdr} chunk describing the samples.
+   *
+   * @param file    The output file
+   * @param samples The samples
+   *
+   * @throws IOException On errors
+   */
+
+  public static void skeleton(
+    final Path file,
+    final List<DustYardFontSample> samples)
+    throws IOException
+  {
+    var points = 0L;
+    for (final var sample : samples) {
+      points += sample.source().frames() + PADDING_FRAMES;
+    }
+
+    final var shdr =
+      ByteBuffer.allocate(SHDR_RECORD_SIZE * (samples.size() + 1))
+        .order(LITTLE_ENDIAN);
+
+    var start = 0L;
+    for (final var sample : samples) {
+      final var frames = sample.source().frames();
+      shdr.put(Arrays.copyOf(sample.name().getBytes(US_ASCII), 20));
+      shdr.putInt((int) start);
+      shdr.putInt((int) (start + frames));
+      shdr.putInt(0);
+      shdr.putInt(0);
+      shdr.putInt(48000);
+      shdr.put((byte) 60);
+      shdr.put((byte) 0);
+      shdr.putShort((short) 0);
+      shdr.putShort((short) 1);
+      start += frames + PADDING_FRAMES;
+    }
+    shdr.put(Arrays.copyOf("EOS".getBytes(US_ASCII), 20));
+    shdr.put(new byte[SHDR_RECORD_SIZE - 20]);
+
+    final var info = list("INFO", chunk("ifil", new byte[]{2, 0, 1, 0}));
+    final var sdta = list("sdta", chunk("smpl", new byte[(int) (points * 2L)]));
+    final var pdta = list("pdta", chunk("shdr", shdr.array()));
+
+    final var riff =
+      ByteBuffer.allocate(12 + info.length + sdta.length + pdta.length)
+        .order(LITTLE_ENDIAN);
+    riff.put("RIFF".getBytes(US_ASCII));
+    riff.putInt(riff.capacity() - 8);
+    riff.put("sfbk".getBytes(US_ASCII));
+    riff.put(info);
+    riff.put(sdta);
+    riff.put(pdta);
+    Files.write(file, riff.array());
+  }
+
+  private static byte[] chunk(
+    final String id,
+    final byte[] data)
+  {
+    final var buffer =
+      ByteBuffer.allocate(8 + data.length)
+        .order(LITTLE_ENDIAN);
+    buffer.put(id.getBytes(US_ASCII));
+    buffer.putInt(data.length);
+    buffer.put(data);
+    return buffer.array();
+  }
+
+  private static byte[] list(
+    final String type,
+    final byte[] data)
+  {
+    final var buffer =
+      ByteBuffer.allocate(4 + data.length)
+        .order(LITTLE_ENDIAN);
+    buffer.put(type.getBytes(US_ASCII));
+    buffer.put(data);
+    return chunk("LIST", buffer.array());
+  }
+
+  private record Source(
+    SampleBufferType buffer)
+    implements DustYardSampleSourceType
+  {
+    @Override
+    public long frames()
+    {
+      return this.buffer.frames();
+    }
+
+    @Override
+    public double sampleRate()
+    {
+      return this.buffer.sampleRate();
+    }
+
+    @Override
+    public SampleBufferType load()
+    {
+      return this.buffer;
+    }
+  }
+}
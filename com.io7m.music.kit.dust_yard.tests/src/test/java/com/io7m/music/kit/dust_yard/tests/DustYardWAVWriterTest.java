@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2021 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.music.kit.dust_yard.tests;
+
+import com.io7m.music.kit.dust_yard.generator.DustYardPCM;
+import com.io7m.music.kit.dust_yard.generator.DustYardWAVWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class DustYardWAVWriterTest
+{
+  @TempDir
+  private Path directory;
+
+  private static byte[] data(
+    final int size)
+  {
+    final var data = new byte[size];
+    for (int index = 0; index < size; ++index) {
+      data[index] = (byte) (index * 7);
+    }
+    return data;
+  }
+
+  private static AudioInputStream stream(
+    final AudioFormat format,
+    final byte[] data)
+  {
+    return new AudioInputStream(
+      new ByteArrayInputStream(data),
+      format,
+      data.length / format.getFrameSize()
+    );
+  }
+
+  /**
+   * A 16-bit mono sample is written with a canonical header, and can be
+   * read back through javax.sound.
+   */
+
+  @Test
+  public void testMono16()
+    throws Exception
+  {
+    final var data = data(2000);
+    final var file = this.directory.resolve("out.wav");
+    DustYardWAVWriter.write(new DustYardPCM(48000.0f, data), file);
+
+    final var bytes = Files.readAllBytes(file);
+    assertEquals(44 + data.length, bytes.length);
+
+    final var header = ByteBuffer.wrap(bytes).order(LITTLE_ENDIAN);
+    assertEquals("RIFF", new String(bytes, 0, 4, US_ASCII));
+    assertEquals(bytes.length - 8, header.getInt(4));
+    assertEquals("WAVEfmt ", new String(bytes, 8, 8, US_ASCII));
+    assertEquals(1, header.getShort(20));
+    assertEquals(1, header.getShort(22));
+    assertEquals(48000, header.getInt(24));
+    assertEquals(96000, header.getInt(28));
+    assertEquals(2, header.getShort(32));
+    assertEquals(16, header.getShort(34));
+    assertEquals("data", new String(bytes, 36, 4, US_ASCII));
+    assertEquals(data.length, header.getInt(40));
+    assertArrayEquals(data, Arrays.copyOfRange(bytes, 44, bytes.length));
+
+    try (var stream = AudioSystem.getAudioInputStream(file.toFile())) {
+      assertEquals(1000L, stream.getFrameLength());
+      assertArrayEquals(data, stream.readAllBytes());
+    }
+  }
+
+  /**
+   * Unsigned 8-bit data with an odd length is padded to an even chunk size,
+   * but the padding is not counted as data.
+   */
+
+  @Test
+  public void testUnsigned8Padded()
+    throws IOException
+  {
+    final var data = data(101);
+    final var format =
+      new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, 8000.0f, 8, 1, 1, 8000.0f, false);
+
+    final var file = this.directory.resolve("out.wav");
+    assertEquals(101L, DustYardWAVWriter.write(stream(format, data), file));
+
+    final var bytes = Files.readAllBytes(file);
+    final var header = ByteBuffer.wrap(bytes).order(LITTLE_ENDIAN);
+    assertEquals(44 + 102, bytes.length);
+    assertEquals(bytes.length - 8, header.getInt(4));
+    assertEquals(8, header.getShort(34));
+    assertEquals(101, header.getInt(40));
+  }
+
+  /**
+   * Signed 8-bit data is rejected, because WAV files store 8-bit samples as
+   * unsigned values.
+   */
+
+  @Test
+  public void testSigned8Rejected()
+  {
+    final var format =
+      new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 8000.0f, 8, 1, 1, 8000.0f, false);
+    final var file = this.directory.resolve("out.wav");
+
+    assertThrows(IOException.class, () -> {
+      DustYardWAVWriter.write(stream(format, data(100)), file);
+    });
+    assertFalse(Files.exists(file));
+  }
+
+  /**
+   * Big-endian data is rejected.
+   */
+
+  @Test
+  public void testBigEndianRejected()
+  {
+    final var format =
+      new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 8000.0f, 16, 1, 2, 8000.0f, true);
+    final var file = this.directory.resolve("out.wav");
+
+    assertThrows(IOException.class, () -> {
+      DustYardWAVWriter.write(stream(format, data(100)), file);
+    });
+    assertFalse(Files.exists(file));
+  }
+}